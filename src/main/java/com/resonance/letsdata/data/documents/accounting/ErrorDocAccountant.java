@@ -0,0 +1,479 @@
+package com.resonance.letsdata.data.documents.accounting;
+
+import com.resonance.letsdata.data.documents.implementation.ErrorDoc;
+import com.resonance.letsdata.data.documents.implementation.SkipDoc;
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import com.resonance.letsdata.data.documents.interfaces.ErrorDocInterface;
+import com.resonance.letsdata.data.documents.interfaces.SkipDocInterface;
+import com.resonance.letsdata.data.util.ValidationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bounded accounting for the error and skip documents of a task.
+ *
+ * On a malformed file, every bad record produces an error doc with its full serialized payload, offset maps and metadata - the memory and the error destination writes then grow
+ * with the number of bad records. The accountant sits between the handler and the error destination and bounds this:
+ *
+ *      * Exact counts: every error / skip doc is counted by reason (see Builder.reasonExtractor), these counts are never sampled.
+ *      * Rate limit: error and skip docs are each written at most at the configured rate per second (token bucket with a burst). Docs over the rate are counted but not written.
+ *      * Truncation / compression: the docs that are written have their message and serialized payload truncated to the configured length, the payload is optionally gzip + base64 encoded.
+ *      * Reservoir sampling: a fixed size uniform sample of the error docs is kept with their full, untruncated payloads so that the error storm can still be debugged.
+ *
+ *      ErrorDocAccountant accountant = ErrorDocAccountant.builder().maxErrorDocsPerSecond(100).maxPayloadLength(4096).reservoirSize(32).build();
+ *      ...
+ *      DocumentInterface bounded = accountant.account(errorDoc);
+ *      if (bounded != null) {
+ *          // write the bounded doc to the error destination
+ *      }
+ *      ...
+ *      // at task end
+ *      accountant.getErrorCountsByReason();
+ *      accountant.getSampledErrorDocs();
+ *
+ * The accountant is thread safe and is intended to be shared by all the readers of a task.
+ */
+public class ErrorDocAccountant {
+    private static final Logger logger = LoggerFactory.getLogger(ErrorDocAccountant.class);
+
+    /**
+     * The document metadata key set on docs whose payload or message was truncated
+     */
+    public static final String TRUNCATED_METADATA_KEY = "accountingTruncated";
+
+    /**
+     * The document metadata key set on docs whose payload was compressed - the value is the payload encoding
+     */
+    public static final String PAYLOAD_ENCODING_METADATA_KEY = "accountingPayloadEncoding";
+
+    /**
+     * The payload encoding for compressed payloads
+     */
+    public static final String GZIP_BASE64_ENCODING = "gzip+base64";
+
+    private static final int MAX_REASON_LENGTH = 128;
+    private static final String TRUNCATED_SUFFIX_PREFIX = "...[truncated ";
+    private static final String TRUNCATED_SUFFIX_END = " chars]";
+
+    private final TokenBucket errorRateLimiter;
+    private final TokenBucket skipRateLimiter;
+    private final int maxMessageLength;
+    private final int maxPayloadLength;
+    private final int compressPayloadsLongerThan;
+    private final Function<DocumentInterface, String> reasonExtractor;
+    private final ConcurrentHashMap<String, LongAdder> errorCountsByReason = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> skipCountsByReason = new ConcurrentHashMap<>();
+    private final AtomicLong suppressedErrorDocs = new AtomicLong();
+    private final AtomicLong suppressedSkipDocs = new AtomicLong();
+    private final Reservoir reservoir;
+
+    private ErrorDocAccountant(Builder builder) {
+        this.errorRateLimiter = new TokenBucket(builder.maxErrorDocsPerSecond, builder.burst, builder.nanoClock);
+        this.skipRateLimiter = new TokenBucket(builder.maxSkipDocsPerSecond, builder.burst, builder.nanoClock);
+        this.maxMessageLength = builder.maxMessageLength;
+        this.maxPayloadLength = builder.maxPayloadLength;
+        this.compressPayloadsLongerThan = builder.compressPayloadsLongerThan;
+        this.reasonExtractor = builder.reasonExtractor;
+        this.reservoir = new Reservoir(builder.reservoirSize, builder.random);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Accounts the error or skip doc and returns the bounded doc that should be written, if any.
+     * Documents that are neither error nor skip docs are returned as is.
+     * @param document - the error / skip doc returned by the handler
+     * @return - the bounded doc to write, or null if the doc is over the rate limit and should only be counted
+     */
+    public DocumentInterface account(DocumentInterface document) {
+        if (document instanceof ErrorDocInterface) {
+            ErrorDocInterface errorDoc = (ErrorDocInterface) document;
+            increment(errorCountsByReason, reasonExtractor.apply(document));
+            reservoir.offer(errorDoc);
+            if (!errorRateLimiter.tryAcquire()) {
+                suppressedErrorDocs.incrementAndGet();
+                return null;
+            }
+            return boundedErrorDoc(errorDoc);
+        } else if (document instanceof SkipDocInterface) {
+            SkipDocInterface skipDoc = (SkipDocInterface) document;
+            increment(skipCountsByReason, reasonExtractor.apply(document));
+            if (!skipRateLimiter.tryAcquire()) {
+                suppressedSkipDocs.incrementAndGet();
+                return null;
+            }
+            return boundedSkipDoc(skipDoc);
+        }
+        return document;
+    }
+
+    /**
+     * The exact error doc counts by reason
+     * @return - map of reason to count, sorted by reason
+     */
+    public Map<String, Long> getErrorCountsByReason() {
+        return snapshot(errorCountsByReason);
+    }
+
+    /**
+     * The exact skip doc counts by reason
+     * @return - map of reason to count, sorted by reason
+     */
+    public Map<String, Long> getSkipCountsByReason() {
+        return snapshot(skipCountsByReason);
+    }
+
+    /**
+     * The number of error docs that were counted but not written because of the rate limit
+     * @return - the suppressed error doc count
+     */
+    public long getSuppressedErrorDocCount() {
+        return suppressedErrorDocs.get();
+    }
+
+    /**
+     * The number of skip docs that were counted but not written because of the rate limit
+     * @return - the suppressed skip doc count
+     */
+    public long getSuppressedSkipDocCount() {
+        return suppressedSkipDocs.get();
+    }
+
+    /**
+     * A uniform random sample of the error docs seen so far, with their full untruncated payloads
+     * @return - the sampled error docs
+     */
+    public List<ErrorDocInterface> getSampledErrorDocs() {
+        return reservoir.snapshot();
+    }
+
+    private ErrorDocInterface boundedErrorDoc(ErrorDocInterface errorDoc) {
+        Map<String, Object> metadata = new HashMap<>();
+        String errorMessage = truncate(errorDoc.getErrorMessage(), maxMessageLength, metadata);
+        String payload = boundPayload(errorDoc.serialize(), metadata);
+        if (metadata.isEmpty()) {
+            return errorDoc;
+        }
+        metadata = withAccountingMetadata(errorDoc.getDocumentMetadata(), metadata);
+        return new ErrorDoc(errorDoc.getErrorStartOffsetMap(), errorDoc.getErrorEndOffsetMap(), errorMessage, errorDoc.getDocumentId(), errorDoc.getRecordType(), metadata, payload, errorDoc.getPartitionKey());
+    }
+
+    private SkipDocInterface boundedSkipDoc(SkipDocInterface skipDoc) {
+        Map<String, Object> metadata = new HashMap<>();
+        String skipMessage = truncate(skipDoc.getSkipMessage(), maxMessageLength, metadata);
+        String payload = boundPayload(skipDoc.serialize(), metadata);
+        if (metadata.isEmpty()) {
+            return skipDoc;
+        }
+        metadata = withAccountingMetadata(skipDoc.getDocumentMetadata(), metadata);
+        return new SkipDoc(skipDoc.getErrorStartOffsetMap(), skipDoc.getErrorEndOffsetMap(), skipMessage, skipDoc.getDocumentId(), skipDoc.getRecordType(), metadata, payload, skipDoc.getPartitionKey());
+    }
+
+    /**
+     * The doc's metadata with the accounting keys added - the accounting keys are put last so that they are not overwritten by the doc's own keys of the same name
+     */
+    private static Map<String, Object> withAccountingMetadata(Map<String, Object> documentMetadata, Map<String, Object> accountingMetadata) {
+        Map<String, Object> metadata = documentMetadata == null ? new HashMap<String, Object>() : new HashMap<>(documentMetadata);
+        metadata.putAll(accountingMetadata);
+        return metadata;
+    }
+
+    private String boundPayload(String payload, Map<String, Object> metadata) {
+        if (payload == null) {
+            return null;
+        }
+        if (compressPayloadsLongerThan >= 0 && payload.length() > compressPayloadsLongerThan) {
+            String compressed = gzipBase64(payload);
+            // a truncated gzip stream cannot be decoded, so compressed payloads over the limit fall back to truncating the uncompressed payload
+            if (compressed != null && compressed.length() < payload.length() && compressed.length() <= maxPayloadLength) {
+                metadata.put(PAYLOAD_ENCODING_METADATA_KEY, GZIP_BASE64_ENCODING);
+                return compressed;
+            }
+        }
+        return truncate(payload, maxPayloadLength, metadata);
+    }
+
+    /**
+     * Truncates the value to at most maxLength chars, including the truncation suffix
+     */
+    private static String truncate(String value, int maxLength, Map<String, Object> metadata) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        metadata.put(TRUNCATED_METADATA_KEY, true);
+        // reserve room for the suffix - the truncated char count has at most as many digits as the value length
+        int suffixLength = TRUNCATED_SUFFIX_PREFIX.length() + String.valueOf(value.length()).length() + TRUNCATED_SUFFIX_END.length();
+        if (maxLength <= suffixLength) {
+            return value.substring(0, maxLength);
+        }
+        int keep = maxLength - suffixLength;
+        if (Character.isHighSurrogate(value.charAt(keep - 1))) {
+            keep--;
+        }
+        return value.substring(0, keep) + TRUNCATED_SUFFIX_PREFIX + (value.length() - keep) + TRUNCATED_SUFFIX_END;
+    }
+
+    private static String gzipBase64(String payload) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, payload.length() / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+                gzip.write(payload.getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getEncoder().encodeToString(bos.toByteArray());
+        } catch (IOException ex) {
+            logger.error("exception compressing the error doc payload", ex);
+            return null;
+        }
+    }
+
+    private static void increment(ConcurrentHashMap<String, LongAdder> counts, String reason) {
+        counts.computeIfAbsent(reason == null ? "UNKNOWN" : reason, new Function<String, LongAdder>() {
+            @Override
+            public LongAdder apply(String s) {
+                return new LongAdder();
+            }
+        }).increment();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentHashMap<String, LongAdder> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * The default reason for a doc - the error / skip message up to the first " - " or ':' separator (the handler convention is "message - ex: exception"), capped at 128 chars.
+     * Digits are replaced with '#' so that offsets and ids in the message do not explode the number of reasons.
+     * @param document - the error / skip doc
+     * @return - the reason
+     */
+    public static String defaultReason(DocumentInterface document) {
+        String message = null;
+        if (document instanceof ErrorDocInterface) {
+            message = ((ErrorDocInterface) document).getErrorMessage();
+        } else if (document instanceof SkipDocInterface) {
+            message = ((SkipDocInterface) document).getSkipMessage();
+        }
+        if (message == null) {
+            return "UNKNOWN";
+        }
+
+        int end = Math.min(message.length(), MAX_REASON_LENGTH);
+        int separator = message.indexOf(" - ");
+        if (separator >= 0 && separator < end) {
+            end = separator;
+        }
+        separator = message.indexOf(':');
+        if (separator >= 0 && separator < end) {
+            end = separator;
+        }
+
+        StringBuilder sb = new StringBuilder(end);
+        for (int i = 0; i < end; i++) {
+            char ch = message.charAt(i);
+            sb.append(Character.isDigit(ch) ? '#' : ch);
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Token bucket rate limiter - refills at ratePerSecond up to burst tokens
+     */
+    private static class TokenBucket {
+        private final double ratePerNano;
+        private final double burst;
+        private final LongSupplier nanoClock;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double ratePerSecond, double burst, LongSupplier nanoClock) {
+            this.ratePerNano = ratePerSecond / 1_000_000_000d;
+            this.burst = Math.max(1, burst);
+            this.nanoClock = nanoClock;
+            this.tokens = this.burst;
+            this.lastRefillNanos = nanoClock.getAsLong();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = nanoClock.getAsLong();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reservoir sampling (Algorithm R) - keeps a uniform sample of capacity docs from the stream
+     */
+    private static class Reservoir {
+        private final ErrorDocInterface[] samples;
+        private final Random random;
+        private long seen = 0;
+
+        Reservoir(int capacity, Random random) {
+            this.samples = new ErrorDocInterface[capacity];
+            this.random = random;
+        }
+
+        synchronized void offer(ErrorDocInterface errorDoc) {
+            if (samples.length == 0) {
+                return;
+            }
+            seen++;
+            if (seen <= samples.length) {
+                samples[(int) (seen - 1)] = errorDoc;
+            } else {
+                long index = (long) (random.nextDouble() * seen);
+                if (index < samples.length) {
+                    samples[(int) index] = errorDoc;
+                }
+            }
+        }
+
+        synchronized List<ErrorDocInterface> snapshot() {
+            List<ErrorDocInterface> result = new ArrayList<>(samples.length);
+            for (ErrorDocInterface sample : samples) {
+                if (sample != null) {
+                    result.add(sample);
+                }
+            }
+            return result;
+        }
+    }
+
+    public static class Builder {
+        private double maxErrorDocsPerSecond = 100;
+        private double maxSkipDocsPerSecond = 1000;
+        private double burst = 100;
+        private int maxMessageLength = 1024;
+        private int maxPayloadLength = 16 * 1024;
+        private int compressPayloadsLongerThan = -1;
+        private int reservoirSize = 16;
+        private Function<DocumentInterface, String> reasonExtractor = new Function<DocumentInterface, String>() {
+            @Override
+            public String apply(DocumentInterface document) {
+                return defaultReason(document);
+            }
+        };
+        private Random random = new Random();
+        private LongSupplier nanoClock = new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return System.nanoTime();
+            }
+        };
+
+        private Builder() {
+        }
+
+        /**
+         * The maximum rate at which error docs are written - default 100 per second
+         */
+        public Builder maxErrorDocsPerSecond(double maxErrorDocsPerSecond) {
+            ValidationUtils.validateAssertCondition(maxErrorDocsPerSecond >= 0, "maxErrorDocsPerSecond should not be negative");
+            this.maxErrorDocsPerSecond = maxErrorDocsPerSecond;
+            return this;
+        }
+
+        /**
+         * The maximum rate at which skip docs are written - default 1000 per second
+         */
+        public Builder maxSkipDocsPerSecond(double maxSkipDocsPerSecond) {
+            ValidationUtils.validateAssertCondition(maxSkipDocsPerSecond >= 0, "maxSkipDocsPerSecond should not be negative");
+            this.maxSkipDocsPerSecond = maxSkipDocsPerSecond;
+            return this;
+        }
+
+        /**
+         * The number of docs that can be written in a burst above the rate - default 100
+         */
+        public Builder burst(double burst) {
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * The maximum length of the error / skip message in the written docs - default 1024 chars
+         */
+        public Builder maxMessageLength(int maxMessageLength) {
+            ValidationUtils.validateAssertCondition(maxMessageLength > 0, "maxMessageLength should be positive");
+            this.maxMessageLength = maxMessageLength;
+            return this;
+        }
+
+        /**
+         * The maximum length of the serialized payload in the written docs - default 16K chars
+         */
+        public Builder maxPayloadLength(int maxPayloadLength) {
+            ValidationUtils.validateAssertCondition(maxPayloadLength > 0, "maxPayloadLength should be positive");
+            this.maxPayloadLength = maxPayloadLength;
+            return this;
+        }
+
+        /**
+         * Payloads longer than this are gzip + base64 encoded - default -1 (no compression)
+         */
+        public Builder compressPayloadsLongerThan(int compressPayloadsLongerThan) {
+            this.compressPayloadsLongerThan = compressPayloadsLongerThan;
+            return this;
+        }
+
+        /**
+         * The number of full payload error docs to sample - default 16, 0 disables sampling
+         */
+        public Builder reservoirSize(int reservoirSize) {
+            ValidationUtils.validateAssertCondition(reservoirSize >= 0, "reservoirSize should not be negative");
+            this.reservoirSize = reservoirSize;
+            return this;
+        }
+
+        /**
+         * The function that maps a doc to the reason it is counted under - default is defaultReason
+         */
+        public Builder reasonExtractor(Function<DocumentInterface, String> reasonExtractor) {
+            ValidationUtils.validateAssertCondition(reasonExtractor != null, "reasonExtractor should not be null");
+            this.reasonExtractor = reasonExtractor;
+            return this;
+        }
+
+        public Builder random(Random random) {
+            this.random = random;
+            return this;
+        }
+
+        public Builder nanoClock(LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            return this;
+        }
+
+        public ErrorDocAccountant build() {
+            return new ErrorDocAccountant(this);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.resonance.letsdata.data.documents.implementation;
 
 import com.resonance.letsdata.data.documents.interfaces.ErrorDocInterface;
+import com.resonance.letsdata.data.documents.model.DocumentMetadata;
+import com.resonance.letsdata.data.util.DocumentSerializationUtil;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
@@ -75,6 +77,22 @@ public class ErrorDoc implements ErrorDocInterface {
         this.partitionKey = partitionKey;
     }
 
+    /**
+     * Constructs the error doc with compact document metadata - getDocumentMetadata returns the metadata's lazy map view instead of a HashMap of boxed values
+     * @param startOffset - The start offset into the file for the error record in bytes. This is a map of fileType to file offset in bytes
+     * @param endOffset - The end offset into the file for the error record in bytes. This is a map of fileType to file offset in bytes
+     * @param errorMessage - The error message
+     * @param documentId - The documentId of the error doc record
+     * @param recordType - The record type of the error doc
+     * @param documentMetadata - Any metadata to attach with the error records, can be null
+     * @param serialize - The serialized string representation of the error record
+     * @param partitionKey - Identifier to identify the partition key of the record
+     * @return - the error doc
+     */
+    public static ErrorDoc withCompactMetadata(Map<String, String> startOffset, Map<String, String> endOffset, String errorMessage, String documentId, String recordType, DocumentMetadata documentMetadata, String serialize, String partitionKey) {
+        return new ErrorDoc(startOffset, endOffset, errorMessage, documentId, recordType, documentMetadata == null ? null : documentMetadata.asMap(), serialize, partitionKey);
+    }
+
     /**
      * The start offset into the file for the error record in bytes
      * @return Map of fileType to file offset in bytes
@@ -138,6 +156,15 @@ public class ErrorDoc implements ErrorDocInterface {
         return serialize;
     }
 
+    /**
+     * The utf-8 size of the serialized string representation, counted from the field without encoding it
+     * @return the serialized size in bytes
+     */
+    @Override
+    public int estimateSerializedSize() {
+        return DocumentSerializationUtil.utf8Length(serialize);
+    }
+
     /**
      * Identifier to identify the partition key of the record
      * @return the partition key as string
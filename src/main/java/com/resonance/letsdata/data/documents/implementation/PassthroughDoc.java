@@ -0,0 +1,253 @@
+package com.resonance.letsdata.data.documents.implementation;
+
+import com.resonance.letsdata.data.documents.interfaces.BufferBackedDocInterface;
+import com.resonance.letsdata.data.util.ValidationUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The default implementation of the "BufferBackedDocInterface" - a document that forwards the record bytes unchanged to the write destination.
+ *
+ * Parsers that only need to pass the record through (with an id and a partition key) can return a PassthroughDoc over the parse call's byteArr instead of materializing a String:
+ *
+ *      @Override
+ *      public ParseDocumentResult parseDocument(String s3FileType, String s3Filename, long offsetBytes, byte[] byteArr, int startIndex, int endIndex) {
+ *          String documentId = s3Filename + ":" + offsetBytes;
+ *          DocumentInterface doc = PassthroughDoc.view(byteArr, startIndex, endIndex - startIndex, documentId, "LOGLINE", null, s3Filename);
+ *          return new ParseDocumentResult(null, doc, ParseDocumentResultStatus.SUCCESS);
+ *      }
+ *
+ * The serializeTo methods write the (buffer, offset, length) slice directly, serializedBytes returns a copy of the slice. serialize() decodes the bytes as utf-8 for callers that still need a String.
+ *
+ * A view created by PassthroughDoc.view is only valid during the parse call - see the copy-on-retain rule in BufferBackedDocInterface. The reader calls retain() before holding the
+ * document past the parse call, which copies the slice into a buffer the document owns.
+ */
+public class PassthroughDoc implements BufferBackedDocInterface {
+
+    /**
+     * The documentId of the document
+     */
+    private final String documentId;
+
+    /**
+     * The record type of the document
+     */
+    private final String recordType;
+
+    /**
+     * Any metadata to attach with the document
+     */
+    private final Map<String, Object> documentMetadata;
+
+    /**
+     * Identifier to identify the partition key of the record
+     */
+    private final String partitionKey;
+
+    /**
+     * The buffer that has the record bytes
+     */
+    private final byte[] buffer;
+
+    /**
+     * The start of the record in the buffer
+     */
+    private final int offset;
+
+    /**
+     * The length of the record in bytes
+     */
+    private final int length;
+
+    /**
+     * Whether the document owns the buffer
+     */
+    private final boolean retained;
+
+    private PassthroughDoc(byte[] buffer, int offset, int length, boolean retained, String documentId, String recordType, Map<String, Object> documentMetadata, String partitionKey) {
+        ValidationUtils.validateAssertCondition(buffer != null, "passthrough doc buffer should not be null");
+        ValidationUtils.validateAssertCondition(offset >= 0 && length >= 0 && offset + length <= buffer.length, "passthrough doc buffer slice is invalid", offset, length, buffer.length);
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.retained = retained;
+        this.documentId = documentId;
+        this.recordType = recordType;
+        this.documentMetadata = documentMetadata;
+        this.partitionKey = partitionKey;
+    }
+
+    /**
+     * Creates a document that is a view over the reader's buffer - only valid during the parse call, call retain() to hold it longer
+     * @param buffer - the buffer that has the record bytes
+     * @param offset - the start of the record in the buffer
+     * @param length - the length of the record in bytes
+     * @param documentId - The documentId of the document
+     * @param recordType - The record type of the document
+     * @param documentMetadata - Any metadata to attach with the document
+     * @param partitionKey - Identifier to identify the partition key of the record
+     * @return - the passthrough doc view
+     */
+    public static PassthroughDoc view(byte[] buffer, int offset, int length, String documentId, String recordType, Map<String, Object> documentMetadata, String partitionKey) {
+        return new PassthroughDoc(buffer, offset, length, false, documentId, recordType, documentMetadata, partitionKey);
+    }
+
+    /**
+     * Creates a document that copies the record bytes and owns them
+     * @param buffer - the buffer that has the record bytes
+     * @param offset - the start of the record in the buffer
+     * @param length - the length of the record in bytes
+     * @param documentId - The documentId of the document
+     * @param recordType - The record type of the document
+     * @param documentMetadata - Any metadata to attach with the document
+     * @param partitionKey - Identifier to identify the partition key of the record
+     * @return - the passthrough doc that owns its bytes
+     */
+    public static PassthroughDoc copyOf(byte[] buffer, int offset, int length, String documentId, String recordType, Map<String, Object> documentMetadata, String partitionKey) {
+        ValidationUtils.validateAssertCondition(buffer != null && offset >= 0 && length >= 0 && offset + length <= buffer.length, "passthrough doc buffer slice is invalid");
+        return new PassthroughDoc(Arrays.copyOfRange(buffer, offset, offset + length), 0, length, true, documentId, recordType, documentMetadata, partitionKey);
+    }
+
+    @Override
+    public boolean isRetained() {
+        return retained;
+    }
+
+    @Override
+    public PassthroughDoc retain() {
+        if (retained) {
+            return this;
+        }
+        return new PassthroughDoc(Arrays.copyOfRange(buffer, offset, offset + length), 0, length, true, documentId, recordType, documentMetadata, partitionKey);
+    }
+
+    /**
+     * The length of the record in bytes
+     * @return - the serialized length in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * A read only view of the record bytes - subject to the copy-on-retain rule if the document is not retained
+     * @return - the record bytes as a ByteBuffer
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buffer, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * The documentId of the document
+     * @return the documentId
+     */
+    @Override
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * The record type of the document
+     * @return the return type
+     */
+    @Override
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * Any metadata to attach with the document
+     * @return Map of String to Object
+     */
+    @Override
+    public Map<String, Object> getDocumentMetadata() {
+        return documentMetadata;
+    }
+
+    /**
+     * The record bytes decoded as a utf-8 string - prefer the serializeTo / serializedBytes methods which do not decode the bytes
+     * @return serialized string
+     */
+    @Override
+    public String serialize() {
+        return new String(buffer, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A copy of the record bytes - the document's buffer is never returned, so callers cannot modify the document's bytes. Use serializeTo to write the bytes without the copy.
+     * @return the serialized bytes
+     */
+    @Override
+    public byte[] serializedBytes() {
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    @Override
+    public void serializeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, offset, length);
+    }
+
+    @Override
+    public int serializeTo(ByteBuffer byteBuffer) {
+        if (byteBuffer.remaining() < length) {
+            return -1;
+        }
+        byteBuffer.put(buffer, offset, length);
+        return length;
+    }
+
+    @Override
+    public int estimateSerializedSize() {
+        return length;
+    }
+
+    /**
+     * Identifier to identify the partition key of the record
+     * @return the partition key as string
+     */
+    @Override
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    @Override
+    public boolean isSingleDoc() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (!(o instanceof PassthroughDoc)) return false;
+
+        PassthroughDoc that = (PassthroughDoc) o;
+
+        return new EqualsBuilder().append(getDocumentId(), that.getDocumentId()).append(getRecordType(), that.getRecordType()).append(getDocumentMetadata(), that.getDocumentMetadata()).append(getPartitionKey(), that.getPartitionKey()).isEquals()
+                && asByteBuffer().equals(that.asByteBuffer());
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37).append(getDocumentId()).append(getRecordType()).append(getDocumentMetadata()).append(getPartitionKey()).append(asByteBuffer().hashCode()).toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PassthroughDoc{" +
+                "documentId='" + documentId + '\'' +
+                ", recordType='" + recordType + '\'' +
+                ", documentMetadata=" + documentMetadata +
+                ", partitionKey='" + partitionKey + '\'' +
+                ", length=" + length +
+                ", retained=" + retained +
+                '}';
+    }
+}
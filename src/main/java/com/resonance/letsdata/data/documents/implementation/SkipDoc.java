@@ -1,6 +1,8 @@
 package com.resonance.letsdata.data.documents.implementation;
 
 import com.resonance.letsdata.data.documents.interfaces.SkipDocInterface;
+import com.resonance.letsdata.data.documents.model.DocumentMetadata;
+import com.resonance.letsdata.data.util.DocumentSerializationUtil;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
@@ -76,6 +78,22 @@ public class SkipDoc implements SkipDocInterface {
         this.partitionKey = partitionKey;
     }
 
+    /**
+     * Constructs the skip doc with compact document metadata - getDocumentMetadata returns the metadata's lazy map view instead of a HashMap of boxed values
+     * @param startOffset - The start offset into the file for the skip record in bytes. This is a map of fileType to file offset in bytes
+     * @param endOffset - The end offset into the file for the skip record in bytes. This is a map of fileType to file offset in bytes
+     * @param skipMessage - The skip message
+     * @param documentId - The documentId of the skip doc record
+     * @param recordType - The record type of the skip doc
+     * @param documentMetadata - Any metadata to attach with the skip records, can be null
+     * @param serialize - The serialized string representation of the skip record
+     * @param partitionKey - Identifier to identify the partition key of the record
+     * @return - the skip doc
+     */
+    public static SkipDoc withCompactMetadata(Map<String, String> startOffset, Map<String, String> endOffset, String skipMessage, String documentId, String recordType, DocumentMetadata documentMetadata, String serialize, String partitionKey) {
+        return new SkipDoc(startOffset, endOffset, skipMessage, documentId, recordType, documentMetadata == null ? null : documentMetadata.asMap(), serialize, partitionKey);
+    }
+
     /**
      * The start offset into the file for the error record in bytes
      * @return - Map of fileType to file offset in bytes
@@ -140,6 +158,15 @@ public class SkipDoc implements SkipDocInterface {
         return serialize;
     }
 
+    /**
+     * The utf-8 size of the serialized string representation, counted from the field without encoding it
+     * @return the serialized size in bytes
+     */
+    @Override
+    public int estimateSerializedSize() {
+        return DocumentSerializationUtil.utf8Length(serialize);
+    }
+
     /**
      * Identifier to identify the partition key of the record
      * @return the partition key as string
@@ -0,0 +1,148 @@
+package com.resonance.letsdata.data.documents.implementation;
+
+import com.resonance.letsdata.data.documents.interfaces.CompositeDocInterface;
+import com.resonance.letsdata.data.documents.interfaces.CompositeDocVisitor;
+import com.resonance.letsdata.data.documents.interfaces.ErrorDocInterface;
+import com.resonance.letsdata.data.documents.interfaces.SingleDocInterface;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A composite doc whose error docs are streamed rather than held in a list.
+ *
+ * The reader that assembles the composite doc (for example a MultipleFileStateMachineReader) passes an iterator that produces the error docs lazily - each error doc is created
+ * when the writer asks for it through accept(CompositeDocVisitor) and is released once the visitor returns, so the reader can release the record buffers early and peak memory
+ * stays flat on error dense files.
+ *
+ *      CompositeDocInterface doc = new StreamingCompositeDoc(outputDoc, new Iterator&lt;ErrorDocInterface&gt;() {
+ *          public boolean hasNext() { return fileReader.hasPendingErrorRecord(); }
+ *          public ErrorDocInterface next() { return fileReader.nextErrorDoc(); }
+ *      });
+ *
+ * The error docs can be streamed only once. getDocumentList() is supported for compatibility and materializes the remaining error docs into a list the first time it is called.
+ * The DocumentInterface methods delegate to the document to persist and return null when there is none.
+ */
+public class StreamingCompositeDoc implements CompositeDocInterface {
+
+    /**
+     * The document to persist for the composite doc, can be null if the composite doc only has errors
+     */
+    private final SingleDocInterface document;
+
+    /**
+     * The lazily produced error docs
+     */
+    private Iterator<ErrorDocInterface> errorDocs;
+
+    /**
+     * The materialized document list, set when getDocumentList is called
+     */
+    private Map.Entry<SingleDocInterface, List<ErrorDocInterface>> documentList;
+
+    /**
+     * Constructs the streaming composite doc
+     * @param document - the document to persist for the composite doc, can be null if the composite doc only has errors
+     * @param errorDocs - the iterator that produces the error docs, can be null if there are no errors
+     */
+    public StreamingCompositeDoc(SingleDocInterface document, Iterator<ErrorDocInterface> errorDocs) {
+        this.document = document;
+        this.errorDocs = errorDocs == null ? Collections.<ErrorDocInterface>emptyIterator() : errorDocs;
+    }
+
+    @Override
+    public void accept(CompositeDocVisitor visitor) {
+        if (documentList != null) {
+            CompositeDocInterface.super.accept(visitor);
+            return;
+        }
+        ValidationUtils.validateAssertCondition(errorDocs != null, "streaming composite doc can only be visited once");
+        Iterator<ErrorDocInterface> iterator = errorDocs;
+        errorDocs = null;
+        if (document != null && !visitor.visitDocument(document)) {
+            return;
+        }
+        while (iterator.hasNext()) {
+            if (!visitor.visitErrorDoc(iterator.next())) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Map.Entry<SingleDocInterface, List<ErrorDocInterface>> getDocumentList() {
+        if (documentList == null) {
+            ValidationUtils.validateAssertCondition(errorDocs != null, "streaming composite doc error docs have already been visited");
+            List<ErrorDocInterface> errors = new ArrayList<>();
+            while (errorDocs.hasNext()) {
+                errors.add(errorDocs.next());
+            }
+            errorDocs = null;
+            documentList = new AbstractMap.SimpleImmutableEntry<>(document, errors);
+        }
+        return documentList;
+    }
+
+    @Override
+    public String getDocumentId() {
+        return document == null ? null : document.getDocumentId();
+    }
+
+    @Override
+    public String getRecordType() {
+        return document == null ? null : document.getRecordType();
+    }
+
+    @Override
+    public Map<String, Object> getDocumentMetadata() {
+        return document == null ? null : document.getDocumentMetadata();
+    }
+
+    @Override
+    public String serialize() {
+        return document == null ? null : document.serialize();
+    }
+
+    @Override
+    public byte[] serializedBytes() {
+        return document == null ? null : document.serializedBytes();
+    }
+
+    @Override
+    public void serializeTo(OutputStream outputStream) throws IOException {
+        if (document != null) {
+            document.serializeTo(outputStream);
+        }
+    }
+
+    @Override
+    public int serializeTo(ByteBuffer buffer) {
+        return document == null ? 0 : document.serializeTo(buffer);
+    }
+
+    @Override
+    public int estimateSerializedSize() {
+        return document == null ? 0 : document.estimateSerializedSize();
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return document == null ? null : document.getPartitionKey();
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingCompositeDoc{" +
+                "document=" + document +
+                ", documentList=" + documentList +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package com.resonance.letsdata.data.documents.interfaces;
+
+/**
+ * The "BufferBackedDocInterface" extends the "SingleDocInterface" and is the base interface for documents that are a view over the reader's record buffer rather than owning their contents.
+ * A default implementation for the interface is provided at "com.resonance.letsdata.data.documents.implementation.PassthroughDoc".
+ *
+ * Copy-on-retain rule: the reader reuses its record buffer once the parse call returns, so a buffer backed document is only valid during the parse call that created it.
+ * Anyone that holds on to the document after the parse call returns (the writer's batches, the lastProcessedDoc, a composite doc) must hold the document returned by retain() instead.
+ * retain() copies the record bytes into a buffer that the document owns, and is a no-op for documents that already own their bytes.
+ */
+public interface BufferBackedDocInterface extends SingleDocInterface {
+    /**
+     * Whether the document owns its bytes or is a view over a buffer that the reader may reuse
+     * @return - true if the document owns its bytes and can be held after the parse call returns
+     */
+    boolean isRetained();
+
+    /**
+     * Returns a document that owns its bytes - a copy of the bytes is made if the document is a view over the reader's buffer, otherwise the document itself is returned
+     * @return - a document that is safe to hold after the parse call returns
+     */
+    BufferBackedDocInterface retain();
+}
@@ -1,6 +1,5 @@
 package com.resonance.letsdata.data.documents.interfaces;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,4 +35,27 @@ public interface CompositeDocInterface extends DocumentInterface {
      * @return
      */
     Map.Entry<SingleDocInterface, List<ErrorDocInterface>> getDocumentList();
+
+    /**
+     * Streams the composite doc's members to the visitor one at a time - the document to persist first (if any), followed by each of the error docs.
+     * Writers should prefer this method over getDocumentList so that error dense composite docs do not need to materialize their error docs in a list.
+     * The default implementation visits the getDocumentList() entry, implementations such as StreamingCompositeDoc produce the members lazily.
+     * @param visitor - the visitor
+     */
+    default void accept(CompositeDocVisitor visitor) {
+        Map.Entry<SingleDocInterface, List<ErrorDocInterface>> documentList = getDocumentList();
+        if (documentList == null) {
+            return;
+        }
+        if (documentList.getKey() != null && !visitor.visitDocument(documentList.getKey())) {
+            return;
+        }
+        if (documentList.getValue() != null) {
+            for (ErrorDocInterface errorDoc : documentList.getValue()) {
+                if (!visitor.visitErrorDoc(errorDoc)) {
+                    return;
+                }
+            }
+        }
+    }
 }
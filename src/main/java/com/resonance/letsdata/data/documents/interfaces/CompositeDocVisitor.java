@@ -0,0 +1,21 @@
+package com.resonance.letsdata.data.documents.interfaces;
+
+/**
+ * Visitor for the members of a composite document - see CompositeDocInterface.accept.
+ * The writer implements this interface to process the composite doc's members one at a time instead of materializing the getDocumentList() entry.
+ */
+public interface CompositeDocVisitor {
+    /**
+     * Called with the document that should be persisted for the composite doc. Called at most once, before any error docs.
+     * @param document - the document to persist
+     * @return - true to continue visiting, false to stop
+     */
+    boolean visitDocument(SingleDocInterface document);
+
+    /**
+     * Called with each of the composite doc's error docs, in order
+     * @param errorDoc - the error doc
+     * @return - true to continue visiting, false to stop
+     */
+    boolean visitErrorDoc(ErrorDocInterface errorDoc);
+}
@@ -1,5 +1,11 @@
 package com.resonance.letsdata.data.documents.interfaces;
 
+import com.resonance.letsdata.data.util.DocumentSerializationUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
@@ -30,6 +36,49 @@ public interface DocumentInterface {
      */
     String serialize();
 
+    /**
+     * Serializes the document to utf-8 bytes that can be written to the destination.
+     * The default implementation encodes the serialize() string - documents that can produce the bytes directly should override this and the serializeTo methods.
+     * @return serialized document as utf-8 bytes, null if the serialized document is null
+     */
+    default byte[] serializedBytes() {
+        String serialized = serialize();
+        return serialized == null ? null : serialized.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the utf-8 serialized document to the output stream. The writers call this with pooled buffers (see DocumentSerializationUtil.serializeToPooledBuffer).
+     * The default implementation writes the serializedBytes().
+     * @param outputStream - the stream to write the serialized document to
+     * @throws IOException - exception writing to the stream
+     */
+    default void serializeTo(OutputStream outputStream) throws IOException {
+        byte[] bytes = serializedBytes();
+        if (bytes != null) {
+            outputStream.write(bytes);
+        }
+    }
+
+    /**
+     * Writes the utf-8 serialized document to the buffer at its current position.
+     * The default implementation encodes the serialize() string directly into the buffer.
+     * @param buffer - the buffer to write the serialized document to
+     * @return the number of bytes written, or -1 if the buffer does not have enough remaining space (the buffer position is left unchanged in this case)
+     */
+    default int serializeTo(ByteBuffer buffer) {
+        return DocumentSerializationUtil.encodeUtf8(serialize(), buffer);
+    }
+
+    /**
+     * A cheap estimate of the utf-8 serialized size of the document in bytes, used by the writers to size their batches without encoding the document.
+     * The default implementation counts the utf-8 bytes of the serialize() string without allocating the encoded bytes - documents whose serialize() builds the string on each
+     * call can override this with an estimate computed from their fields.
+     * @return the estimated serialized size in bytes
+     */
+    default int estimateSerializedSize() {
+        return DocumentSerializationUtil.utf8Length(serialize());
+    }
+
     /**
      * The partition key of the document - useful to determine the partition for the document that would be written to
      * @return the partition key for the document
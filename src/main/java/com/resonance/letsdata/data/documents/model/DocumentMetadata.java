@@ -0,0 +1,263 @@
+package com.resonance.letsdata.data.documents.model;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact metadata container for documents, an alternative to a HashMap of boxed values per document.
+ *
+ * The field layout comes from a DocumentMetadataSchema - long and double fields are stored in primitive arrays, other fields in an object array, and the set fields are tracked in a bitmap.
+ * The asMap() method returns a lazy, read only Map view for the DocumentInterface.getDocumentMetadata() contract - values are boxed only when the view is read.
+ *
+ * This class is not thread safe - a document's metadata is expected to be set by the handler that creates the document and only read afterwards.
+ */
+public class DocumentMetadata {
+    private final DocumentMetadataSchema schema;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+    private final long[] presentBits;
+    private Map<String, Object> mapView;
+
+    DocumentMetadata(DocumentMetadataSchema schema) {
+        this.schema = schema;
+        this.longs = schema.getLongSlotCount() == 0 ? null : new long[schema.getLongSlotCount()];
+        this.doubles = schema.getDoubleSlotCount() == 0 ? null : new double[schema.getDoubleSlotCount()];
+        this.objects = schema.getObjectSlotCount() == 0 ? null : new Object[schema.getObjectSlotCount()];
+        this.presentBits = new long[(schema.getFieldCount() + 63) >>> 6];
+    }
+
+    public DocumentMetadataSchema getSchema() {
+        return schema;
+    }
+
+    public DocumentMetadata setLong(int fieldIndex, long value) {
+        checkType(fieldIndex, DocumentMetadataSchema.FieldType.LONG);
+        longs[schema.getFieldSlot(fieldIndex)] = value;
+        markPresent(fieldIndex);
+        return this;
+    }
+
+    public DocumentMetadata setDouble(int fieldIndex, double value) {
+        checkType(fieldIndex, DocumentMetadataSchema.FieldType.DOUBLE);
+        doubles[schema.getFieldSlot(fieldIndex)] = value;
+        markPresent(fieldIndex);
+        return this;
+    }
+
+    /**
+     * Sets an object field - setting null clears the field
+     */
+    public DocumentMetadata setObject(int fieldIndex, Object value) {
+        checkType(fieldIndex, DocumentMetadataSchema.FieldType.OBJECT);
+        objects[schema.getFieldSlot(fieldIndex)] = value;
+        if (value == null) {
+            clear(fieldIndex);
+        } else {
+            markPresent(fieldIndex);
+        }
+        return this;
+    }
+
+    public DocumentMetadata setLong(String fieldName, long value) {
+        return setLong(requireField(fieldName), value);
+    }
+
+    public DocumentMetadata setDouble(String fieldName, double value) {
+        return setDouble(requireField(fieldName), value);
+    }
+
+    public DocumentMetadata setObject(String fieldName, Object value) {
+        return setObject(requireField(fieldName), value);
+    }
+
+    public void clear(int fieldIndex) {
+        presentBits[fieldIndex >>> 6] &= ~(1L << fieldIndex);
+        if (schema.getFieldType(fieldIndex) == DocumentMetadataSchema.FieldType.OBJECT) {
+            objects[schema.getFieldSlot(fieldIndex)] = null;
+        }
+    }
+
+    public boolean isPresent(int fieldIndex) {
+        return (presentBits[fieldIndex >>> 6] & (1L << fieldIndex)) != 0;
+    }
+
+    /**
+     * The long value of the field
+     * @param fieldIndex - the schema field index
+     * @param defaultValue - the value returned if the field is not set
+     * @return - the field value
+     */
+    public long getLong(int fieldIndex, long defaultValue) {
+        checkType(fieldIndex, DocumentMetadataSchema.FieldType.LONG);
+        return isPresent(fieldIndex) ? longs[schema.getFieldSlot(fieldIndex)] : defaultValue;
+    }
+
+    /**
+     * The double value of the field
+     * @param fieldIndex - the schema field index
+     * @param defaultValue - the value returned if the field is not set
+     * @return - the field value
+     */
+    public double getDouble(int fieldIndex, double defaultValue) {
+        checkType(fieldIndex, DocumentMetadataSchema.FieldType.DOUBLE);
+        return isPresent(fieldIndex) ? doubles[schema.getFieldSlot(fieldIndex)] : defaultValue;
+    }
+
+    public Object getObject(int fieldIndex) {
+        checkType(fieldIndex, DocumentMetadataSchema.FieldType.OBJECT);
+        return objects[schema.getFieldSlot(fieldIndex)];
+    }
+
+    /**
+     * The field value boxed as an Object, regardless of the field type
+     * @param fieldIndex - the schema field index
+     * @return - the field value or null if the field is not set
+     */
+    public Object get(int fieldIndex) {
+        if (!isPresent(fieldIndex)) {
+            return null;
+        }
+        int slot = schema.getFieldSlot(fieldIndex);
+        switch (schema.getFieldType(fieldIndex)) {
+            case LONG: {
+                return longs[slot];
+            }
+            case DOUBLE: {
+                return doubles[slot];
+            }
+            default: {
+                return objects[slot];
+            }
+        }
+    }
+
+    /**
+     * The number of fields that are set
+     * @return - the set field count
+     */
+    public int size() {
+        int size = 0;
+        for (long bits : presentBits) {
+            size += Long.bitCount(bits);
+        }
+        return size;
+    }
+
+    /**
+     * A lazy, read only Map view of the set fields for the DocumentInterface.getDocumentMetadata() contract.
+     * The view reflects later changes to the metadata, values are boxed on read.
+     * @return - the map view
+     */
+    public Map<String, Object> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DocumentMetadata)) return false;
+        return asMap().equals(((DocumentMetadata) o).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentMetadata" + asMap();
+    }
+
+    private int requireField(String fieldName) {
+        int fieldIndex = schema.fieldIndex(fieldName);
+        ValidationUtils.validateAssertCondition(fieldIndex >= 0, "metadata field is not in the schema", fieldName);
+        return fieldIndex;
+    }
+
+    private void checkType(int fieldIndex, DocumentMetadataSchema.FieldType fieldType) {
+        if (schema.getFieldType(fieldIndex) != fieldType) {
+            throw new RuntimeException("metadata field type mismatch - field: " + schema.getFieldName(fieldIndex) + ", type: " + schema.getFieldType(fieldIndex) + ", accessed as: " + fieldType);
+        }
+    }
+
+    private void markPresent(int fieldIndex) {
+        presentBits[fieldIndex >>> 6] |= 1L << fieldIndex;
+    }
+
+    private int nextPresent(int fromIndex) {
+        for (int i = fromIndex; i < schema.getFieldCount(); i++) {
+            if (isPresent(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private class MapView extends AbstractMap<String, Object> {
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int fieldIndex = schema.fieldIndex((String) key);
+            return fieldIndex < 0 ? null : DocumentMetadata.this.get(fieldIndex);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            int fieldIndex = schema.fieldIndex((String) key);
+            return fieldIndex >= 0 && isPresent(fieldIndex);
+        }
+
+        @Override
+        public int size() {
+            return DocumentMetadata.this.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next = nextPresent(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next >= 0;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (next < 0) {
+                                throw new NoSuchElementException();
+                            }
+                            int fieldIndex = next;
+                            next = nextPresent(fieldIndex + 1);
+                            return new SimpleImmutableEntry<>(schema.getFieldName(fieldIndex), DocumentMetadata.this.get(fieldIndex));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return DocumentMetadata.this.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.resonance.letsdata.data.documents.model;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The slot layout for DocumentMetadata. The schema declares the well known metadata fields of a document type and assigns each field a slot in the DocumentMetadata's
+ * typed arrays - longs and doubles are stored in primitive slots, everything else in object slots.
+ *
+ * Declare the schema once (typically as a static field) and create a DocumentMetadata per document:
+ *
+ *      private static final DocumentMetadataSchema SCHEMA = DocumentMetadataSchema.builder()
+ *              .longField("timestamp")
+ *              .doubleField("score")
+ *              .objectField("language")
+ *              .build();
+ *      private static final int TIMESTAMP = SCHEMA.fieldIndex("timestamp");
+ *
+ *      DocumentMetadata metadata = SCHEMA.newMetadata();
+ *      metadata.setLong(TIMESTAMP, 1647352053448L);
+ *
+ * Schemas are immutable and safe to share across threads.
+ */
+public class DocumentMetadataSchema {
+    public enum FieldType {
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    private final String[] fieldNames;
+    private final FieldType[] fieldTypes;
+    private final int[] fieldSlots;
+    private final Map<String, Integer> fieldIndexMap;
+    private final int longSlotCount;
+    private final int doubleSlotCount;
+    private final int objectSlotCount;
+
+    private DocumentMetadataSchema(LinkedHashMap<String, FieldType> fields) {
+        int fieldCount = fields.size();
+        this.fieldNames = new String[fieldCount];
+        this.fieldTypes = new FieldType[fieldCount];
+        this.fieldSlots = new int[fieldCount];
+        Map<String, Integer> indexMap = new HashMap<>();
+        int longs = 0;
+        int doubles = 0;
+        int objects = 0;
+        int index = 0;
+        for (Map.Entry<String, FieldType> entry : fields.entrySet()) {
+            fieldNames[index] = entry.getKey();
+            fieldTypes[index] = entry.getValue();
+            switch (entry.getValue()) {
+                case LONG: {
+                    fieldSlots[index] = longs++;
+                    break;
+                }
+                case DOUBLE: {
+                    fieldSlots[index] = doubles++;
+                    break;
+                }
+                case OBJECT: {
+                    fieldSlots[index] = objects++;
+                    break;
+                }
+                default: {
+                    throw new RuntimeException("Unexpected field type");
+                }
+            }
+            indexMap.put(entry.getKey(), index);
+            index++;
+        }
+        this.fieldIndexMap = Collections.unmodifiableMap(indexMap);
+        this.longSlotCount = longs;
+        this.doubleSlotCount = doubles;
+        this.objectSlotCount = objects;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates an empty metadata container with this schema's slot layout
+     * @return - the metadata container
+     */
+    public DocumentMetadata newMetadata() {
+        return new DocumentMetadata(this);
+    }
+
+    /**
+     * The index of the field - use the index with the DocumentMetadata's indexed accessors to avoid the name lookup per document
+     * @param fieldName - the field name
+     * @return - the field index or -1 if the field is not in the schema
+     */
+    public int fieldIndex(String fieldName) {
+        Integer index = fieldIndexMap.get(fieldName);
+        return index == null ? -1 : index;
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int fieldIndex) {
+        return fieldNames[fieldIndex];
+    }
+
+    public FieldType getFieldType(int fieldIndex) {
+        return fieldTypes[fieldIndex];
+    }
+
+    int getFieldSlot(int fieldIndex) {
+        return fieldSlots[fieldIndex];
+    }
+
+    int getLongSlotCount() {
+        return longSlotCount;
+    }
+
+    int getDoubleSlotCount() {
+        return doubleSlotCount;
+    }
+
+    int getObjectSlotCount() {
+        return objectSlotCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DocumentMetadataSchema{");
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(fieldNames[i]).append(':').append(fieldTypes[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    public static class Builder {
+        private final LinkedHashMap<String, FieldType> fields = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder longField(String fieldName) {
+            return field(fieldName, FieldType.LONG);
+        }
+
+        public Builder doubleField(String fieldName) {
+            return field(fieldName, FieldType.DOUBLE);
+        }
+
+        public Builder objectField(String fieldName) {
+            return field(fieldName, FieldType.OBJECT);
+        }
+
+        public Builder field(String fieldName, FieldType fieldType) {
+            ValidationUtils.validateAssertCondition(fieldName != null && fieldType != null, "metadata field name and type should not be null");
+            ValidationUtils.validateAssertCondition(!fields.containsKey(fieldName), "metadata field is already declared", fieldName);
+            fields.put(fieldName, fieldType);
+            return this;
+        }
+
+        public DocumentMetadataSchema build() {
+            return new DocumentMetadataSchema(fields);
+        }
+    }
+}
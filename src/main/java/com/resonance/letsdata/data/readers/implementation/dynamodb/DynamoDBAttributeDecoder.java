@@ -0,0 +1,58 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes a single raw DynamoDB attribute value (an SDK AttributeValue, a DynamoDB JSON element etc.) for the LazyDynamoDBItem. Typed methods decode straight to the requested type
+ * without building the intermediate Object. The methods throw a RuntimeException when the attribute's type cannot be decoded to the requested type.
+ *
+ * @param <R> - the raw attribute value type
+ */
+public interface DynamoDBAttributeDecoder<R> {
+    /**
+     * Decodes the attribute to its Map&lt;String, Object&gt; representation:
+     *
+     *      * S: String, N: BigDecimal, B: ByteBuffer, BOOL: Boolean, NULL: null
+     *      * SS: Set&lt;String&gt;, NS: Set&lt;BigDecimal&gt;, BS: Set&lt;ByteBuffer&gt;
+     *      * L: List&lt;Object&gt;, M: Map&lt;String, Object&gt; (nested values decoded recursively)
+     *
+     * @param value - the raw attribute value
+     * @return - the decoded value
+     */
+    Object toObject(R value);
+
+    /**
+     * Decodes an N attribute to a long
+     * @param value - the raw attribute value
+     * @return - the long value
+     */
+    long toLong(R value);
+
+    /**
+     * Decodes an N attribute to a double
+     * @param value - the raw attribute value
+     * @return - the double value
+     */
+    double toDouble(R value);
+
+    /**
+     * Decodes an S attribute (or the string form of an N attribute)
+     * @param value - the raw attribute value
+     * @return - the string value
+     */
+    String toStringValue(R value);
+
+    /**
+     * Decodes a B attribute
+     * @param value - the raw attribute value
+     * @return - the binary value, a read only buffer
+     */
+    ByteBuffer toBinary(R value);
+
+    /**
+     * Whether the attribute is a NULL attribute
+     * @param value - the raw attribute value
+     * @return - true for NULL attributes
+     */
+    boolean isNull(R value);
+}
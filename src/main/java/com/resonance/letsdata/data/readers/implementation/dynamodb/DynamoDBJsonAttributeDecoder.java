@@ -0,0 +1,156 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodes DynamoDB JSON attribute values - the wire format used by the DynamoDB APIs and the DynamoDB Streams records, where each value is an object with a single type key:
+ *
+ *      {"S": "abc"}, {"N": "12.5"}, {"B": "base64"}, {"BOOL": true}, {"NULL": true}, {"SS": ["a", "b"]}, {"NS": ["1", "2"]}, {"BS": ["base64"]}, {"L": [...]}, {"M": {...}}
+ *
+ * The decoder is stateless and thread safe.
+ */
+public class DynamoDBJsonAttributeDecoder implements DynamoDBAttributeDecoder<JsonElement> {
+    public static final DynamoDBJsonAttributeDecoder INSTANCE = new DynamoDBJsonAttributeDecoder();
+
+    @Override
+    public Object toObject(JsonElement value) {
+        JsonObject attribute = attribute(value);
+        String type = type(attribute);
+        JsonElement typedValue = attribute.get(type);
+        switch (type) {
+            case "S": {
+                return typedValue.getAsString();
+            }
+            case "N": {
+                return new BigDecimal(typedValue.getAsString());
+            }
+            case "B": {
+                return decodeBinary(typedValue);
+            }
+            case "BOOL": {
+                return typedValue.getAsBoolean();
+            }
+            case "NULL": {
+                return null;
+            }
+            case "SS": {
+                Set<String> set = new LinkedHashSet<>();
+                for (JsonElement element : typedValue.getAsJsonArray()) {
+                    set.add(element.getAsString());
+                }
+                return set;
+            }
+            case "NS": {
+                Set<BigDecimal> set = new LinkedHashSet<>();
+                for (JsonElement element : typedValue.getAsJsonArray()) {
+                    set.add(new BigDecimal(element.getAsString()));
+                }
+                return set;
+            }
+            case "BS": {
+                Set<ByteBuffer> set = new LinkedHashSet<>();
+                for (JsonElement element : typedValue.getAsJsonArray()) {
+                    set.add(decodeBinary(element));
+                }
+                return set;
+            }
+            case "L": {
+                JsonArray array = typedValue.getAsJsonArray();
+                List<Object> list = new ArrayList<>(array.size());
+                for (JsonElement element : array) {
+                    list.add(toObject(element));
+                }
+                return list;
+            }
+            case "M": {
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (Map.Entry<String, JsonElement> entry : typedValue.getAsJsonObject().entrySet()) {
+                    map.put(entry.getKey(), toObject(entry.getValue()));
+                }
+                return map;
+            }
+            default: {
+                throw new RuntimeException("unsupported DynamoDB attribute type - type: " + type);
+            }
+        }
+    }
+
+    @Override
+    public long toLong(JsonElement value) {
+        String number = typedValue(value, "N");
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException ex) {
+            return new BigDecimal(number).longValueExact();
+        }
+    }
+
+    @Override
+    public double toDouble(JsonElement value) {
+        return Double.parseDouble(typedValue(value, "N"));
+    }
+
+    @Override
+    public String toStringValue(JsonElement value) {
+        JsonObject attribute = attribute(value);
+        String type = type(attribute);
+        if (!"S".equals(type) && !"N".equals(type)) {
+            throw new RuntimeException("DynamoDB attribute is not a string - type: " + type);
+        }
+        return attribute.get(type).getAsString();
+    }
+
+    @Override
+    public ByteBuffer toBinary(JsonElement value) {
+        JsonObject attribute = attribute(value);
+        String type = type(attribute);
+        if (!"B".equals(type)) {
+            throw new RuntimeException("DynamoDB attribute is not binary - type: " + type);
+        }
+        return decodeBinary(attribute.get(type));
+    }
+
+    @Override
+    public boolean isNull(JsonElement value) {
+        return attribute(value).has("NULL");
+    }
+
+    private static String typedValue(JsonElement value, String expectedType) {
+        JsonObject attribute = attribute(value);
+        JsonElement typedValue = attribute.get(expectedType);
+        if (typedValue == null) {
+            throw new RuntimeException("DynamoDB attribute type mismatch - expected: " + expectedType + ", type: " + type(attribute));
+        }
+        return typedValue.getAsString();
+    }
+
+    private static JsonObject attribute(JsonElement value) {
+        if (value == null || !value.isJsonObject()) {
+            throw new RuntimeException("DynamoDB attribute value should be a json object - value: " + value);
+        }
+        return value.getAsJsonObject();
+    }
+
+    private static String type(JsonObject attribute) {
+        if (attribute.size() != 1) {
+            throw new RuntimeException("DynamoDB attribute value should have a single type key - value: " + attribute);
+        }
+        return attribute.keySet().iterator().next();
+    }
+
+    private static ByteBuffer decodeBinary(JsonElement element) {
+        return ByteBuffer.wrap(Base64.getDecoder().decode(element.getAsString())).asReadOnlyBuffer();
+    }
+}
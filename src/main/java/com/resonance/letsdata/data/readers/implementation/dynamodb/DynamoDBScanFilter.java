@@ -0,0 +1,268 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A structured DynamoDB scan filter that renders to a FilterExpression (with expression attribute names and values) for the scan request and evaluates against
+ * Map&lt;String, Object&gt; items for local table stand-ins.
+ *
+ *      DynamoDBScanFilter filter = DynamoDBScanFilter.and(
+ *              DynamoDBScanFilter.equalTo("status", "ACTIVE"),
+ *              DynamoDBScanFilter.greaterThan("version", 3),
+ *              DynamoDBScanFilter.not(DynamoDBScanFilter.attributeExists("deletedAt")));
+ *
+ * Values are Strings, Numbers or ByteBuffers (binary) - numbers are compared by value. Filters apply to top level attributes.
+ */
+public abstract class DynamoDBScanFilter {
+    public enum Comparator {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String operator;
+
+        Comparator(String operator) {
+            this.operator = operator;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+    }
+
+    /**
+     * Renders the filter into the filter expression
+     * @param expression - the expression being rendered
+     */
+    abstract void render(DynamoDBScanProjection.RenderedExpression.Builder expression);
+
+    /**
+     * Evaluates the filter against an item
+     * @param item - the item
+     * @return - true if the item passes the filter
+     */
+    public abstract boolean matches(Map<String, Object> item);
+
+    public static DynamoDBScanFilter comparison(String attributeName, Comparator comparator, Object value) {
+        ValidationUtils.validateAssertCondition(attributeName != null && comparator != null, "attributeName and comparator should not be null");
+        validateValue(value);
+        return new ComparisonFilter(attributeName, comparator, value);
+    }
+
+    public static DynamoDBScanFilter equalTo(String attributeName, Object value) {
+        return comparison(attributeName, Comparator.EQ, value);
+    }
+
+    public static DynamoDBScanFilter notEqualTo(String attributeName, Object value) {
+        return comparison(attributeName, Comparator.NE, value);
+    }
+
+    public static DynamoDBScanFilter lessThan(String attributeName, Object value) {
+        return comparison(attributeName, Comparator.LT, value);
+    }
+
+    public static DynamoDBScanFilter greaterThan(String attributeName, Object value) {
+        return comparison(attributeName, Comparator.GT, value);
+    }
+
+    public static DynamoDBScanFilter attributeExists(String attributeName) {
+        ValidationUtils.validateAssertCondition(attributeName != null, "attributeName should not be null");
+        return new ExistsFilter(attributeName);
+    }
+
+    public static DynamoDBScanFilter beginsWith(String attributeName, String prefix) {
+        ValidationUtils.validateAssertCondition(attributeName != null && prefix != null, "attributeName and prefix should not be null");
+        return new BeginsWithFilter(attributeName, prefix);
+    }
+
+    public static DynamoDBScanFilter and(DynamoDBScanFilter... filters) {
+        ValidationUtils.validateAssertCondition(filters != null && filters.length > 0, "filters should not be empty");
+        return new CompositeFilter(true, Arrays.asList(filters));
+    }
+
+    public static DynamoDBScanFilter or(DynamoDBScanFilter... filters) {
+        ValidationUtils.validateAssertCondition(filters != null && filters.length > 0, "filters should not be empty");
+        return new CompositeFilter(false, Arrays.asList(filters));
+    }
+
+    public static DynamoDBScanFilter not(DynamoDBScanFilter filter) {
+        ValidationUtils.validateAssertCondition(filter != null, "filter should not be null");
+        return new NotFilter(filter);
+    }
+
+    private static void validateValue(Object value) {
+        ValidationUtils.validateAssertCondition(value instanceof String || value instanceof Number || value instanceof ByteBuffer, "filter value should be a String, Number or ByteBuffer", value);
+    }
+
+    /**
+     * Compares two DynamoDB scalar values of the same type - numbers by value, strings lexicographically and binaries by unsigned bytes
+     * @return - the comparison result, null if the values are not comparable (different types)
+     */
+    static Integer compareValues(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return toBigDecimal((Number) left).compareTo(toBigDecimal((Number) right));
+        }
+        if (left instanceof String && right instanceof String) {
+            return ((String) left).compareTo((String) right);
+        }
+        if (left instanceof ByteBuffer && right instanceof ByteBuffer) {
+            ByteBuffer l = (ByteBuffer) left;
+            ByteBuffer r = (ByteBuffer) right;
+            int length = Math.min(l.remaining(), r.remaining());
+            for (int i = 0; i < length; i++) {
+                int cmp = Integer.compare(l.get(l.position() + i) & 0xFF, r.get(r.position() + i) & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(l.remaining(), r.remaining());
+        }
+        return null;
+    }
+
+    /**
+     * The numeric value of a DynamoDB number - decoded N attributes are BigDecimals, user supplied values may be any Number. Compare the results with compareTo to compare numbers
+     * by value (1, 1.0 and 1L are equal)
+     * @param number - the number
+     * @return - the number as a BigDecimal
+     */
+    public static BigDecimal toBigDecimal(Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    private static class ComparisonFilter extends DynamoDBScanFilter {
+        private final String attributeName;
+        private final Comparator comparator;
+        private final Object value;
+
+        private ComparisonFilter(String attributeName, Comparator comparator, Object value) {
+            this.attributeName = attributeName;
+            this.comparator = comparator;
+            this.value = value;
+        }
+
+        @Override
+        void render(DynamoDBScanProjection.RenderedExpression.Builder expression) {
+            expression.append(expression.name(attributeName)).append(' ').append(comparator.getOperator()).append(' ').append(expression.value(value));
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> item) {
+            if (!item.containsKey(attributeName)) {
+                return false;
+            }
+            Integer cmp = compareValues(item.get(attributeName), value);
+            if (cmp == null) {
+                // values of different types are never equal and are not ordered
+                return comparator == Comparator.NE;
+            }
+            switch (comparator) {
+                case EQ: return cmp == 0;
+                case NE: return cmp != 0;
+                case LT: return cmp < 0;
+                case LE: return cmp <= 0;
+                case GT: return cmp > 0;
+                case GE: return cmp >= 0;
+                default: throw new RuntimeException("unknown comparator - comparator: " + comparator);
+            }
+        }
+    }
+
+    private static class ExistsFilter extends DynamoDBScanFilter {
+        private final String attributeName;
+
+        private ExistsFilter(String attributeName) {
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        void render(DynamoDBScanProjection.RenderedExpression.Builder expression) {
+            expression.append("attribute_exists(").append(expression.name(attributeName)).append(')');
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> item) {
+            return item.containsKey(attributeName);
+        }
+    }
+
+    private static class BeginsWithFilter extends DynamoDBScanFilter {
+        private final String attributeName;
+        private final String prefix;
+
+        private BeginsWithFilter(String attributeName, String prefix) {
+            this.attributeName = attributeName;
+            this.prefix = prefix;
+        }
+
+        @Override
+        void render(DynamoDBScanProjection.RenderedExpression.Builder expression) {
+            expression.append("begins_with(").append(expression.name(attributeName)).append(", ").append(expression.value(prefix)).append(')');
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> item) {
+            Object value = item.get(attributeName);
+            return value instanceof String && ((String) value).startsWith(prefix);
+        }
+    }
+
+    private static class CompositeFilter extends DynamoDBScanFilter {
+        private final boolean and;
+        private final List<DynamoDBScanFilter> filters;
+
+        private CompositeFilter(boolean and, List<DynamoDBScanFilter> filters) {
+            for (DynamoDBScanFilter filter : filters) {
+                ValidationUtils.validateAssertCondition(filter != null, "filters should not contain nulls");
+            }
+            this.and = and;
+            this.filters = filters;
+        }
+
+        @Override
+        void render(DynamoDBScanProjection.RenderedExpression.Builder expression) {
+            expression.append('(');
+            for (int i = 0; i < filters.size(); i++) {
+                if (i > 0) {
+                    expression.append(and ? " AND " : " OR ");
+                }
+                filters.get(i).render(expression);
+            }
+            expression.append(')');
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> item) {
+            for (DynamoDBScanFilter filter : filters) {
+                if (filter.matches(item) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+    }
+
+    private static class NotFilter extends DynamoDBScanFilter {
+        private final DynamoDBScanFilter filter;
+
+        private NotFilter(DynamoDBScanFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        void render(DynamoDBScanProjection.RenderedExpression.Builder expression) {
+            expression.append("NOT (");
+            filter.render(expression);
+            expression.append(')');
+        }
+
+        @Override
+        public boolean matches(Map<String, Object> item) {
+            return !filter.matches(item);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The attributes (and optionally a filter) a DynamoDBTableItemReader handler needs from the table scan. The scan renders it into the scan request's ProjectionExpression,
+ * FilterExpression, ExpressionAttributeNames and ExpressionAttributeValues so that only the projected attributes of the matching items are returned.
+ *
+ *      DynamoDBScanProjection projection = DynamoDBScanProjection.builder()
+ *              .attributes("title", "status", "updatedAt")
+ *              .filter(DynamoDBScanFilter.equalTo("status", "ACTIVE"))
+ *              .build();
+ *
+ * The table's key attributes are always added to the projection since the reader passes the keys to the handler and checkpoints on them. All attribute names are rendered as
+ * expression attribute names, so reserved words and special characters need no escaping.
+ *
+ * Note that DynamoDB computes the consumed read capacity of a scan from the size of the items it reads - the projection and the filter reduce the response size (transfer and
+ * decoding), not the read capacity.
+ */
+public class DynamoDBScanProjection {
+    private final List<String> attributeNames;
+    private final DynamoDBScanFilter filter;
+
+    private DynamoDBScanProjection(List<String> attributeNames, DynamoDBScanFilter filter) {
+        this.attributeNames = attributeNames;
+        this.filter = filter;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The projected attribute names, empty if the whole items are read
+     * @return - the attribute names
+     */
+    public List<String> getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * The scan filter
+     * @return - the filter, null if all the items are read
+     */
+    public DynamoDBScanFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Renders the projection and the filter for a scan request
+     * @param keyAttributeNames - the table's key attribute names, added to the projection
+     * @return - the rendered expressions
+     */
+    public RenderedExpression render(Collection<String> keyAttributeNames) {
+        RenderedExpression.Builder projectionExpression = new RenderedExpression.Builder();
+        if (!attributeNames.isEmpty()) {
+            Set<String> projected = new LinkedHashSet<>(keyAttributeNames);
+            projected.addAll(attributeNames);
+            boolean first = true;
+            for (String attributeName : projected) {
+                if (!first) {
+                    projectionExpression.append(", ");
+                }
+                projectionExpression.append(projectionExpression.name(attributeName));
+                first = false;
+            }
+        }
+        String projection = projectionExpression.length() == 0 ? null : projectionExpression.toString();
+        projectionExpression.setLength(0);
+        if (filter != null) {
+            filter.render(projectionExpression);
+        }
+        String filterExpression = projectionExpression.length() == 0 ? null : projectionExpression.toString();
+        return new RenderedExpression(projection, filterExpression, projectionExpression.names, projectionExpression.values);
+    }
+
+    /**
+     * Whether the item passes the filter
+     * @param item - the item
+     * @return - true if there is no filter or the item matches it
+     */
+    public boolean matches(Map<String, Object> item) {
+        return filter == null || filter.matches(item);
+    }
+
+    /**
+     * Projects the item to the key and projected attributes, for local table stand-ins
+     * @param item - the item
+     * @param keyAttributeNames - the table's key attribute names
+     * @return - the projected item (the item itself if the whole items are read)
+     */
+    public Map<String, Object> project(Map<String, Object> item, Collection<String> keyAttributeNames) {
+        if (attributeNames.isEmpty()) {
+            return item;
+        }
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String attributeName : keyAttributeNames) {
+            if (item.containsKey(attributeName)) {
+                projected.put(attributeName, item.get(attributeName));
+            }
+        }
+        for (String attributeName : attributeNames) {
+            if (item.containsKey(attributeName)) {
+                projected.put(attributeName, item.get(attributeName));
+            }
+        }
+        return projected;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBScanProjection{" +
+                "attributeNames=" + attributeNames +
+                ", filter=" + filter +
+                '}';
+    }
+
+    /**
+     * The rendered scan request expressions
+     */
+    public static class RenderedExpression {
+        private final String projectionExpression;
+        private final String filterExpression;
+        private final Map<String, String> expressionAttributeNames;
+        private final Map<String, Object> expressionAttributeValues;
+
+        private RenderedExpression(String projectionExpression, String filterExpression, Map<String, String> expressionAttributeNames, Map<String, Object> expressionAttributeValues) {
+            this.projectionExpression = projectionExpression;
+            this.filterExpression = filterExpression;
+            this.expressionAttributeNames = Collections.unmodifiableMap(expressionAttributeNames);
+            this.expressionAttributeValues = Collections.unmodifiableMap(expressionAttributeValues);
+        }
+
+        /**
+         * The ProjectionExpression
+         * @return - the projection expression, null if the whole items are read
+         */
+        public String getProjectionExpression() {
+            return projectionExpression;
+        }
+
+        /**
+         * The FilterExpression
+         * @return - the filter expression, null if there is no filter
+         */
+        public String getFilterExpression() {
+            return filterExpression;
+        }
+
+        /**
+         * The ExpressionAttributeNames - placeholder (#n0) to attribute name
+         * @return - the expression attribute names
+         */
+        public Map<String, String> getExpressionAttributeNames() {
+            return expressionAttributeNames;
+        }
+
+        /**
+         * The ExpressionAttributeValues - placeholder (:v0) to value (String, Number or ByteBuffer)
+         * @return - the expression attribute values
+         */
+        public Map<String, Object> getExpressionAttributeValues() {
+            return expressionAttributeValues;
+        }
+
+        @Override
+        public String toString() {
+            return "RenderedExpression{" +
+                    "projectionExpression='" + projectionExpression + '\'' +
+                    ", filterExpression='" + filterExpression + '\'' +
+                    ", expressionAttributeNames=" + expressionAttributeNames +
+                    ", expressionAttributeValues=" + expressionAttributeValues +
+                    '}';
+        }
+
+        /**
+         * Accumulates an expression and its attribute name / value placeholders, placeholders are shared by the projection and the filter expressions
+         */
+        static class Builder {
+            private final StringBuilder expression = new StringBuilder();
+            private final Map<String, String> names = new LinkedHashMap<>();
+            private final Map<String, String> placeholdersByName = new LinkedHashMap<>();
+            private final Map<String, Object> values = new LinkedHashMap<>();
+
+            String name(String attributeName) {
+                String placeholder = placeholdersByName.get(attributeName);
+                if (placeholder == null) {
+                    placeholder = "#n" + placeholdersByName.size();
+                    placeholdersByName.put(attributeName, placeholder);
+                    names.put(placeholder, attributeName);
+                }
+                return placeholder;
+            }
+
+            String value(Object value) {
+                String placeholder = ":v" + values.size();
+                values.put(placeholder, value);
+                return placeholder;
+            }
+
+            Builder append(String s) {
+                expression.append(s);
+                return this;
+            }
+
+            Builder append(char c) {
+                expression.append(c);
+                return this;
+            }
+
+            int length() {
+                return expression.length();
+            }
+
+            void setLength(int length) {
+                expression.setLength(length);
+            }
+
+            @Override
+            public String toString() {
+                return expression.toString();
+            }
+        }
+    }
+
+    public static class Builder {
+        private final List<String> attributeNames = new ArrayList<>();
+        private DynamoDBScanFilter filter;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds top level attributes to the projection
+         * @param attributeNames - the attribute names
+         * @return - the builder
+         */
+        public Builder attributes(String... attributeNames) {
+            for (String attributeName : attributeNames) {
+                ValidationUtils.validateAssertCondition(attributeName != null && !attributeName.isEmpty(), "attributeName should not be empty");
+                if (!this.attributeNames.contains(attributeName)) {
+                    this.attributeNames.add(attributeName);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sets the scan filter
+         * @param filter - the filter
+         * @return - the builder
+         */
+        public Builder filter(DynamoDBScanFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        public DynamoDBScanProjection build() {
+            ValidationUtils.validateAssertCondition(!attributeNames.isEmpty() || filter != null, "projection should have attributes or a filter");
+            return new DynamoDBScanProjection(Collections.unmodifiableList(new ArrayList<>(attributeNames)), filter);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Plans a DynamoDB parallel scan adaptively - the scan uses a fixed, fine grained TotalSegments (the scan contract, every Scan call uses the same TotalSegments) and the planner
+ * hands the segments out to the workers, re-balancing based on each worker's observed throughput and throttling.
+ *
+ *      * Initially, each worker is assigned a contiguous range of segments
+ *      * A worker that finishes its range splits the range of the worker with the longest estimated remaining time (remaining segments x that worker's average time per segment)
+ *        and takes the second half - a slow worker (a hot key range, a skewed segment with large items, throttling) keeps shedding its queued segments to the idle workers
+ *      * Throttled pages return an exponential backoff for the worker, and since the worker's segments take longer its range is split off sooner
+ *
+ * The granularity of the re-balancing is a segment - use a TotalSegments that is large compared to the worker count (for example 64 segments per worker) so that a skewed
+ * range can be split finely. Each segment is scanned by exactly one worker, once.
+ *
+ *      DynamoDBSegmentPlanner planner = new DynamoDBSegmentPlanner(1024, workerCount);
+ *      // each worker:
+ *      for (int segment = planner.nextSegment(worker); segment >= 0; segment = planner.nextSegment(worker)) {
+ *          Map&lt;String, Object&gt; lastEvaluatedKey = null;
+ *          do {
+ *              InMemoryDynamoDBTable.ScanPage page = table.scan(segment, planner.getTotalSegments(), lastEvaluatedKey, 100, projection);
+ *              // pass page.getItems() to the handler with segmentNumber = segment
+ *              long backoffMillis = planner.recordPage(worker, page.getScannedCount(), page.getScannedBytes(), false);
+ *              lastEvaluatedKey = page.getLastEvaluatedKey();
+ *          } while (lastEvaluatedKey != null);
+ *      }
+ *
+ * The planner is thread safe.
+ */
+public class DynamoDBSegmentPlanner {
+    public static final long DEFAULT_BASE_BACKOFF_MILLIS = 50;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 10_000;
+    private static final double EWMA_WEIGHT = 0.3;
+
+    private final int totalSegments;
+    private final LongSupplier clock;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Worker[] workers;
+    private int completedSegmentCount;
+    private long stolenSegmentCount;
+
+    public DynamoDBSegmentPlanner(int totalSegments, int workerCount) {
+        this(totalSegments, workerCount, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return System.currentTimeMillis();
+            }
+        }, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    public DynamoDBSegmentPlanner(int totalSegments, int workerCount, LongSupplier clock, long baseBackoffMillis, long maxBackoffMillis) {
+        ValidationUtils.validateAssertCondition(totalSegments > 0 && totalSegments <= 1_000_000, "totalSegments should be in [1, 1000000]", totalSegments);
+        ValidationUtils.validateAssertCondition(workerCount > 0, "workerCount should be positive", workerCount);
+        ValidationUtils.validateAssertCondition(clock != null, "clock should not be null");
+        ValidationUtils.validateAssertCondition(baseBackoffMillis > 0 && maxBackoffMillis >= baseBackoffMillis, "backoff limits are invalid", baseBackoffMillis, maxBackoffMillis);
+        this.totalSegments = totalSegments;
+        this.clock = clock;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            long start = (long) totalSegments * i / workerCount;
+            long end = (long) totalSegments * (i + 1) / workerCount;
+            workers[i] = new Worker((int) start, (int) end);
+        }
+    }
+
+    /**
+     * Completes the worker's current segment (if any) and assigns the worker its next segment - the next segment of its range, or a segment split off the range of the
+     * worker with the longest estimated remaining time once its own range is done.
+     *
+     * @param worker - the worker index, in [0, workerCount)
+     * @return - the segment number to scan with getTotalSegments(), -1 if there are no segments left to assign
+     */
+    public synchronized int nextSegment(int worker) {
+        Worker w = worker(worker);
+        long now = clock.getAsLong();
+        if (w.currentSegment >= 0) {
+            long millis = Math.max(0, now - w.currentSegmentStartMillis);
+            w.averageMillisPerSegment = w.averageMillisPerSegment < 0 ? millis : EWMA_WEIGHT * millis + (1 - EWMA_WEIGHT) * w.averageMillisPerSegment;
+            w.completedSegmentCount++;
+            completedSegmentCount++;
+            w.currentSegment = -1;
+        }
+        if (w.next >= w.end && !steal(w)) {
+            return -1;
+        }
+        w.currentSegment = w.next++;
+        w.currentSegmentStartMillis = now;
+        w.consecutiveThrottleCount = 0;
+        return w.currentSegment;
+    }
+
+    /**
+     * Records a scan page of the worker's current segment
+     * @param worker - the worker index
+     * @param scannedCount - the page's scanned item count
+     * @param scannedBytes - the page's scanned bytes (or consumed read capacity units x 4KB)
+     * @param throttled - whether the page's request was throttled (ProvisionedThroughputExceeded / RequestLimitExceeded) and should be retried
+     * @return - the time the worker should back off for before its next request, 0 if it was not throttled
+     */
+    public synchronized long recordPage(int worker, int scannedCount, long scannedBytes, boolean throttled) {
+        Worker w = worker(worker);
+        ValidationUtils.validateAssertCondition(w.currentSegment >= 0, "worker has no current segment", worker);
+        w.scannedCount += scannedCount;
+        w.scannedBytes += scannedBytes;
+        if (!throttled) {
+            w.consecutiveThrottleCount = 0;
+            return 0;
+        }
+        w.throttleCount++;
+        w.consecutiveThrottleCount++;
+        int exponent = Math.min(w.consecutiveThrottleCount - 1, 30);
+        return Math.min(maxBackoffMillis, baseBackoffMillis << exponent);
+    }
+
+    /**
+     * Whether all the segments have been assigned and completed
+     * @return - true when the scan is complete
+     */
+    public synchronized boolean isComplete() {
+        return completedSegmentCount == totalSegments;
+    }
+
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public synchronized int getCompletedSegmentCount() {
+        return completedSegmentCount;
+    }
+
+    /**
+     * The number of segments moved between workers by splits
+     * @return - the stolen segment count
+     */
+    public synchronized long getStolenSegmentCount() {
+        return stolenSegmentCount;
+    }
+
+    /**
+     * The worker's unassigned segments
+     * @param worker - the worker index
+     * @return - the number of segments left in the worker's range, excluding its current segment
+     */
+    public synchronized int getRemainingSegmentCount(int worker) {
+        Worker w = worker(worker);
+        return w.end - w.next;
+    }
+
+    /**
+     * The worker's scan throughput so far
+     * @param worker - the worker index
+     * @return - the scanned bytes
+     */
+    public synchronized long getScannedBytes(int worker) {
+        return worker(worker).scannedBytes;
+    }
+
+    public synchronized long getScannedCount(int worker) {
+        return worker(worker).scannedCount;
+    }
+
+    public synchronized long getThrottleCount(int worker) {
+        return worker(worker).throttleCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("DynamoDBSegmentPlanner{totalSegments=").append(totalSegments)
+                .append(", completedSegmentCount=").append(completedSegmentCount)
+                .append(", stolenSegmentCount=").append(stolenSegmentCount)
+                .append(", workers=[");
+        for (int i = 0; i < workers.length; i++) {
+            Worker w = workers[i];
+            sb.append(i == 0 ? "" : ", ").append("{range=[").append(w.next).append(", ").append(w.end).append(")")
+                    .append(", currentSegment=").append(w.currentSegment)
+                    .append(", completed=").append(w.completedSegmentCount)
+                    .append(", throttles=").append(w.throttleCount).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private boolean steal(Worker thief) {
+        long now = clock.getAsLong();
+        double globalAverageMillis = globalAverageMillisPerSegment();
+        Worker victim = null;
+        double victimRemainingMillis = 0;
+        for (Worker w : workers) {
+            int remaining = w.end - w.next;
+            if (w == thief || stealableSegmentCount(w) == 0) {
+                continue;
+            }
+            double averageMillis = w.averageMillisPerSegment >= 0 ? w.averageMillisPerSegment : globalAverageMillis;
+            // the time the current segment has been running is a lower bound of its duration, a worker stuck on a hot segment looks slow before it completes a segment
+            if (w.currentSegment >= 0) {
+                averageMillis = Math.max(averageMillis, now - w.currentSegmentStartMillis);
+            }
+            double remainingMillis = remaining * Math.max(averageMillis, 1);
+            if (victim == null || remainingMillis > victimRemainingMillis) {
+                victim = w;
+                victimRemainingMillis = remainingMillis;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        int stolen = stealableSegmentCount(victim);
+        thief.next = victim.end - stolen;
+        thief.end = victim.end;
+        victim.end -= stolen;
+        stolenSegmentCount += stolen;
+        return true;
+    }
+
+    /**
+     * The number of segments a split takes from the worker's unassigned range - the worker keeps the first half since it continues from there. A worker without a current
+     * segment (it has not started yet) keeps at least one segment, so a worker with a single unassigned segment and no current segment is not split.
+     */
+    private static int stealableSegmentCount(Worker w) {
+        int remaining = w.end - w.next;
+        return w.currentSegment >= 0 ? (remaining + 1) / 2 : remaining / 2;
+    }
+
+    private double globalAverageMillisPerSegment() {
+        double total = 0;
+        int count = 0;
+        for (Worker w : workers) {
+            if (w.averageMillisPerSegment >= 0) {
+                total += w.averageMillisPerSegment;
+                count++;
+            }
+        }
+        return count == 0 ? 1 : total / count;
+    }
+
+    private Worker worker(int worker) {
+        ValidationUtils.validateAssertCondition(worker >= 0 && worker < workers.length, "worker should be in [0, workerCount)", worker, workers.length);
+        return workers[worker];
+    }
+
+    private static class Worker {
+        // the worker's unassigned range [next, end)
+        private int next;
+        private int end;
+        private int currentSegment = -1;
+        private long currentSegmentStartMillis;
+        private double averageMillisPerSegment = -1;
+        private int completedSegmentCount;
+        private long scannedCount;
+        private long scannedBytes;
+        private long throttleCount;
+        private int consecutiveThrottleCount;
+
+        private Worker(int next, int end) {
+            this.next = next;
+            this.end = end;
+        }
+    }
+}
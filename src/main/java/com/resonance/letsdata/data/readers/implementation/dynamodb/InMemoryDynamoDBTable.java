@@ -0,0 +1,338 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import com.resonance.letsdata.data.util.DocumentSerializationUtil;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A local, in memory stand-in for a DynamoDB table's parallel scan - for testing DynamoDBTableItemReader handlers, scan projections and segment planning without a table.
+ *
+ * Items are Map&lt;String, Object&gt; in the DynamoDBAttributeDecoder.toObject representation. The scan follows the DynamoDB scan contract:
+ *
+ *      * Segment s of totalSegments covers the items whose 32 bit partition key hash h satisfies floor(h * totalSegments / 2^32) == s - segments of a finer split nest within the coarser ones
+ *      * Limit is the number of items evaluated, the filter is applied after the limit, so a page may have fewer items than the limit (or none) and still have a lastEvaluatedKey
+ *      * The projection is enforced - returned items only have the key attributes and the projected attributes
+ *
+ * The table is thread safe.
+ */
+public class InMemoryDynamoDBTable {
+    private static final long HASH_SPACE = 1L << 32;
+
+    private final String tableName;
+    private final String partitionKeyName;
+    private final String sortKeyName;
+    private final List<String> keyAttributeNames;
+    // guarded by this
+    private final TreeMap<ItemKey, Map<String, Object>> items = new TreeMap<>();
+
+    public InMemoryDynamoDBTable(String tableName, String partitionKeyName, String sortKeyName) {
+        ValidationUtils.validateAssertCondition(tableName != null && partitionKeyName != null, "tableName and partitionKeyName should not be null");
+        this.tableName = tableName;
+        this.partitionKeyName = partitionKeyName;
+        this.sortKeyName = sortKeyName;
+        this.keyAttributeNames = sortKeyName == null ? Collections.singletonList(partitionKeyName) : Collections.unmodifiableList(Arrays.asList(partitionKeyName, sortKeyName));
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<String> getKeyAttributeNames() {
+        return keyAttributeNames;
+    }
+
+    /**
+     * Puts (inserts or replaces) an item
+     * @param item - the item, must have the key attributes
+     */
+    public synchronized void putItem(Map<String, Object> item) {
+        ValidationUtils.validateAssertCondition(item != null, "item should not be null");
+        items.put(keyOf(item), new LinkedHashMap<>(item));
+    }
+
+    /**
+     * Deletes an item
+     * @param keys - the item's key attributes
+     * @return - true if the item existed
+     */
+    public synchronized boolean deleteItem(Map<String, Object> keys) {
+        return items.remove(keyOf(keys)) != null;
+    }
+
+    public synchronized int getItemCount() {
+        return items.size();
+    }
+
+    /**
+     * Scans a page of a segment
+     * @param segment - the segment number, in [0, totalSegments)
+     * @param totalSegments - the total number of segments
+     * @param exclusiveStartKey - the previous page's lastEvaluatedKey, null for the first page
+     * @param limit - the max number of items to evaluate
+     * @param projection - the scan projection, null to read whole items
+     * @return - the page
+     */
+    public synchronized ScanPage scan(int segment, int totalSegments, Map<String, Object> exclusiveStartKey, int limit, DynamoDBScanProjection projection) {
+        ValidationUtils.validateAssertCondition(totalSegments > 0 && segment >= 0 && segment < totalSegments, "segment should be in [0, totalSegments)", segment, totalSegments);
+        ValidationUtils.validateAssertCondition(limit > 0, "limit should be positive", limit);
+        long segmentStart = segmentStartHash(segment, totalSegments);
+        long segmentEnd = segmentStartHash(segment + 1, totalSegments);
+
+        NavigableMap<ItemKey, Map<String, Object>> range = exclusiveStartKey == null
+                ? items.tailMap(new ItemKey(segmentStart, "", null), true)
+                : items.tailMap(keyOf(exclusiveStartKey), false);
+
+        List<Map<String, Object>> pageItems = new ArrayList<>();
+        int scannedCount = 0;
+        long scannedBytes = 0;
+        ItemKey lastKey = null;
+        boolean hasMore = false;
+        for (Map.Entry<ItemKey, Map<String, Object>> entry : range.entrySet()) {
+            if (entry.getKey().hash >= segmentEnd) {
+                break;
+            }
+            if (scannedCount == limit) {
+                hasMore = true;
+                break;
+            }
+            Map<String, Object> item = entry.getValue();
+            scannedCount++;
+            scannedBytes += estimateItemSize(item);
+            lastKey = entry.getKey();
+            if (projection == null) {
+                pageItems.add(Collections.unmodifiableMap(new LinkedHashMap<>(item)));
+            } else if (projection.matches(item)) {
+                pageItems.add(Collections.unmodifiableMap(new LinkedHashMap<>(projection.project(item, keyAttributeNames))));
+            }
+        }
+        Map<String, Object> lastEvaluatedKey = hasMore ? keysOf(items.get(lastKey)) : null;
+        return new ScanPage(pageItems, lastEvaluatedKey, scannedCount, scannedBytes);
+    }
+
+    /**
+     * The item's key attributes
+     * @param item - the item
+     * @return - the key attributes
+     */
+    public Map<String, Object> keysOf(Map<String, Object> item) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (String keyAttributeName : keyAttributeNames) {
+            keys.put(keyAttributeName, item.get(keyAttributeName));
+        }
+        return keys;
+    }
+
+    /**
+     * The segment that the partition key value hashes to
+     * @param partitionKeyValue - the partition key value
+     * @param totalSegments - the total number of segments
+     * @return - the segment number
+     */
+    public static int segmentOf(Object partitionKeyValue, int totalSegments) {
+        return (int) ((partitionKeyHash(partitionKeyValue) * totalSegments) >>> 32);
+    }
+
+    /**
+     * The unsigned 32 bit partition key hash that the segments are ranges of
+     * @param partitionKeyValue - the partition key value
+     * @return - the hash in [0, 2^32)
+     */
+    public static long partitionKeyHash(Object partitionKeyValue) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(canonicalValue(partitionKeyValue).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("MD5 message digest is not available", ex);
+        }
+        return ((digest[0] & 0xFFL) << 24) | ((digest[1] & 0xFFL) << 16) | ((digest[2] & 0xFFL) << 8) | (digest[3] & 0xFFL);
+    }
+
+    /**
+     * The approximate DynamoDB size of an item - attribute name lengths plus value sizes
+     * @param item - the item
+     * @return - the size in bytes
+     */
+    public static long estimateItemSize(Map<String, Object> item) {
+        long size = 0;
+        for (Map.Entry<String, Object> entry : item.entrySet()) {
+            size += DocumentSerializationUtil.utf8Length(entry.getKey()) + estimateValueSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateValueSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return DocumentSerializationUtil.utf8Length((String) value);
+        }
+        if (value instanceof Number) {
+            return (DynamoDBScanFilter.toBigDecimal((Number) value).precision() + 1) / 2 + 1;
+        }
+        if (value instanceof ByteBuffer) {
+            return ((ByteBuffer) value).remaining();
+        }
+        if (value instanceof Map) {
+            long size = 3;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 1 + DocumentSerializationUtil.utf8Length(String.valueOf(entry.getKey())) + estimateValueSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 3;
+            for (Object element : (Collection<?>) value) {
+                size += 1 + estimateValueSize(element);
+            }
+            return size;
+        }
+        return DocumentSerializationUtil.utf8Length(String.valueOf(value));
+    }
+
+    private static long segmentStartHash(int segment, int totalSegments) {
+        // the smallest hash h with floor(h * totalSegments / 2^32) == segment
+        return (segment * HASH_SPACE + totalSegments - 1) / totalSegments;
+    }
+
+    private ItemKey keyOf(Map<String, Object> item) {
+        Object partitionKey = item.get(partitionKeyName);
+        ValidationUtils.validateAssertCondition(partitionKey != null, "item is missing the partition key", tableName, partitionKeyName);
+        Object sortKey = null;
+        if (sortKeyName != null) {
+            sortKey = item.get(sortKeyName);
+            ValidationUtils.validateAssertCondition(sortKey != null, "item is missing the sort key", tableName, sortKeyName);
+        }
+        return new ItemKey(partitionKeyHash(partitionKey), canonicalValue(partitionKey), sortKey);
+    }
+
+    private static String canonicalValue(Object value) {
+        if (value instanceof String) {
+            return "S:" + value;
+        }
+        if (value instanceof Number) {
+            BigDecimal number = DynamoDBScanFilter.toBigDecimal((Number) value);
+            return "N:" + (number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString());
+        }
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return "B:" + Base64.getEncoder().encodeToString(bytes);
+        }
+        throw new RuntimeException("key attribute should be a String, Number or ByteBuffer - value: " + value);
+    }
+
+    /**
+     * A scan page
+     */
+    public static class ScanPage {
+        private final List<Map<String, Object>> items;
+        private final Map<String, Object> lastEvaluatedKey;
+        private final int scannedCount;
+        private final long scannedBytes;
+
+        private ScanPage(List<Map<String, Object>> items, Map<String, Object> lastEvaluatedKey, int scannedCount, long scannedBytes) {
+            this.items = Collections.unmodifiableList(items);
+            this.lastEvaluatedKey = lastEvaluatedKey;
+            this.scannedCount = scannedCount;
+            this.scannedBytes = scannedBytes;
+        }
+
+        /**
+         * The items that passed the filter, projected
+         * @return - the items
+         */
+        public List<Map<String, Object>> getItems() {
+            return items;
+        }
+
+        /**
+         * The key to start the next page from
+         * @return - the last evaluated key, null if the segment has been fully scanned
+         */
+        public Map<String, Object> getLastEvaluatedKey() {
+            return lastEvaluatedKey;
+        }
+
+        /**
+         * The number of items evaluated, before the filter
+         * @return - the scanned count
+         */
+        public int getScannedCount() {
+            return scannedCount;
+        }
+
+        /**
+         * The approximate size of the evaluated items - the size DynamoDB consumes read capacity for
+         * @return - the scanned bytes
+         */
+        public long getScannedBytes() {
+            return scannedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "ScanPage{" +
+                    "itemCount=" + items.size() +
+                    ", lastEvaluatedKey=" + lastEvaluatedKey +
+                    ", scannedCount=" + scannedCount +
+                    ", scannedBytes=" + scannedBytes +
+                    '}';
+        }
+    }
+
+    private static class ItemKey implements Comparable<ItemKey> {
+        private final long hash;
+        private final String partitionKey;
+        private final Object sortKey;
+
+        private ItemKey(long hash, String partitionKey, Object sortKey) {
+            this.hash = hash;
+            this.partitionKey = partitionKey;
+            this.sortKey = sortKey;
+        }
+
+        @Override
+        public int compareTo(ItemKey o) {
+            int cmp = Long.compare(hash, o.hash);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = partitionKey.compareTo(o.partitionKey);
+            if (cmp != 0) {
+                return cmp;
+            }
+            if (sortKey == null || o.sortKey == null) {
+                return sortKey == null ? (o.sortKey == null ? 0 : -1) : 1;
+            }
+            Integer sortCmp = DynamoDBScanFilter.compareValues(sortKey, o.sortKey);
+            return sortCmp != null ? sortCmp : canonicalValue(sortKey).compareTo(canonicalValue(o.sortKey));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ItemKey && compareTo((ItemKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return partitionKey.hashCode();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read only Map&lt;String, Object&gt; view over a DynamoDB item's raw attribute values that decodes each attribute on access. Handlers that read a few attributes of a large item
+ * only pay for decoding those attributes:
+ *
+ *      * get(name) decodes the attribute to its Map representation (see DynamoDBAttributeDecoder.toObject) and caches it
+ *      * getLong / getDouble / getString / getBinary decode straight to the requested type without building or caching the Object
+ *      * iterating the entries decodes each attribute as it is visited
+ *
+ * The item is a view - the raw attribute map must not be modified while the item is in use. The class is not thread safe.
+ *
+ * @param <R> - the raw attribute value type
+ */
+public class LazyDynamoDBItem<R> extends AbstractMap<String, Object> {
+    private final Map<String, R> rawAttributes;
+    private final DynamoDBAttributeDecoder<R> decoder;
+    private Map<String, Object> decodedAttributes;
+    private Set<Entry<String, Object>> entrySet;
+
+    public LazyDynamoDBItem(Map<String, R> rawAttributes, DynamoDBAttributeDecoder<R> decoder) {
+        ValidationUtils.validateAssertCondition(rawAttributes != null && decoder != null, "rawAttributes and decoder should not be null");
+        this.rawAttributes = rawAttributes;
+        this.decoder = decoder;
+    }
+
+    /**
+     * A lazy item over a DynamoDB JSON item - the json object is used as is, not copied
+     * @param item - the DynamoDB JSON item, a json object of attribute name to DynamoDB JSON attribute value
+     * @return - the lazy item
+     */
+    public static LazyDynamoDBItem<JsonElement> ofDynamoDBJson(JsonObject item) {
+        ValidationUtils.validateAssertCondition(item != null, "item should not be null");
+        return new LazyDynamoDBItem<>(item.asMap(), DynamoDBJsonAttributeDecoder.INSTANCE);
+    }
+
+    /**
+     * The attribute's raw value
+     * @param name - the attribute name
+     * @return - the raw value, null if the item does not have the attribute
+     */
+    public R getRaw(String name) {
+        return rawAttributes.get(name);
+    }
+
+    public Map<String, R> getRawAttributes() {
+        return rawAttributes;
+    }
+
+    public DynamoDBAttributeDecoder<R> getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * The long value of an N attribute
+     * @param name - the attribute name
+     * @param defaultValue - the value returned if the item does not have the attribute or it is NULL
+     * @return - the attribute value
+     */
+    public long getLong(String name, long defaultValue) {
+        R raw = rawAttributes.get(name);
+        return raw == null || decoder.isNull(raw) ? defaultValue : decoder.toLong(raw);
+    }
+
+    /**
+     * The double value of an N attribute
+     * @param name - the attribute name
+     * @param defaultValue - the value returned if the item does not have the attribute or it is NULL
+     * @return - the attribute value
+     */
+    public double getDouble(String name, double defaultValue) {
+        R raw = rawAttributes.get(name);
+        return raw == null || decoder.isNull(raw) ? defaultValue : decoder.toDouble(raw);
+    }
+
+    /**
+     * The string value of an S (or N) attribute
+     * @param name - the attribute name
+     * @return - the attribute value, null if the item does not have the attribute or it is NULL
+     */
+    public String getString(String name) {
+        R raw = rawAttributes.get(name);
+        return raw == null || decoder.isNull(raw) ? null : decoder.toStringValue(raw);
+    }
+
+    /**
+     * The binary value of a B attribute
+     * @param name - the attribute name
+     * @return - the attribute value as a read only buffer, null if the item does not have the attribute or it is NULL
+     */
+    public ByteBuffer getBinary(String name) {
+        R raw = rawAttributes.get(name);
+        return raw == null || decoder.isNull(raw) ? null : decoder.toBinary(raw);
+    }
+
+    /**
+     * The number of attributes that have been decoded to their Object representation, for diagnostics
+     * @return - the decoded attribute count
+     */
+    public int getDecodedAttributeCount() {
+        return decodedAttributes == null ? 0 : decodedAttributes.size();
+    }
+
+    @Override
+    public Object get(Object key) {
+        R raw = rawAttributes.get(key);
+        if (raw == null) {
+            return null;
+        }
+        if (decodedAttributes == null) {
+            decodedAttributes = new HashMap<>();
+        } else if (decodedAttributes.containsKey(key)) {
+            return decodedAttributes.get(key);
+        }
+        Object decoded = decoder.toObject(raw);
+        decodedAttributes.put((String) key, decoded);
+        return decoded;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return rawAttributes.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return rawAttributes.size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(rawAttributes.keySet());
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    final Iterator<String> names = rawAttributes.keySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return names.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            String name = names.next();
+                            return new SimpleImmutableEntry<>(name, get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return rawAttributes.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+}
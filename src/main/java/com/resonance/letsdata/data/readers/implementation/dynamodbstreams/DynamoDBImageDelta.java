@@ -0,0 +1,297 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.resonance.letsdata.data.readers.implementation.dynamodb.DynamoDBScanFilter;
+import com.resonance.letsdata.data.readers.implementation.dynamodb.LazyDynamoDBItem;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The structural delta between a stream record's oldImage and newImage - the attributes (and the nested document paths) that were added, removed or modified.
+ *
+ * The images are compared attribute by attribute, recursing into maps (M) and lists (L, compared by position) up to maxDepth levels - a difference below maxDepth is reported at
+ * its ancestor path at maxDepth. Scalars and sets (SS, NS, BS) are compared as values, numbers by numeric value.
+ *
+ * The comparison short-circuits on identical sub-values - the same instance, or, for LazyDynamoDBItem images, equal raw (serialized) attribute values. Unchanged attributes of
+ * LazyDynamoDBItem images are therefore never decoded, the cost of the delta is proportional to the changed attributes.
+ *
+ *      DynamoDBImageDelta delta = DynamoDBImageDelta.compute(oldImage, newImage);
+ *      if (delta.isEmpty()) {
+ *          // no attribute changed (e.g. a conditional write that re-wrote the same item), skip the record
+ *      }
+ *      Map&lt;String, Object&gt; changedFields = delta.getChangedValues(newImage);     // only the changed top level attributes for the downstream document
+ */
+public class DynamoDBImageDelta {
+    public enum ChangeType {
+        ADDED, REMOVED, MODIFIED
+    }
+
+    private final List<AttributeChange> changes;
+    private final Set<String> changedAttributeNames;
+    private final Set<String> removedAttributeNames;
+
+    private DynamoDBImageDelta(List<AttributeChange> changes, Set<String> changedAttributeNames, Set<String> removedAttributeNames) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.changedAttributeNames = Collections.unmodifiableSet(changedAttributeNames);
+        this.removedAttributeNames = Collections.unmodifiableSet(removedAttributeNames);
+    }
+
+    /**
+     * Computes the delta, recursing into all nested levels
+     * @param oldImage - the old image, null for INSERT records (all attributes are ADDED)
+     * @param newImage - the new image, null for REMOVE records (all attributes are REMOVED)
+     * @return - the delta
+     */
+    public static DynamoDBImageDelta compute(Map<String, Object> oldImage, Map<String, Object> newImage) {
+        return compute(oldImage, newImage, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the delta
+     * @param oldImage - the old image, null for INSERT records (all attributes are ADDED)
+     * @param newImage - the new image, null for REMOVE records (all attributes are REMOVED)
+     * @param maxDepth - the max path depth to report changes at, 1 for top level attributes only
+     * @return - the delta
+     */
+    public static DynamoDBImageDelta compute(Map<String, Object> oldImage, Map<String, Object> newImage, int maxDepth) {
+        ValidationUtils.validateAssertCondition(maxDepth > 0, "maxDepth should be positive", maxDepth);
+        Map<String, Object> oldAttributes = oldImage == null ? Collections.<String, Object>emptyMap() : oldImage;
+        Map<String, Object> newAttributes = newImage == null ? Collections.<String, Object>emptyMap() : newImage;
+        List<AttributeChange> changes = new ArrayList<>();
+        Set<String> changedAttributeNames = new LinkedHashSet<>();
+        Set<String> removedAttributeNames = new LinkedHashSet<>();
+
+        for (String name : oldAttributes.keySet()) {
+            if (!newAttributes.containsKey(name)) {
+                changes.add(new AttributeChange(name, ChangeType.REMOVED));
+                changedAttributeNames.add(name);
+                removedAttributeNames.add(name);
+            } else if (!rawEqual(oldAttributes, newAttributes, name)) {
+                int changeCount = changes.size();
+                diff(name, oldAttributes.get(name), newAttributes.get(name), 1, maxDepth, changes);
+                if (changes.size() > changeCount) {
+                    changedAttributeNames.add(name);
+                }
+            }
+        }
+        for (String name : newAttributes.keySet()) {
+            if (!oldAttributes.containsKey(name)) {
+                changes.add(new AttributeChange(name, ChangeType.ADDED));
+                changedAttributeNames.add(name);
+            }
+        }
+        return new DynamoDBImageDelta(changes, changedAttributeNames, removedAttributeNames);
+    }
+
+    /**
+     * Whether no attribute changed
+     * @return - true if the images are equal
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * The changes at their document paths (name, map.key, list[0].name), in image attribute order
+     * @return - the changes
+     */
+    public List<AttributeChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * The top level attributes that were added, removed or modified
+     * @return - the changed attribute names
+     */
+    public Set<String> getChangedAttributeNames() {
+        return changedAttributeNames;
+    }
+
+    /**
+     * The top level attributes that were removed
+     * @return - the removed attribute names
+     */
+    public Set<String> getRemovedAttributeNames() {
+        return removedAttributeNames;
+    }
+
+    /**
+     * The new values of the changed top level attributes (removed attributes are not included, see getRemovedAttributeNames) - the fields to emit to the downstream document
+     * @param newImage - the new image the delta was computed with
+     * @return - the changed attributes' new values
+     */
+    public Map<String, Object> getChangedValues(Map<String, Object> newImage) {
+        Map<String, Object> changedValues = new LinkedHashMap<>();
+        if (newImage == null) {
+            return changedValues;
+        }
+        for (String name : changedAttributeNames) {
+            if (newImage.containsKey(name)) {
+                changedValues.put(name, newImage.get(name));
+            }
+        }
+        return changedValues;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBImageDelta{" +
+                "changes=" + changes +
+                '}';
+    }
+
+    private static boolean rawEqual(Map<String, Object> oldAttributes, Map<String, Object> newAttributes, String name) {
+        if (oldAttributes instanceof LazyDynamoDBItem && newAttributes instanceof LazyDynamoDBItem) {
+            LazyDynamoDBItem<?> oldItem = (LazyDynamoDBItem<?>) oldAttributes;
+            LazyDynamoDBItem<?> newItem = (LazyDynamoDBItem<?>) newAttributes;
+            if (oldItem.getDecoder().getClass() == newItem.getDecoder().getClass()) {
+                Object oldRaw = oldItem.getRaw(name);
+                Object newRaw = newItem.getRaw(name);
+                return oldRaw == newRaw || (oldRaw != null && oldRaw.equals(newRaw));
+            }
+        }
+        return false;
+    }
+
+    private static void diff(String path, Object oldValue, Object newValue, int depth, int maxDepth, List<AttributeChange> changes) {
+        if (oldValue == newValue) {
+            return;
+        }
+        if (oldValue instanceof Map && newValue instanceof Map) {
+            Map<?, ?> oldMap = (Map<?, ?>) oldValue;
+            Map<?, ?> newMap = (Map<?, ?>) newValue;
+            if (depth >= maxDepth) {
+                if (!valuesEqual(oldMap, newMap)) {
+                    changes.add(new AttributeChange(path, ChangeType.MODIFIED));
+                }
+                return;
+            }
+            for (Map.Entry<?, ?> entry : oldMap.entrySet()) {
+                String childPath = path + '.' + entry.getKey();
+                if (!newMap.containsKey(entry.getKey())) {
+                    changes.add(new AttributeChange(childPath, ChangeType.REMOVED));
+                } else {
+                    diff(childPath, entry.getValue(), newMap.get(entry.getKey()), depth + 1, maxDepth, changes);
+                }
+            }
+            for (Object key : newMap.keySet()) {
+                if (!oldMap.containsKey(key)) {
+                    changes.add(new AttributeChange(path + '.' + key, ChangeType.ADDED));
+                }
+            }
+            return;
+        }
+        if (oldValue instanceof List && newValue instanceof List) {
+            List<?> oldList = (List<?>) oldValue;
+            List<?> newList = (List<?>) newValue;
+            if (depth >= maxDepth) {
+                if (!valuesEqual(oldList, newList)) {
+                    changes.add(new AttributeChange(path, ChangeType.MODIFIED));
+                }
+                return;
+            }
+            int common = Math.min(oldList.size(), newList.size());
+            for (int i = 0; i < common; i++) {
+                diff(path + '[' + i + ']', oldList.get(i), newList.get(i), depth + 1, maxDepth, changes);
+            }
+            for (int i = common; i < oldList.size(); i++) {
+                changes.add(new AttributeChange(path + '[' + i + ']', ChangeType.REMOVED));
+            }
+            for (int i = common; i < newList.size(); i++) {
+                changes.add(new AttributeChange(path + '[' + i + ']', ChangeType.ADDED));
+            }
+            return;
+        }
+        if (!valuesEqual(oldValue, newValue)) {
+            changes.add(new AttributeChange(path, ChangeType.MODIFIED));
+        }
+    }
+
+    private static boolean valuesEqual(Object oldValue, Object newValue) {
+        if (oldValue == newValue) {
+            return true;
+        }
+        if (oldValue == null || newValue == null) {
+            return false;
+        }
+        if (oldValue instanceof Number && newValue instanceof Number) {
+            return DynamoDBScanFilter.toBigDecimal((Number) oldValue).compareTo(DynamoDBScanFilter.toBigDecimal((Number) newValue)) == 0;
+        }
+        if (oldValue instanceof Map && newValue instanceof Map) {
+            Map<?, ?> oldMap = (Map<?, ?>) oldValue;
+            Map<?, ?> newMap = (Map<?, ?>) newValue;
+            if (oldMap.size() != newMap.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : oldMap.entrySet()) {
+                if (!newMap.containsKey(entry.getKey()) || !valuesEqual(entry.getValue(), newMap.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (oldValue instanceof List && newValue instanceof List) {
+            List<?> oldList = (List<?>) oldValue;
+            List<?> newList = (List<?>) newValue;
+            if (oldList.size() != newList.size()) {
+                return false;
+            }
+            for (int i = 0; i < oldList.size(); i++) {
+                if (!valuesEqual(oldList.get(i), newList.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return oldValue.equals(newValue);
+    }
+
+    /**
+     * A change at a document path
+     */
+    public static class AttributeChange {
+        private final String path;
+        private final ChangeType changeType;
+
+        private AttributeChange(String path, ChangeType changeType) {
+            this.path = path;
+            this.changeType = changeType;
+        }
+
+        /**
+         * The document path - the top level attribute name followed by .key for map entries and [index] for list elements
+         * @return - the path
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public ChangeType getChangeType() {
+            return changeType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AttributeChange)) return false;
+            AttributeChange that = (AttributeChange) o;
+            return path.equals(that.path) && changeType == that.changeType;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + changeType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return changeType + " " + path;
+        }
+    }
+}
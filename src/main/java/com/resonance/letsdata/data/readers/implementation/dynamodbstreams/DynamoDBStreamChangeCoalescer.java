@@ -0,0 +1,292 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.resonance.letsdata.data.readers.model.DynamoDBStreamRecord;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Folds the stream records for the same item keys within a batch (or a time window) into a single net change, so that a high churn key produces one handler call and one output
+ * write per window instead of one per event.
+ *
+ * The net change of a key's records r1..rn (in sequence order) has r1's oldImage, rn's newImage and rn's other fields (eventId, identity, sequenceNumber etc.) with the eventName
+ * collapsed by whether the item existed before r1 and after rn:
+ *
+ *      existed before (r1 is MODIFY / REMOVE) | exists after (rn is INSERT / MODIFY) | net eventName
+ *      ---------------------------------------+--------------------------------------+-----------------------------------------------
+ *                      no                     |                  yes                 | INSERT (oldImage null)
+ *                      yes                    |                  yes                 | MODIFY
+ *                      yes                    |                  no                  | REMOVE (newImage null)
+ *                      no                     |                  no                  | none - the item was inserted and removed within the window, the change is dropped
+ *
+ * Checkpointing: drain returns the changes ordered by their (last folded) sequence numbers and the batch's checkpoint sequence number - the largest sequence number folded into the
+ * batch, including the records of dropped changes. The reader checkpoints at it only after all the batch's changes are processed, so a restart re-reads the whole window and
+ * never skips a folded record.
+ *
+ * Records must be added in the shard's sequence order - use one coalescer per shard. The class is not thread safe.
+ */
+public class DynamoDBStreamChangeCoalescer {
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Map<String, Object>, PendingChange> pendingChanges = new LinkedHashMap<>();
+    private int pendingRecordCount;
+    private String maxSequenceNumber;
+    private long windowStartMillis;
+
+    /**
+     * A coalescer for per batch coalescing - the reader drains it at the end of each batch
+     */
+    public DynamoDBStreamChangeCoalescer() {
+        this(0, System::currentTimeMillis);
+    }
+
+    /**
+     * @param windowMillis - the time window to coalesce records in (isWindowExpired), 0 for per batch coalescing
+     * @param clock - the clock
+     */
+    public DynamoDBStreamChangeCoalescer(long windowMillis, LongSupplier clock) {
+        ValidationUtils.validateAssertCondition(windowMillis >= 0, "windowMillis should not be negative", windowMillis);
+        ValidationUtils.validateAssertCondition(clock != null, "clock should not be null");
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Folds the record into its key's pending change
+     * @param record - the stream record
+     */
+    public void add(DynamoDBStreamRecord record) {
+        ValidationUtils.validateAssertCondition(record != null && record.getKeys() != null && record.getSequenceNumber() != null, "record, its keys and sequenceNumber should not be null");
+        if (pendingRecordCount == 0) {
+            windowStartMillis = clock.getAsLong();
+        }
+        // key attributes are small, copying them gives a stable map key even if the record's keys are a lazy view
+        Map<String, Object> key = new HashMap<>(record.getKeys());
+        PendingChange pending = pendingChanges.get(key);
+        if (pending == null) {
+            pendingChanges.put(key, new PendingChange(record));
+        } else {
+            pending.last = record;
+            pending.foldedRecordCount++;
+        }
+        pendingRecordCount++;
+        if (maxSequenceNumber == null || compareSequenceNumbers(record.getSequenceNumber(), maxSequenceNumber) > 0) {
+            maxSequenceNumber = record.getSequenceNumber();
+        }
+    }
+
+    /**
+     * Whether the time window has elapsed since the window's first record - always false for per batch coalescing
+     * @return - true if the reader should drain the coalescer
+     */
+    public boolean isWindowExpired() {
+        return windowMillis > 0 && pendingRecordCount > 0 && clock.getAsLong() - windowStartMillis >= windowMillis;
+    }
+
+    public int getPendingKeyCount() {
+        return pendingChanges.size();
+    }
+
+    public int getPendingRecordCount() {
+        return pendingRecordCount;
+    }
+
+    /**
+     * Drains the pending changes
+     * @return - the net changes ordered by sequence number and the checkpoint sequence number, an empty batch if there are no pending records
+     */
+    public CoalescedBatch drain() {
+        List<CoalescedChange> changes = new ArrayList<>(pendingChanges.size());
+        int droppedChangeCount = 0;
+        for (PendingChange pending : pendingChanges.values()) {
+            CoalescedChange change = pending.toChange();
+            if (change == null) {
+                droppedChangeCount++;
+            } else {
+                changes.add(change);
+            }
+        }
+        changes.sort((c1, c2) -> compareSequenceNumbers(c1.getRecord().getSequenceNumber(), c2.getRecord().getSequenceNumber()));
+        CoalescedBatch batch = new CoalescedBatch(changes, maxSequenceNumber, pendingRecordCount, droppedChangeCount);
+        pendingChanges.clear();
+        pendingRecordCount = 0;
+        maxSequenceNumber = null;
+        return batch;
+    }
+
+    /**
+     * Compares stream sequence numbers - numeric strings of varying lengths
+     * @param s1 - a sequence number
+     * @param s2 - a sequence number
+     * @return - negative, zero or positive as s1 is less than, equal to or greater than s2
+     */
+    public static int compareSequenceNumbers(String s1, String s2) {
+        int start1 = firstSignificantDigit(s1);
+        int start2 = firstSignificantDigit(s2);
+        int cmp = Integer.compare(s1.length() - start1, s2.length() - start2);
+        if (cmp != 0) {
+            return cmp;
+        }
+        for (int i1 = start1, i2 = start2; i1 < s1.length(); i1++, i2++) {
+            cmp = Character.compare(s1.charAt(i1), s2.charAt(i2));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static int firstSignificantDigit(String s) {
+        int i = 0;
+        while (i < s.length() - 1 && s.charAt(i) == '0') {
+            i++;
+        }
+        return i;
+    }
+
+    private static class PendingChange {
+        private final DynamoDBStreamRecord first;
+        private DynamoDBStreamRecord last;
+        private int foldedRecordCount = 1;
+
+        private PendingChange(DynamoDBStreamRecord first) {
+            this.first = first;
+            this.last = first;
+        }
+
+        private CoalescedChange toChange() {
+            if (foldedRecordCount == 1) {
+                return new CoalescedChange(first, first.getSequenceNumber(), 1);
+            }
+            boolean existedBefore = !DynamoDBStreamRecord.EVENT_NAME_INSERT.equals(first.getEventName());
+            boolean existsAfter = !DynamoDBStreamRecord.EVENT_NAME_REMOVE.equals(last.getEventName());
+            String eventName;
+            if (existedBefore && existsAfter) {
+                eventName = DynamoDBStreamRecord.EVENT_NAME_MODIFY;
+            } else if (existsAfter) {
+                eventName = DynamoDBStreamRecord.EVENT_NAME_INSERT;
+            } else if (existedBefore) {
+                eventName = DynamoDBStreamRecord.EVENT_NAME_REMOVE;
+            } else {
+                return null;
+            }
+            DynamoDBStreamRecord net = new DynamoDBStreamRecord(last.getEventId(), eventName, last.getIdentityPrincipalId(), last.getIdentityType(), last.getSequenceNumber(),
+                    last.getSizeBytes(), last.getStreamViewType(), last.getApproximateCreationDateTime(), last.getKeys(),
+                    existedBefore ? first.getOldImage() : null, existsAfter ? last.getNewImage() : null);
+            return new CoalescedChange(net, first.getSequenceNumber(), foldedRecordCount);
+        }
+    }
+
+    /**
+     * A key's net change
+     */
+    public static class CoalescedChange {
+        private final DynamoDBStreamRecord record;
+        private final String firstSequenceNumber;
+        private final int foldedRecordCount;
+
+        private CoalescedChange(DynamoDBStreamRecord record, String firstSequenceNumber, int foldedRecordCount) {
+            this.record = record;
+            this.firstSequenceNumber = firstSequenceNumber;
+            this.foldedRecordCount = foldedRecordCount;
+        }
+
+        /**
+         * The net change as a stream record, its sequence number is the last folded record's sequence number
+         * @return - the net record
+         */
+        public DynamoDBStreamRecord getRecord() {
+            return record;
+        }
+
+        /**
+         * The sequence number of the first record folded into the change
+         * @return - the first sequence number
+         */
+        public String getFirstSequenceNumber() {
+            return firstSequenceNumber;
+        }
+
+        /**
+         * The number of records folded into the change
+         * @return - the folded record count
+         */
+        public int getFoldedRecordCount() {
+            return foldedRecordCount;
+        }
+
+        @Override
+        public String toString() {
+            return "CoalescedChange{" +
+                    "record=" + record +
+                    ", firstSequenceNumber='" + firstSequenceNumber + '\'' +
+                    ", foldedRecordCount=" + foldedRecordCount +
+                    '}';
+        }
+    }
+
+    /**
+     * The net changes of a window
+     */
+    public static class CoalescedBatch {
+        private final List<CoalescedChange> changes;
+        private final String checkpointSequenceNumber;
+        private final int foldedRecordCount;
+        private final int droppedChangeCount;
+
+        private CoalescedBatch(List<CoalescedChange> changes, String checkpointSequenceNumber, int foldedRecordCount, int droppedChangeCount) {
+            this.changes = Collections.unmodifiableList(changes);
+            this.checkpointSequenceNumber = checkpointSequenceNumber;
+            this.foldedRecordCount = foldedRecordCount;
+            this.droppedChangeCount = droppedChangeCount;
+        }
+
+        /**
+         * The net changes ordered by sequence number
+         * @return - the changes
+         */
+        public List<CoalescedChange> getChanges() {
+            return changes;
+        }
+
+        /**
+         * The largest sequence number folded into the batch - checkpoint at it after all the changes are processed
+         * @return - the checkpoint sequence number, null for an empty batch
+         */
+        public String getCheckpointSequenceNumber() {
+            return checkpointSequenceNumber;
+        }
+
+        /**
+         * The number of stream records folded into the batch
+         * @return - the folded record count
+         */
+        public int getFoldedRecordCount() {
+            return foldedRecordCount;
+        }
+
+        /**
+         * The number of keys whose records netted out to no change (inserted and removed within the window)
+         * @return - the dropped change count
+         */
+        public int getDroppedChangeCount() {
+            return droppedChangeCount;
+        }
+
+        @Override
+        public String toString() {
+            return "CoalescedBatch{" +
+                    "changeCount=" + changes.size() +
+                    ", checkpointSequenceNumber='" + checkpointSequenceNumber + '\'' +
+                    ", foldedRecordCount=" + foldedRecordCount +
+                    ", droppedChangeCount=" + droppedChangeCount +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.resonance.letsdata.data.readers.model.DynamoDBStreamRecord;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A declarative DynamoDB Streams event filter that the reader evaluates on the record's metadata and keys before the images are converted - rejected records are checkpointed
+ * but not converted or passed to the handler.
+ *
+ *      DynamoDBStreamEventFilter filter = DynamoDBStreamEventFilter.builder()
+ *              .eventNames("INSERT", "MODIFY")          // ignore REMOVE events
+ *              .excludeTtlDeletes()                     // ignore the deletes done by the table's TTL
+ *              .includeKeyPrefix("pk", "ORDER#")        // only the order items
+ *              .maxSizeBytes(400 * 1024)
+ *              .build();
+ *
+ * The conditions are ANDed, a record is accepted if it passes all of them:
+ *
+ *      * eventNames: the record's eventName is one of the event names
+ *      * excludeTtlDeletes / excludeIdentity: the record's (identityPrincipalId, identityType) is not one of the excluded identities - TTL deletes have the
+ *        ("dynamodb.amazonaws.com", "Service") identity
+ *      * includeKeyPrefix: for each of the key attributes with include prefixes, the key value starts with one of its prefixes
+ *      * excludeKeyPrefix: no key value starts with one of its attribute's exclude prefixes
+ *      * minSizeBytes / maxSizeBytes: the record's sizeBytes is in the range
+ *
+ * Key values are compared as strings (S values, and the decimal string of N values) - B key values never match a prefix (an include prefix rejects them, an exclude prefix
+ * does not), for eagerly converted and LazyDynamoDBItem keys alike.
+ *
+ * With change coalescing (DynamoDBStreamChangeCoalescer), evaluating the record conditions (event names, identities, sizes) on each record would change the net change - for
+ * example with eventNames("INSERT", "MODIFY"), an INSERT followed by a REMOVE would coalesce into an INSERT of an item that no longer exists. The reader then evaluates
+ * acceptKeys on each record before it is coalesced (the keys of a net change are those of its records) and acceptChange on each net change.
+ *
+ * The filter is immutable and thread safe.
+ */
+public class DynamoDBStreamEventFilter {
+    public static final String TTL_IDENTITY_PRINCIPAL_ID = "dynamodb.amazonaws.com";
+    public static final String TTL_IDENTITY_TYPE = "Service";
+
+    private final Set<String> eventNames;
+    private final List<String[]> excludedIdentities;
+    private final List<KeyPrefix> includeKeyPrefixes;
+    private final List<KeyPrefix> excludeKeyPrefixes;
+    private final long minSizeBytes;
+    private final long maxSizeBytes;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private DynamoDBStreamEventFilter(Builder builder) {
+        this.eventNames = builder.eventNames == null ? null : Collections.unmodifiableSet(new HashSet<>(builder.eventNames));
+        this.excludedIdentities = new ArrayList<>(builder.excludedIdentities);
+        this.includeKeyPrefixes = new ArrayList<>(builder.includeKeyPrefixes);
+        this.excludeKeyPrefixes = new ArrayList<>(builder.excludeKeyPrefixes);
+        this.minSizeBytes = builder.minSizeBytes;
+        this.maxSizeBytes = builder.maxSizeBytes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Evaluates the filter on a record's metadata and keys
+     * @param eventName - the record's eventName
+     * @param identityPrincipalId - the record's userIdentity principalId, null if the record has no userIdentity
+     * @param identityType - the record's userIdentity type, null if the record has no userIdentity
+     * @param sizeBytes - the record's sizeBytes, null if unknown (the size conditions are not evaluated)
+     * @param keys - the record's key attributes, only the attributes with key prefix conditions are read (and decoded for LazyDynamoDBItem keys)
+     * @return - true if the record should be converted and passed to the handler
+     */
+    public boolean accept(String eventName, String identityPrincipalId, String identityType, Long sizeBytes, Map<String, Object> keys) {
+        return count(evaluateRecord(eventName, identityPrincipalId, identityType, sizeBytes) && evaluateKeys(keys));
+    }
+
+    /**
+     * Evaluates only the key prefix conditions - with change coalescing, the reader evaluates this on each record before it is coalesced
+     * @param keys - the record's key attributes
+     * @return - true if the record should be coalesced
+     */
+    public boolean acceptKeys(Map<String, Object> keys) {
+        return count(evaluateKeys(keys));
+    }
+
+    /**
+     * Evaluates only the event name, identity and size conditions on a coalesced net change (its collapsed eventName and its last record's identity and size) - with change
+     * coalescing, the reader evaluates this on each net change instead of on the individual records
+     * @param netChange - the net change's record (DynamoDBStreamChangeCoalescer.CoalescedChange.getRecord())
+     * @return - true if the net change should be converted and passed to the handler
+     */
+    public boolean acceptChange(DynamoDBStreamRecord netChange) {
+        return count(evaluateRecord(netChange.getEventName(), netChange.getIdentityPrincipalId(), netChange.getIdentityType(), netChange.getSizeBytes()));
+    }
+
+    /**
+     * The number of records the filter has rejected
+     * @return - the rejected count
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private boolean count(boolean accepted) {
+        if (!accepted) {
+            rejectedCount.incrementAndGet();
+        }
+        return accepted;
+    }
+
+    private boolean evaluateRecord(String eventName, String identityPrincipalId, String identityType, Long sizeBytes) {
+        if (eventNames != null && !eventNames.contains(eventName)) {
+            return false;
+        }
+        for (String[] identity : excludedIdentities) {
+            if (identity[0].equals(identityPrincipalId) && identity[1].equals(identityType)) {
+                return false;
+            }
+        }
+        return sizeBytes == null || (sizeBytes >= minSizeBytes && sizeBytes <= maxSizeBytes);
+    }
+
+    private boolean evaluateKeys(Map<String, Object> keys) {
+        if (includeKeyPrefixes.isEmpty() && excludeKeyPrefixes.isEmpty()) {
+            return true;
+        }
+        if (keys == null) {
+            return includeKeyPrefixes.isEmpty();
+        }
+        for (KeyPrefix keyPrefix : excludeKeyPrefixes) {
+            String value = keyValue(keys, keyPrefix.attributeName);
+            if (value != null && value.startsWith(keyPrefix.prefix)) {
+                return false;
+            }
+        }
+        // include prefixes of the same attribute are ORed, different attributes are ANDed
+        String attributeName = null;
+        boolean attributeMatched = true;
+        for (KeyPrefix keyPrefix : includeKeyPrefixes) {
+            if (!keyPrefix.attributeName.equals(attributeName)) {
+                if (!attributeMatched) {
+                    return false;
+                }
+                attributeName = keyPrefix.attributeName;
+                attributeMatched = false;
+            }
+            if (!attributeMatched) {
+                String value = keyValue(keys, keyPrefix.attributeName);
+                attributeMatched = value != null && value.startsWith(keyPrefix.prefix);
+            }
+        }
+        return attributeMatched;
+    }
+
+    /**
+     * The key value as a string - null for missing and B values, which never match a prefix. Eager and LazyDynamoDBItem keys both go through Map.get so that they are handled the same.
+     */
+    private static String keyValue(Map<String, Object> keys, String attributeName) {
+        Object value = keys.get(attributeName);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value instanceof Number ? value.toString() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBStreamEventFilter{" +
+                "eventNames=" + eventNames +
+                ", excludedIdentityCount=" + excludedIdentities.size() +
+                ", includeKeyPrefixes=" + includeKeyPrefixes +
+                ", excludeKeyPrefixes=" + excludeKeyPrefixes +
+                ", minSizeBytes=" + minSizeBytes +
+                ", maxSizeBytes=" + maxSizeBytes +
+                '}';
+    }
+
+    private static class KeyPrefix {
+        private final String attributeName;
+        private final String prefix;
+
+        private KeyPrefix(String attributeName, String prefix) {
+            this.attributeName = attributeName;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public String toString() {
+            return attributeName + "=" + prefix + "*";
+        }
+    }
+
+    public static class Builder {
+        private Set<String> eventNames;
+        private final List<String[]> excludedIdentities = new ArrayList<>();
+        private final List<KeyPrefix> includeKeyPrefixes = new ArrayList<>();
+        private final List<KeyPrefix> excludeKeyPrefixes = new ArrayList<>();
+        private long minSizeBytes = 0;
+        private long maxSizeBytes = Long.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        /**
+         * Accepts only the records with these event names (INSERT | MODIFY | REMOVE)
+         * @param eventNames - the accepted event names
+         * @return - the builder
+         */
+        public Builder eventNames(String... eventNames) {
+            ValidationUtils.validateAssertCondition(eventNames != null && eventNames.length > 0, "eventNames should not be empty");
+            if (this.eventNames == null) {
+                this.eventNames = new HashSet<>();
+            }
+            Collections.addAll(this.eventNames, eventNames);
+            return this;
+        }
+
+        /**
+         * Rejects the records whose userIdentity is the identity
+         * @param identityPrincipalId - the principal id
+         * @param identityType - the identity type
+         * @return - the builder
+         */
+        public Builder excludeIdentity(String identityPrincipalId, String identityType) {
+            ValidationUtils.validateAssertCondition(identityPrincipalId != null && identityType != null, "identityPrincipalId and identityType should not be null");
+            excludedIdentities.add(new String[]{identityPrincipalId, identityType});
+            return this;
+        }
+
+        /**
+         * Rejects the deletes done by the table's time to live
+         * @return - the builder
+         */
+        public Builder excludeTtlDeletes() {
+            return excludeIdentity(TTL_IDENTITY_PRINCIPAL_ID, TTL_IDENTITY_TYPE);
+        }
+
+        /**
+         * Accepts only the records whose key attribute value starts with the prefix - multiple prefixes for the same attribute are ORed
+         * @param keyAttributeName - the key attribute name
+         * @param prefix - the prefix
+         * @return - the builder
+         */
+        public Builder includeKeyPrefix(String keyAttributeName, String prefix) {
+            ValidationUtils.validateAssertCondition(keyAttributeName != null && prefix != null, "keyAttributeName and prefix should not be null");
+            // keep the prefixes grouped by attribute, the evaluation ORs adjacent prefixes of the same attribute
+            int index = includeKeyPrefixes.size();
+            for (int i = includeKeyPrefixes.size() - 1; i >= 0; i--) {
+                if (includeKeyPrefixes.get(i).attributeName.equals(keyAttributeName)) {
+                    index = i + 1;
+                    break;
+                }
+            }
+            includeKeyPrefixes.add(index, new KeyPrefix(keyAttributeName, prefix));
+            return this;
+        }
+
+        /**
+         * Rejects the records whose key attribute value starts with the prefix
+         * @param keyAttributeName - the key attribute name
+         * @param prefix - the prefix
+         * @return - the builder
+         */
+        public Builder excludeKeyPrefix(String keyAttributeName, String prefix) {
+            ValidationUtils.validateAssertCondition(keyAttributeName != null && prefix != null, "keyAttributeName and prefix should not be null");
+            excludeKeyPrefixes.add(new KeyPrefix(keyAttributeName, prefix));
+            return this;
+        }
+
+        public Builder minSizeBytes(long minSizeBytes) {
+            this.minSizeBytes = minSizeBytes;
+            return this;
+        }
+
+        public Builder maxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+            return this;
+        }
+
+        public DynamoDBStreamEventFilter build() {
+            ValidationUtils.validateAssertCondition(minSizeBytes >= 0 && maxSizeBytes >= minSizeBytes, "size range is invalid", minSizeBytes, maxSizeBytes);
+            return new DynamoDBStreamEventFilter(this);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.resonance.letsdata.data.readers.implementation.dynamodb.InMemoryDynamoDBTable;
+import com.resonance.letsdata.data.readers.implementation.streams.ShardLineageScheduler;
+import com.resonance.letsdata.data.readers.model.DynamoDBStreamRecord;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A local, in memory stand-in for a DynamoDB stream - for testing DynamoDBStreamsRecordReader handlers and the shard lineage scheduling without a table.
+ *
+ * The stream starts with a single open shard that covers the whole key hash range. Writes are routed to the open shard that covers the hash of the item keys and are assigned
+ * increasing sequence numbers. split closes a shard and creates two child shards that cover the halves of its hash range, so that (as in DynamoDB Streams) a key's later
+ * records are in a child shard of the shard that has its earlier records.
+ *
+ * The stream is thread safe.
+ */
+public class InMemoryDynamoDBStream {
+    private final String streamArn;
+    private final String streamViewType;
+    // guarded by this
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private long nextSequenceNumber = 1;
+    private int nextShardNumber = 0;
+
+    public InMemoryDynamoDBStream(String streamArn, String streamViewType) {
+        ValidationUtils.validateAssertCondition(streamArn != null && streamViewType != null, "streamArn and streamViewType should not be null");
+        this.streamArn = streamArn;
+        this.streamViewType = streamViewType;
+        addShard(null, 0, 1L << 32);
+    }
+
+    public String getStreamArn() {
+        return streamArn;
+    }
+
+    /**
+     * Writes a change record to the open shard that covers the keys
+     * @param eventName - INSERT | MODIFY | REMOVE
+     * @param keys - the item keys
+     * @param oldImage - the old image, null for INSERT
+     * @param newImage - the new image, null for REMOVE
+     * @return - the record that was written
+     */
+    public synchronized DynamoDBStreamRecord write(String eventName, Map<String, Object> keys, Map<String, Object> oldImage, Map<String, Object> newImage) {
+        ValidationUtils.validateAssertCondition(eventName != null && keys != null && !keys.isEmpty(), "eventName and keys should not be empty");
+        long hash = keyHash(keys);
+        Shard shard = null;
+        for (Shard candidate : shards.values()) {
+            if (!candidate.closed && hash >= candidate.startHash && hash < candidate.endHash) {
+                shard = candidate;
+                break;
+            }
+        }
+        ValidationUtils.validateAssertCondition(shard != null, "no open shard covers the keys", keys);
+        long sequenceNumber = nextSequenceNumber++;
+        DynamoDBStreamRecord record = new DynamoDBStreamRecord("event-" + sequenceNumber, eventName, null, null, String.format("%021d", sequenceNumber),
+                (long) keys.size() + (oldImage == null ? 0 : InMemoryDynamoDBTable.estimateItemSize(oldImage)) + (newImage == null ? 0 : InMemoryDynamoDBTable.estimateItemSize(newImage)),
+                streamViewType, new Date((System.currentTimeMillis() / 1000) * 1000), copy(keys), copy(oldImage), copy(newImage));
+        shard.records.add(record);
+        return record;
+    }
+
+    /**
+     * Closes an open shard and creates its two child shards
+     * @param shardId - the shard id
+     * @return - the child shard ids
+     */
+    public synchronized List<String> split(String shardId) {
+        Shard shard = shards.get(shardId);
+        ValidationUtils.validateAssertCondition(shard != null && !shard.closed, "shard should be an open shard", shardId);
+        ValidationUtils.validateAssertCondition(shard.endHash - shard.startHash > 1, "shard's hash range is too small to split", shardId);
+        shard.closed = true;
+        long middle = shard.startHash + (shard.endHash - shard.startHash) / 2;
+        return Arrays.asList(addShard(shardId, shard.startHash, middle).shardId, addShard(shardId, middle, shard.endHash).shardId);
+    }
+
+    /**
+     * The stream's shards and their parents, in creation order - parents are listed before their children
+     * @return - the shards
+     */
+    public synchronized List<ShardLineageScheduler.ShardInfo> describeShards() {
+        List<ShardLineageScheduler.ShardInfo> shardInfos = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            shardInfos.add(new ShardLineageScheduler.ShardInfo(shard.shardId, shard.parentShardId));
+        }
+        return shardInfos;
+    }
+
+    /**
+     * Reads the shard's records after a sequence number
+     * @param shardId - the shard id
+     * @param afterSequenceNumber - the last processed sequence number, null to read from the shard's start
+     * @param limit - the max number of records
+     * @return - the records and whether the shard has ended (closed and fully read)
+     */
+    public synchronized RecordsPage getRecords(String shardId, String afterSequenceNumber, int limit) {
+        Shard shard = shards.get(shardId);
+        ValidationUtils.validateAssertCondition(shard != null, "shard does not exist", shardId);
+        ValidationUtils.validateAssertCondition(limit > 0, "limit should be positive", limit);
+        int start = 0;
+        if (afterSequenceNumber != null) {
+            while (start < shard.records.size() && DynamoDBStreamChangeCoalescer.compareSequenceNumbers(shard.records.get(start).getSequenceNumber(), afterSequenceNumber) <= 0) {
+                start++;
+            }
+        }
+        int end = Math.min(shard.records.size(), start + limit);
+        List<DynamoDBStreamRecord> records = new ArrayList<>(shard.records.subList(start, end));
+        return new RecordsPage(records, shard.closed && end == shard.records.size());
+    }
+
+    private Shard addShard(String parentShardId, long startHash, long endHash) {
+        Shard shard = new Shard(String.format("shardId-%08d", nextShardNumber++), parentShardId, startHash, endHash);
+        shards.put(shard.shardId, shard);
+        return shard;
+    }
+
+    private static long keyHash(Map<String, Object> keys) {
+        return InMemoryDynamoDBTable.partitionKeyHash(new TreeMap<>(keys).toString());
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> image) {
+        return image == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(image));
+    }
+
+    /**
+     * A page of a shard's records
+     */
+    public static class RecordsPage {
+        private final List<DynamoDBStreamRecord> records;
+        private final boolean shardEnded;
+
+        private RecordsPage(List<DynamoDBStreamRecord> records, boolean shardEnded) {
+            this.records = Collections.unmodifiableList(records);
+            this.shardEnded = shardEnded;
+        }
+
+        public List<DynamoDBStreamRecord> getRecords() {
+            return records;
+        }
+
+        /**
+         * Whether the shard is closed and this page has its last records - the shard processor should return after processing the page
+         * @return - true at the shard end
+         */
+        public boolean isShardEnded() {
+            return shardEnded;
+        }
+
+        @Override
+        public String toString() {
+            return "RecordsPage{" +
+                    "recordCount=" + records.size() +
+                    ", shardEnded=" + shardEnded +
+                    '}';
+        }
+    }
+
+    private static class Shard {
+        private final String shardId;
+        private final String parentShardId;
+        private final long startHash;
+        private final long endHash;
+        private final List<DynamoDBStreamRecord> records = new ArrayList<>();
+        private boolean closed;
+
+        private Shard(String shardId, String parentShardId, long startHash, long endHash) {
+            this.shardId = shardId;
+            this.parentShardId = parentShardId;
+            this.startHash = startHash;
+            this.endHash = endHash;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.resonance.letsdata.data.readers.implementation.filter;
+
+import com.resonance.letsdata.data.util.Matcher;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.Arrays;
+
+/**
+ * A declarative filter over the raw bytes of a record. The reader evaluates the filter right after it finds the record boundaries - records that do not match are skipped without
+ * being sent to the parser's parseDocument method.
+ *
+ * Filters are composed from byte patterns using AND / OR / NOT. The pattern search uses the Matcher utility (Boyer-Moore), the same as a parseDocument implementation would.
+ * For example, the filter for the ERROR log lines example in the SingleFileParser docs is:
+ *
+ *      RecordFilter errorRecords = RecordFilter.contains("\"lvl\":\"ERROR\"");
+ *
+ * and a filter for ERROR or WARN records that are not from the main thread is:
+ *
+ *      RecordFilter filter = RecordFilter.and(
+ *              RecordFilter.or(RecordFilter.contains("\"lvl\":\"ERROR\""), RecordFilter.contains("\"lvl\":\"WARN\"")),
+ *              RecordFilter.not(RecordFilter.contains("\"thd\":\"main\"")));
+ *
+ * Filter instances are immutable and safe to share across threads.
+ */
+public interface RecordFilter {
+    /**
+     * Evaluates the filter on the record bytes
+     * @param byteArr - the byteArr that has the contents of the record
+     * @param startIndex - the start index of the record in the byteArr
+     * @param endIndex - the end index of the record in the byteArr
+     * @return - true if the record should be sent to the parser, false if the record should be skipped
+     */
+    boolean matches(byte[] byteArr, int startIndex, int endIndex);
+
+    /**
+     * A filter that matches records that contain the pattern
+     * @param pattern - the pattern to search for in the record
+     * @return - the filter
+     */
+    static RecordFilter contains(String pattern) {
+        ValidationUtils.validateAssertCondition(pattern != null && !pattern.isEmpty(), "record filter pattern should not be empty");
+        // compile the Boyer-Moore tables up front
+        Matcher.getMatchPatternForString(pattern);
+        return new RecordFilter() {
+            @Override
+            public boolean matches(byte[] byteArr, int startIndex, int endIndex) {
+                return Matcher.match(byteArr, startIndex, endIndex, pattern) != -1;
+            }
+
+            @Override
+            public String toString() {
+                return "contains(" + pattern + ")";
+            }
+        };
+    }
+
+    /**
+     * A filter that matches records that match all the filters. Evaluation stops at the first filter that does not match.
+     * @param filters - the filters
+     * @return - the filter
+     */
+    static RecordFilter and(RecordFilter... filters) {
+        ValidationUtils.validateAssertCondition(filters != null && filters.length > 0, "and record filter should have at least one filter");
+        final RecordFilter[] operands = filters.clone();
+        return new RecordFilter() {
+            @Override
+            public boolean matches(byte[] byteArr, int startIndex, int endIndex) {
+                for (RecordFilter operand : operands) {
+                    if (!operand.matches(byteArr, startIndex, endIndex)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "and" + Arrays.toString(operands);
+            }
+        };
+    }
+
+    /**
+     * A filter that matches records that match any of the filters. Evaluation stops at the first filter that matches.
+     * @param filters - the filters
+     * @return - the filter
+     */
+    static RecordFilter or(RecordFilter... filters) {
+        ValidationUtils.validateAssertCondition(filters != null && filters.length > 0, "or record filter should have at least one filter");
+        final RecordFilter[] operands = filters.clone();
+        return new RecordFilter() {
+            @Override
+            public boolean matches(byte[] byteArr, int startIndex, int endIndex) {
+                for (RecordFilter operand : operands) {
+                    if (operand.matches(byteArr, startIndex, endIndex)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public String toString() {
+                return "or" + Arrays.toString(operands);
+            }
+        };
+    }
+
+    /**
+     * A filter that matches records that do not match the filter
+     * @param filter - the filter to negate
+     * @return - the filter
+     */
+    static RecordFilter not(RecordFilter filter) {
+        ValidationUtils.validateAssertCondition(filter != null, "not record filter should not be null");
+        return new RecordFilter() {
+            @Override
+            public boolean matches(byte[] byteArr, int startIndex, int endIndex) {
+                return !filter.matches(byteArr, startIndex, endIndex);
+            }
+
+            @Override
+            public String toString() {
+                return "not(" + filter + ")";
+            }
+        };
+    }
+}
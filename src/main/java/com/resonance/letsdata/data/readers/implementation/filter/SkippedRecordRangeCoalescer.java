@@ -0,0 +1,110 @@
+package com.resonance.letsdata.data.readers.implementation.filter;
+
+import com.resonance.letsdata.data.documents.implementation.SkipDoc;
+import com.resonance.letsdata.data.documents.interfaces.SkipDocInterface;
+import com.resonance.letsdata.data.documents.model.DocumentMetadata;
+import com.resonance.letsdata.data.documents.model.DocumentMetadataSchema;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Coalesces consecutive records that are rejected by a RecordFilter into a single range level skip doc, instead of one SkipDoc per record.
+ *
+ * The reader calls skip for each rejected record and flush before it emits the next document (and at the end of the file). flush returns a single SkipDoc whose start offset is the
+ * start of the first skipped record and whose end offset is the end of the last skipped record in the run, or null if no records were skipped since the last flush.
+ *
+ *      for each record in file:
+ *          if (!filter.matches(byteArr, startIndex, endIndex)) {
+ *              coalescer.skip(recordStartOffset, recordEndOffset);
+ *              continue;
+ *          }
+ *          SkipDocInterface skipRange = coalescer.flush();
+ *          if (skipRange != null) {
+ *              // write skip range
+ *          }
+ *          // parseDocument
+ *
+ * This class is not thread safe - each file reader should use its own instance.
+ */
+public class SkippedRecordRangeCoalescer {
+    /**
+     * The document metadata key for the number of records in the skipped range
+     */
+    public static final String SKIPPED_RECORD_COUNT_METADATA_KEY = "skippedRecordCount";
+
+    private static final DocumentMetadataSchema METADATA_SCHEMA = DocumentMetadataSchema.builder().longField(SKIPPED_RECORD_COUNT_METADATA_KEY).build();
+    private static final int SKIPPED_RECORD_COUNT_FIELD = METADATA_SCHEMA.fieldIndex(SKIPPED_RECORD_COUNT_METADATA_KEY);
+
+    private final String s3FileType;
+    private final String s3Filename;
+    private long rangeStartOffset = -1;
+    private long rangeEndOffset = -1;
+    private long skippedRecordCount = 0;
+    private long totalSkippedRecordCount = 0;
+
+    /**
+     * Constructs the coalescer for the file
+     * @param s3FileType - the filetype, used as the key in the skip doc's offset maps
+     * @param s3Filename - the filename, used as the skip doc's partition key
+     */
+    public SkippedRecordRangeCoalescer(String s3FileType, String s3Filename) {
+        ValidationUtils.validateAssertCondition(s3FileType != null, "s3FileType should not be null");
+        this.s3FileType = s3FileType;
+        this.s3Filename = s3Filename;
+    }
+
+    /**
+     * Adds the rejected record to the current skipped range
+     * @param startOffset - the start offset of the record in the file in bytes
+     * @param endOffset - the end offset of the record in the file in bytes
+     */
+    public void skip(long startOffset, long endOffset) {
+        ValidationUtils.validateAssertCondition(startOffset >= 0 && endOffset >= startOffset, "skipped record offsets are invalid", startOffset, endOffset);
+        ValidationUtils.validateAssertCondition(startOffset >= rangeEndOffset, "skipped records should be in file order", rangeEndOffset, startOffset);
+        if (skippedRecordCount == 0) {
+            rangeStartOffset = startOffset;
+        }
+        rangeEndOffset = endOffset;
+        skippedRecordCount++;
+        totalSkippedRecordCount++;
+    }
+
+    /**
+     * Whether there are skipped records that have not been flushed
+     * @return - true if flush would return a skip doc
+     */
+    public boolean hasPendingRange() {
+        return skippedRecordCount > 0;
+    }
+
+    /**
+     * Closes the current skipped range
+     * @return - a skip doc for the range or null if there were no skipped records since the last flush
+     */
+    public SkipDocInterface flush() {
+        if (skippedRecordCount == 0) {
+            return null;
+        }
+
+        Map<String, String> startOffset = new HashMap<>();
+        startOffset.put(s3FileType, Long.toString(rangeStartOffset));
+        Map<String, String> endOffset = new HashMap<>();
+        endOffset.put(s3FileType, Long.toString(rangeEndOffset));
+        DocumentMetadata documentMetadata = METADATA_SCHEMA.newMetadata().setLong(SKIPPED_RECORD_COUNT_FIELD, skippedRecordCount);
+        String skipMessage = "skipped " + skippedRecordCount + " records rejected by the record pre-filter";
+        SkipDoc skipDoc = SkipDoc.withCompactMetadata(startOffset, endOffset, skipMessage, null, null, documentMetadata, null, s3Filename);
+
+        skippedRecordCount = 0;
+        return skipDoc;
+    }
+
+    /**
+     * The total number of records skipped by this coalescer, including the flushed ranges
+     * @return - the total skipped record count
+     */
+    public long getTotalSkippedRecordCount() {
+        return totalSkippedRecordCount;
+    }
+}
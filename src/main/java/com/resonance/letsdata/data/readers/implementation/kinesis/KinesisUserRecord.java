@@ -0,0 +1,120 @@
+package com.resonance.letsdata.data.readers.implementation.kinesis;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A user record from a Kinesis record - either a sub record of a KPL aggregated record or the Kinesis record itself when it is not aggregated.
+ *
+ * The data is a read only slice of the original Kinesis record payload (no copy). Sub records share the parent record's sequence number and are ordered by their subSequenceNumber -
+ * the reader checkpoints at (sequenceNumber, subSequenceNumber) so that a restart resumes after the last processed sub record.
+ */
+public class KinesisUserRecord {
+    private final String partitionKey;
+    private final String explicitHashKey;
+    private final String sequenceNumber;
+    private final long subSequenceNumber;
+    private final boolean aggregated;
+    private final ByteBuffer data;
+
+    public KinesisUserRecord(String partitionKey, String explicitHashKey, String sequenceNumber, long subSequenceNumber, boolean aggregated, ByteBuffer data) {
+        this.partitionKey = partitionKey;
+        this.explicitHashKey = explicitHashKey;
+        this.sequenceNumber = sequenceNumber;
+        this.subSequenceNumber = subSequenceNumber;
+        this.aggregated = aggregated;
+        this.data = data;
+    }
+
+    /**
+     * The user record's partition key - for sub records this is the partition key the producer set on the sub record, not the aggregated record's partition key
+     * @return - the partition key
+     */
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    /**
+     * The explicit hash key the producer set on the sub record, null if none was set
+     * @return - the explicit hash key
+     */
+    public String getExplicitHashKey() {
+        return explicitHashKey;
+    }
+
+    /**
+     * The Kinesis record's sequence number
+     * @return - the sequence number
+     */
+    public String getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * The index of the sub record in the aggregated record, 0 for records that are not aggregated
+     * @return - the sub sequence number
+     */
+    public long getSubSequenceNumber() {
+        return subSequenceNumber;
+    }
+
+    /**
+     * Whether the user record is a sub record of a KPL aggregated record
+     * @return - true for sub records
+     */
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
+    /**
+     * The user record's data - a read only slice of the Kinesis record payload
+     * @return - the data
+     */
+    public ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (!(o instanceof KinesisUserRecord)) return false;
+
+        KinesisUserRecord that = (KinesisUserRecord) o;
+
+        return new EqualsBuilder()
+                .append(subSequenceNumber, that.subSequenceNumber)
+                .append(aggregated, that.aggregated)
+                .append(partitionKey, that.partitionKey)
+                .append(explicitHashKey, that.explicitHashKey)
+                .append(sequenceNumber, that.sequenceNumber)
+                .append(data, that.data)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(partitionKey)
+                .append(explicitHashKey)
+                .append(sequenceNumber)
+                .append(subSequenceNumber)
+                .append(aggregated)
+                .append(data)
+                .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisUserRecord{" +
+                "partitionKey='" + partitionKey + '\'' +
+                ", explicitHashKey='" + explicitHashKey + '\'' +
+                ", sequenceNumber='" + sequenceNumber + '\'' +
+                ", subSequenceNumber=" + subSequenceNumber +
+                ", aggregated=" + aggregated +
+                ", dataLength=" + data.remaining() +
+                '}';
+    }
+}
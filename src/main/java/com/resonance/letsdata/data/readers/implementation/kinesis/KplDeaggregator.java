@@ -0,0 +1,276 @@
+package com.resonance.letsdata.data.readers.implementation.kinesis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * De-aggregates KPL (Kinesis Producer Library) aggregated records into their user records without copying the payload.
+ *
+ * The KPL aggregated record format is:
+ *
+ *      +--------------------+--------------------------------------+-----------------------------+
+ *      | magic: F3 89 9A C2 | protobuf AggregatedRecord message    | MD5 of the protobuf message |
+ *      +--------------------+--------------------------------------+-----------------------------+
+ *
+ *      message AggregatedRecord {
+ *          repeated string partition_key_table     = 1;
+ *          repeated string explicit_hash_key_table = 2;
+ *          repeated Record records                 = 3;
+ *      }
+ *      message Record {
+ *          required uint64 partition_key_index     = 1;
+ *          optional uint64 explicit_hash_key_index = 2;
+ *          required bytes  data                    = 3;
+ *          repeated Tag    tags                    = 4;
+ *      }
+ *
+ * The protobuf message is decoded directly from the ByteBuffer - each user record's data is a read only slice of the original payload. Records without the magic prefix, with
+ * a digest mismatch or that fail to decode are returned as a single non aggregated user record, the same as the KCL does.
+ *
+ * The class is stateless and thread safe.
+ */
+public class KplDeaggregator {
+    private static final Logger logger = LoggerFactory.getLogger(KplDeaggregator.class);
+
+    private static final byte[] KPL_MAGIC = new byte[]{(byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2};
+    private static final int DIGEST_LENGTH = 16;
+
+    private static final int WIRE_TYPE_VARINT = 0;
+    private static final int WIRE_TYPE_FIXED64 = 1;
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_TYPE_FIXED32 = 5;
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException("MD5 message digest is not available", ex);
+            }
+        }
+    };
+
+    /**
+     * Whether the payload has the KPL aggregated record magic prefix
+     * @param data - the Kinesis record payload
+     * @return - true if the payload starts with the KPL magic bytes
+     */
+    public static boolean isAggregated(ByteBuffer data) {
+        if (data == null || data.remaining() < KPL_MAGIC.length + DIGEST_LENGTH) {
+            return false;
+        }
+        int position = data.position();
+        for (int i = 0; i < KPL_MAGIC.length; i++) {
+            if (data.get(position + i) != KPL_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * De-aggregates the Kinesis record into its user records
+     * @param partitionKey - the Kinesis record's partition key, used for the non aggregated fallback
+     * @param sequenceNumber - the Kinesis record's sequence number
+     * @param data - the Kinesis record payload, its position and limit are not modified
+     * @return - the user records in sub sequence order
+     */
+    public static List<KinesisUserRecord> deaggregate(String partitionKey, String sequenceNumber, ByteBuffer data) {
+        if (isAggregated(data)) {
+            try {
+                List<KinesisUserRecord> userRecords = decode(sequenceNumber, data);
+                if (userRecords != null) {
+                    return userRecords;
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("failed to decode the KPL aggregated record, processing it as a single record - sequenceNumber: {}", sequenceNumber, ex);
+            }
+        }
+        ByteBuffer slice = data == null ? ByteBuffer.allocate(0) : data.slice().asReadOnlyBuffer();
+        return Collections.singletonList(new KinesisUserRecord(partitionKey, null, sequenceNumber, 0, false, slice));
+    }
+
+    private static List<KinesisUserRecord> decode(String sequenceNumber, ByteBuffer data) {
+        int messageStart = data.position() + KPL_MAGIC.length;
+        int messageEnd = data.limit() - DIGEST_LENGTH;
+
+        ByteBuffer message = data.duplicate();
+        message.position(messageStart).limit(messageEnd);
+        MessageDigest md5 = MD5.get();
+        md5.reset();
+        md5.update(message);
+        byte[] digest = md5.digest();
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            if (digest[i] != data.get(messageEnd + i)) {
+                logger.warn("KPL aggregated record digest mismatch, processing it as a single record - sequenceNumber: {}", sequenceNumber);
+                return null;
+            }
+        }
+
+        List<String> partitionKeyTable = new ArrayList<>();
+        List<String> explicitHashKeyTable = new ArrayList<>();
+        // per record (partitionKeyIndex, explicitHashKeyIndex, dataOffset, dataLength), resolved after the tables are read since protobuf does not guarantee field order
+        long[] recordFields = new long[16 * 4];
+        int recordCount = 0;
+
+        Reader reader = new Reader(data, messageStart, messageEnd);
+        while (reader.hasRemaining()) {
+            long tag = reader.readVarint();
+            int fieldNumber = (int) (tag >>> 3);
+            int wireType = (int) (tag & 0x7);
+            if (fieldNumber == 1 && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                partitionKeyTable.add(reader.readString());
+            } else if (fieldNumber == 2 && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                explicitHashKeyTable.add(reader.readString());
+            } else if (fieldNumber == 3 && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                int length = reader.readLength();
+                if ((recordCount + 1) * 4 > recordFields.length) {
+                    recordFields = Arrays.copyOf(recordFields, recordFields.length * 2);
+                }
+                decodeRecord(new Reader(data, reader.position, reader.position + length), recordFields, recordCount * 4);
+                reader.skip(length);
+                recordCount++;
+            } else {
+                reader.skipField(wireType);
+            }
+        }
+
+        List<KinesisUserRecord> userRecords = new ArrayList<>(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            int base = i * 4;
+            long partitionKeyIndex = recordFields[base];
+            long explicitHashKeyIndex = recordFields[base + 1];
+            if (partitionKeyIndex < 0 || partitionKeyIndex >= partitionKeyTable.size()) {
+                throw new RuntimeException("KPL sub record partition key index is out of range - index: " + partitionKeyIndex + ", tableSize: " + partitionKeyTable.size());
+            }
+            if (explicitHashKeyIndex >= explicitHashKeyTable.size()) {
+                throw new RuntimeException("KPL sub record explicit hash key index is out of range - index: " + explicitHashKeyIndex + ", tableSize: " + explicitHashKeyTable.size());
+            }
+            ByteBuffer slice = data.duplicate();
+            slice.position((int) recordFields[base + 2]).limit((int) (recordFields[base + 2] + recordFields[base + 3]));
+            String explicitHashKey = explicitHashKeyIndex < 0 ? null : explicitHashKeyTable.get((int) explicitHashKeyIndex);
+            userRecords.add(new KinesisUserRecord(partitionKeyTable.get((int) partitionKeyIndex), explicitHashKey, sequenceNumber, i, true, slice.slice().asReadOnlyBuffer()));
+        }
+        return userRecords;
+    }
+
+    private static void decodeRecord(Reader reader, long[] recordFields, int base) {
+        recordFields[base] = -1;
+        recordFields[base + 1] = -1;
+        recordFields[base + 2] = -1;
+        recordFields[base + 3] = 0;
+        while (reader.hasRemaining()) {
+            long tag = reader.readVarint();
+            int fieldNumber = (int) (tag >>> 3);
+            int wireType = (int) (tag & 0x7);
+            if (fieldNumber == 1 && wireType == WIRE_TYPE_VARINT) {
+                recordFields[base] = reader.readVarint();
+            } else if (fieldNumber == 2 && wireType == WIRE_TYPE_VARINT) {
+                recordFields[base + 1] = reader.readVarint();
+            } else if (fieldNumber == 3 && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                int length = reader.readLength();
+                recordFields[base + 2] = reader.position;
+                recordFields[base + 3] = length;
+                reader.skip(length);
+            } else {
+                reader.skipField(wireType);
+            }
+        }
+        if (recordFields[base] < 0 || recordFields[base + 2] < 0) {
+            throw new RuntimeException("KPL sub record is missing the required partition key index or data");
+        }
+    }
+
+    /**
+     * Minimal protobuf wire format reader over absolute positions of a ByteBuffer
+     */
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final int limit;
+        private int position;
+
+        Reader(ByteBuffer buffer, int position, int limit) {
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit) {
+                    throw new RuntimeException("truncated varint in KPL aggregated record");
+                }
+                byte b = buffer.get(position++);
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new RuntimeException("malformed varint in KPL aggregated record");
+        }
+
+        int readLength() {
+            long length = readVarint();
+            if (length < 0 || length > limit - position) {
+                throw new RuntimeException("length delimited field exceeds the KPL aggregated record - length: " + length);
+            }
+            return (int) length;
+        }
+
+        String readString() {
+            int length = readLength();
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position + i);
+            }
+            position += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skip(int length) {
+            if (length > limit - position) {
+                throw new RuntimeException("skip exceeds the KPL aggregated record - length: " + length);
+            }
+            position += length;
+        }
+
+        void skipField(int wireType) {
+            switch (wireType) {
+                case WIRE_TYPE_VARINT: {
+                    readVarint();
+                    return;
+                }
+                case WIRE_TYPE_FIXED64: {
+                    skip(8);
+                    return;
+                }
+                case WIRE_TYPE_LENGTH_DELIMITED: {
+                    skip(readLength());
+                    return;
+                }
+                case WIRE_TYPE_FIXED32: {
+                    skip(4);
+                    return;
+                }
+                default: {
+                    throw new RuntimeException("unsupported protobuf wire type in KPL aggregated record - wireType: " + wireType);
+                }
+            }
+        }
+    }
+}
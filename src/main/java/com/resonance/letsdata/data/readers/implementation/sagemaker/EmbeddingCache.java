@@ -0,0 +1,206 @@
+package com.resonance.letsdata.data.readers.implementation.sagemaker;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded cache of embedding vectors keyed by (model id, content hash), so that repeated content (boilerplate titles, descriptions, keywords) is vectorized once.
+ *
+ * The vectors are stored off heap in a single direct buffer of capacity x dimension floats - the heap only holds the LRU index of keys to slots, so a large cache adds little
+ * GC pressure. When the cache is full, the least recently used vector's slot is reused. The content hash is the text's 128 bit MD5 digest, so collisions are not a practical
+ * concern.
+ *
+ * The cache is thread safe and can be shared by the workers' VectorizationBatchers.
+ */
+public class EmbeddingCache {
+    private final int dimension;
+    private final int capacity;
+    private final FloatBuffer slab;
+    // guarded by this
+    private final LinkedHashMap<Key, Integer> index;
+    private final Deque<Integer> freeSlots;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param dimension - the vector dimension
+     * @param capacity - the max number of cached vectors
+     */
+    public EmbeddingCache(int dimension, int capacity) {
+        ValidationUtils.validateAssertCondition(dimension > 0 && capacity > 0, "dimension and capacity should be positive", dimension, capacity);
+        ValidationUtils.validateAssertCondition((long) dimension * capacity <= Integer.MAX_VALUE / Float.BYTES, "dimension x capacity exceeds the max off heap buffer size", dimension, capacity);
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.slab = ByteBuffer.allocateDirect(dimension * capacity * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.index = new LinkedHashMap<>(16, 0.75f, true);
+        this.freeSlots = new ArrayDeque<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            freeSlots.add(slot);
+        }
+    }
+
+    /**
+     * Creates the cache key of a model's vector of a text
+     * @param modelId - the model id
+     * @param text - the text
+     * @return - the key
+     */
+    public static Key key(String modelId, String text) {
+        ValidationUtils.validateAssertCondition(modelId != null && text != null, "modelId and text should not be null");
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("MD5 digest is not available", ex);
+        }
+        byte[] digest = md5.digest(text.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new Key(modelId, buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Copies the cached vector of the key into dest
+     * @param key - the key
+     * @param dest - the destination array
+     * @param offset - the destination offset
+     * @return - true if the vector was cached, false otherwise
+     */
+    public synchronized boolean get(Key key, float[] dest, int offset) {
+        Integer slot = index.get(key);
+        if (slot == null) {
+            missCount++;
+            return false;
+        }
+        hitCount++;
+        ((Buffer) slab).position(slot * dimension);
+        slab.get(dest, offset, dimension);
+        return true;
+    }
+
+    /**
+     * The cached vector of the key in a new array - the array is allocated only on a hit
+     * @param key - the key
+     * @return - a copy of the cached vector, null if the vector is not cached
+     */
+    public synchronized float[] get(Key key) {
+        Integer slot = index.get(key);
+        if (slot == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        float[] vector = new float[dimension];
+        ((Buffer) slab).position(slot * dimension);
+        slab.get(vector, 0, dimension);
+        return vector;
+    }
+
+    /**
+     * Caches the vector of the key, evicting the least recently used vector if the cache is full
+     * @param key - the key
+     * @param src - the source array
+     * @param offset - the vector's offset in the source array
+     */
+    public synchronized void put(Key key, float[] src, int offset) {
+        ValidationUtils.validateAssertCondition(offset >= 0 && offset + dimension <= src.length, "vector is out of the source array's bounds", offset, dimension, src.length);
+        Integer slot = index.get(key);
+        if (slot == null) {
+            if (freeSlots.isEmpty()) {
+                Iterator<Map.Entry<Key, Integer>> eldest = index.entrySet().iterator();
+                freeSlots.add(eldest.next().getValue());
+                eldest.remove();
+                evictionCount++;
+            }
+            slot = freeSlots.poll();
+            index.put(key, slot);
+        }
+        ((Buffer) slab).position(slot * dimension);
+        slab.put(src, offset, dimension);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * The size of the off heap vector store
+     * @return - the off heap bytes
+     */
+    public long getOffHeapBytes() {
+        return (long) dimension * capacity * Float.BYTES;
+    }
+
+    /**
+     * A cache key - the model id and the 128 bit content hash of the text
+     */
+    public static final class Key {
+        private final String modelId;
+        private final long hashHigh;
+        private final long hashLow;
+
+        private Key(String modelId, long hashHigh, long hashLow) {
+            this.modelId = modelId;
+            this.hashHigh = hashHigh;
+            this.hashLow = hashLow;
+        }
+
+        public String getModelId() {
+            return modelId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashHigh == other.hashHigh && hashLow == other.hashLow && modelId.equals(other.modelId);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hashLow ^ (hashLow >>> 32)) * 31 + modelId.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Key{modelId='" + modelId + "', hash=" + String.format("%016x%016x", hashHigh, hashLow) + "}";
+        }
+    }
+}
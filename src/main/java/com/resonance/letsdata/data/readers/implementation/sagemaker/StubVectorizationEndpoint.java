@@ -0,0 +1,82 @@
+package com.resonance.letsdata.data.readers.implementation.sagemaker;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A local stub VectorizationEndpoint for testing - returns deterministic unit vectors derived from each text's hash (equal texts get equal vectors) and records the batch sizes
+ * it was invoked with. The stub is thread safe.
+ */
+public class StubVectorizationEndpoint implements VectorizationEndpoint {
+    private final String modelId;
+    private final int dimension;
+    private final int maxBatchSize;
+    // guarded by this
+    private final List<Integer> invocationBatchSizes = new ArrayList<>();
+    private long vectorizedTextCount;
+
+    /**
+     * @param modelId - the model id
+     * @param dimension - the vector dimension
+     * @param maxBatchSize - the max texts per invocation, larger batches fail as a real endpoint would
+     */
+    public StubVectorizationEndpoint(String modelId, int dimension, int maxBatchSize) {
+        ValidationUtils.validateAssertCondition(modelId != null, "modelId should not be null");
+        ValidationUtils.validateAssertCondition(dimension > 0 && maxBatchSize > 0, "dimension and maxBatchSize should be positive", dimension, maxBatchSize);
+        this.modelId = modelId;
+        this.dimension = dimension;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public String getModelId() {
+        return modelId;
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] vectorize(List<String> texts) {
+        if (texts.size() > maxBatchSize) {
+            throw new RuntimeException("batch size exceeds the endpoint's max batch size - batchSize: " + texts.size() + ", maxBatchSize: " + maxBatchSize);
+        }
+        synchronized (this) {
+            invocationBatchSizes.add(texts.size());
+            vectorizedTextCount += texts.size();
+        }
+        float[] vectors = new float[texts.size() * dimension];
+        for (int i = 0; i < texts.size(); i++) {
+            Random random = new Random(texts.get(i).hashCode());
+            double norm = 0;
+            for (int j = 0; j < dimension; j++) {
+                float value = (float) random.nextGaussian();
+                vectors[i * dimension + j] = value;
+                norm += value * value;
+            }
+            float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+            for (int j = 0; j < dimension; j++) {
+                vectors[i * dimension + j] *= scale;
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * The batch sizes of the invocations so far, in invocation order
+     * @return - the batch sizes
+     */
+    public synchronized List<Integer> getInvocationBatchSizes() {
+        return Collections.unmodifiableList(new ArrayList<>(invocationBatchSizes));
+    }
+
+    public synchronized long getVectorizedTextCount() {
+        return vectorizedTextCount;
+    }
+}
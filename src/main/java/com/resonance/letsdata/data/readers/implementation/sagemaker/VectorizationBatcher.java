@@ -0,0 +1,263 @@
+package com.resonance.letsdata.data.readers.implementation.sagemaker;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import com.resonance.letsdata.data.readers.interfaces.sagemaker.SagemakerVectorsInterface;
+import com.resonance.letsdata.data.readers.model.FloatVectors;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Vectorizes a batch of documents with efficiently packed inference batches. The texts that the handler extracts (extractDocumentElementsForVectorization) from all the documents
+ * are gathered, packed into inference batches by their estimated token counts and sent to the endpoint, and the vectors are fanned back to each document's
+ * constructVectorDoc(DocumentInterface, FloatVectors) as views of the batch responses.
+ *
+ * Packing: the model pads each batch to its longest text, so a batch costs batchSize x longest text tokens. The texts are sorted by their estimated tokens (capped at the model's
+ * max sequence tokens - the model truncates longer texts) and packed in order, so that texts of similar length share a batch. A batch is closed when it has maxBatchSize texts or
+ * when adding the next text would take the padded batch over maxBatchTokens.
+ *
+ *      VectorizationBatcher batcher = new VectorizationBatcher(handler, endpoint, 32, 16384, 512, VectorizationBatcher.DEFAULT_TOKEN_ESTIMATOR);
+ *      List&lt;DocumentInterface&gt; vectorDocs = batcher.vectorize(documents);
+ *
+ * Repeated texts are vectorized once per call, and with an EmbeddingCache, texts whose vectors are cached are not sent to the endpoint at all - the cached vectors are
+ * re-joined with the inferred vectors in the FloatVectors passed to constructVectorDoc, so the handler does not see the difference. Inferred vectors are added to the cache.
+ *
+ * The batcher is not thread safe - use a batcher per worker (the cache can be shared).
+ */
+public class VectorizationBatcher {
+    /**
+     * Estimates tokens as a quarter of the characters (a common average for subword tokenizers on english text) plus 2 special tokens
+     */
+    public static final ToIntFunction<String> DEFAULT_TOKEN_ESTIMATOR = new ToIntFunction<String>() {
+        @Override
+        public int applyAsInt(String text) {
+            return (text.length() + 3) / 4 + 2;
+        }
+    };
+
+    private final SagemakerVectorsInterface handler;
+    private final VectorizationEndpoint endpoint;
+    private final int maxBatchSize;
+    private final long maxBatchTokens;
+    private final int maxSequenceTokens;
+    private final ToIntFunction<String> tokenEstimator;
+    private final EmbeddingCache cache;
+    private long invocationCount;
+    private long cacheHitCount;
+    private long textTokens;
+    private long paddedTokens;
+
+    /**
+     * @param handler - the handler that extracts the texts and constructs the vector docs
+     * @param endpoint - the inference endpoint
+     * @param maxBatchSize - the max texts per inference batch
+     * @param maxBatchTokens - the max padded tokens (batch size x longest text tokens) per inference batch
+     * @param maxSequenceTokens - the model's max sequence length, longer texts are truncated by the model
+     * @param tokenEstimator - estimates a text's token count
+     */
+    public VectorizationBatcher(SagemakerVectorsInterface handler, VectorizationEndpoint endpoint, int maxBatchSize, long maxBatchTokens, int maxSequenceTokens, ToIntFunction<String> tokenEstimator) {
+        this(handler, endpoint, maxBatchSize, maxBatchTokens, maxSequenceTokens, tokenEstimator, null);
+    }
+
+    /**
+     * @param handler - the handler that extracts the texts and constructs the vector docs
+     * @param endpoint - the inference endpoint
+     * @param maxBatchSize - the max texts per inference batch
+     * @param maxBatchTokens - the max padded tokens (batch size x longest text tokens) per inference batch
+     * @param maxSequenceTokens - the model's max sequence length, longer texts are truncated by the model
+     * @param tokenEstimator - estimates a text's token count
+     * @param cache - the embedding cache consulted before batching, null for no cache
+     */
+    public VectorizationBatcher(SagemakerVectorsInterface handler, VectorizationEndpoint endpoint, int maxBatchSize, long maxBatchTokens, int maxSequenceTokens, ToIntFunction<String> tokenEstimator, EmbeddingCache cache) {
+        ValidationUtils.validateAssertCondition(handler != null && endpoint != null && tokenEstimator != null, "handler, endpoint and tokenEstimator should not be null");
+        ValidationUtils.validateAssertCondition(maxBatchSize > 0 && maxSequenceTokens > 0 && maxBatchTokens >= maxSequenceTokens, "batch limits are invalid", maxBatchSize, maxBatchTokens, maxSequenceTokens);
+        this.handler = handler;
+        this.endpoint = endpoint;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxSequenceTokens = maxSequenceTokens;
+        this.tokenEstimator = tokenEstimator;
+        ValidationUtils.validateAssertCondition(cache == null || cache.getDimension() == endpoint.getDimension(), "cache dimension should match the endpoint dimension", endpoint.getModelId());
+        this.cache = cache;
+    }
+
+    /**
+     * Vectorizes the documents
+     * @param documents - the documents
+     * @return - the vector (or feature) docs that constructVectorDoc returned, in document order
+     */
+    public List<DocumentInterface> vectorize(List<DocumentInterface> documents) {
+        List<TextEntry> entries = new ArrayList<>();
+        List<Map<String, String>> extracted = new ArrayList<>(documents.size());
+        for (int docIndex = 0; docIndex < documents.size(); docIndex++) {
+            Map<String, String> elements = handler.extractDocumentElementsForVectorization(documents.get(docIndex));
+            extracted.add(elements);
+            if (elements == null) {
+                continue;
+            }
+            for (Map.Entry<String, String> element : elements.entrySet()) {
+                if (element.getValue() != null) {
+                    entries.add(new TextEntry(docIndex, element.getKey(), element.getValue(), Math.min(maxSequenceTokens, Math.max(1, tokenEstimator.applyAsInt(element.getValue())))));
+                }
+            }
+        }
+
+        vectorizeEntries(entries);
+
+        // fan the vectors back to the documents, in each document's extracted element order
+        FloatVectors.Builder[] builders = new FloatVectors.Builder[documents.size()];
+        for (TextEntry entry : entries) {
+            if (builders[entry.docIndex] == null) {
+                builders[entry.docIndex] = FloatVectors.builder();
+            }
+        }
+        int dimension = endpoint.getDimension();
+        int entryIndex = 0;
+        for (int docIndex = 0; docIndex < documents.size(); docIndex++) {
+            while (entryIndex < entries.size() && entries.get(entryIndex).docIndex == docIndex) {
+                TextEntry entry = entries.get(entryIndex++);
+                builders[docIndex].put(entry.name, entry.vectors, entry.vectorOffset, dimension);
+            }
+        }
+        List<DocumentInterface> vectorDocs = new ArrayList<>(documents.size());
+        for (int docIndex = 0; docIndex < documents.size(); docIndex++) {
+            FloatVectors vectors = builders[docIndex] == null ? FloatVectors.empty() : builders[docIndex].build();
+            vectorDocs.add(handler.constructVectorDoc(documents.get(docIndex), vectors));
+        }
+        return vectorDocs;
+    }
+
+    /**
+     * The number of endpoint invocations so far
+     * @return - the invocation count
+     */
+    public long getInvocationCount() {
+        return invocationCount;
+    }
+
+    /**
+     * The number of texts whose vectors were served from the cache so far
+     * @return - the cache hit count
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * The ratio of the texts' estimated tokens to the padded batch tokens of the invocations so far - 1 is perfect packing
+     * @return - the packing efficiency, 1 if nothing has been vectorized
+     */
+    public double getPackingEfficiency() {
+        return paddedTokens == 0 ? 1 : (double) textTokens / paddedTokens;
+    }
+
+    /**
+     * Sets each entry's vector - from the cache, or by packing the distinct uncached texts into inference batches
+     * @param entries - the entries, in document order
+     */
+    void vectorizeEntries(List<TextEntry> entries) {
+        Map<String, TextEntry> distinct = new HashMap<>();
+        List<TextEntry> repeats = new ArrayList<>();
+        List<TextEntry> misses = new ArrayList<>();
+        for (TextEntry entry : entries) {
+            if (distinct.putIfAbsent(entry.text, entry) != null) {
+                repeats.add(entry);
+                continue;
+            }
+            if (cache != null) {
+                entry.cacheKey = EmbeddingCache.key(endpoint.getModelId(), entry.text);
+                float[] vector = cache.get(entry.cacheKey);
+                if (vector != null) {
+                    entry.vectors = vector;
+                    entry.vectorOffset = 0;
+                    cacheHitCount++;
+                    continue;
+                }
+            }
+            misses.add(entry);
+        }
+
+        invokeEndpoint(misses);
+
+        for (TextEntry repeat : repeats) {
+            TextEntry first = distinct.get(repeat.text);
+            repeat.vectors = first.vectors;
+            repeat.vectorOffset = first.vectorOffset;
+        }
+    }
+
+    /**
+     * Packs the entries into inference batches, sets each entry's vector and caches the vectors
+     * @param entries - the entries with distinct texts
+     */
+    private void invokeEndpoint(List<TextEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        TextEntry[] sorted = entries.toArray(new TextEntry[0]);
+        Arrays.sort(sorted, new Comparator<TextEntry>() {
+            @Override
+            public int compare(TextEntry e1, TextEntry e2) {
+                return Integer.compare(e2.tokens, e1.tokens);
+            }
+        });
+        int dimension = endpoint.getDimension();
+        int start = 0;
+        while (start < sorted.length) {
+            // sorted by descending tokens, so the first text of the batch is its longest and sets the padded length
+            int longest = sorted[start].tokens;
+            int end = start + 1;
+            while (end < sorted.length && end - start < maxBatchSize && (long) (end - start + 1) * longest <= maxBatchTokens) {
+                end++;
+            }
+            List<String> texts = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                texts.add(sorted[i].text);
+                textTokens += sorted[i].tokens;
+            }
+            paddedTokens += (long) (end - start) * longest;
+            float[] vectors;
+            try {
+                vectors = endpoint.vectorize(texts);
+            } catch (Exception ex) {
+                throw new RuntimeException("vectorization endpoint invocation failed - modelId: " + endpoint.getModelId() + ", batchSize: " + texts.size(), ex);
+            }
+            invocationCount++;
+            ValidationUtils.validateAssertCondition(vectors != null && vectors.length == texts.size() * dimension, "endpoint returned an unexpected number of floats", endpoint.getModelId(), texts.size(), dimension);
+            for (int i = start; i < end; i++) {
+                sorted[i].vectors = vectors;
+                sorted[i].vectorOffset = (i - start) * dimension;
+                if (cache != null) {
+                    cache.put(sorted[i].cacheKey, vectors, sorted[i].vectorOffset);
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * An extracted text and, once vectorized, the batch response that has its vector
+     */
+    static class TextEntry {
+        final int docIndex;
+        final String name;
+        final String text;
+        final int tokens;
+        EmbeddingCache.Key cacheKey;
+        float[] vectors;
+        int vectorOffset;
+
+        TextEntry(int docIndex, String name, String text, int tokens) {
+            this.docIndex = docIndex;
+            this.name = name;
+            this.text = text;
+            this.tokens = tokens;
+        }
+    }
+}
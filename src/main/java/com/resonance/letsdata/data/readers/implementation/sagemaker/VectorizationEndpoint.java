@@ -0,0 +1,28 @@
+package com.resonance.letsdata.data.readers.implementation.sagemaker;
+
+import java.util.List;
+
+/**
+ * An embedding model inference endpoint (a Sagemaker endpoint, a local model, a stub) that the VectorizationBatcher sends its packed batches to.
+ */
+public interface VectorizationEndpoint {
+    /**
+     * The endpoint's model id - identifies the model (and its version) for cached vectors
+     * @return - the model id
+     */
+    String getModelId();
+
+    /**
+     * The dimension of the model's vectors
+     * @return - the dimension
+     */
+    int getDimension();
+
+    /**
+     * Vectorizes a batch of texts
+     * @param texts - the batch's texts
+     * @return - the vectors back to back in a single array of texts.size() x getDimension() floats - the vector of texts[i] is at [i x dimension, (i + 1) x dimension)
+     * @throws Exception on invocation failures
+     */
+    float[] vectorize(List<String> texts) throws Exception;
+}
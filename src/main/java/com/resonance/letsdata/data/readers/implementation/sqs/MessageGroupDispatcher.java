@@ -0,0 +1,221 @@
+package com.resonance.letsdata.data.readers.implementation.sqs;
+
+import com.resonance.letsdata.data.util.KeyedSerialExecutor;
+import com.resonance.letsdata.data.util.ValidationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Dispatches FIFO queue message handler calls (QueueMessageReader) so that messages in different message groups are processed concurrently while the messages within a
+ * message group are processed strictly in receive order.
+ *
+ *      * Each message group is a serial lane (KeyedSerialExecutor) - a group's next message starts only after its previous message completed
+ *      * At most workerCount handler calls run at a time across all the groups
+ *      * Each group has at most maxQueuedMessagesPerGroup queued or running messages - submit blocks when a group is full, which bounds the memory held for a hot group
+ *      * Messages without a message group id (standard queues) are not ordered, each is its own lane - message ids and message group ids have separate lane key spaces, so a
+ *        standard queue message whose id equals a group id is not serialized behind that group
+ *
+ * When a handler call fails, the group's queued messages are not processed - their futures complete exceptionally so that the reader does not delete them and they are redelivered
+ * after the failed message, preserving the group's order the same way SQS FIFO does. A group's failure is cleared once its queued messages drain.
+ *
+ * Worker threads are virtual threads when the runtime supports them (Java 21+) and a fixed platform thread pool of workerCount threads otherwise. With virtual threads, the worker
+ * count only limits the concurrent handler calls - there is no pool to size.
+ */
+public class MessageGroupDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(MessageGroupDispatcher.class);
+
+    public static final int DEFAULT_MAX_QUEUED_MESSAGES_PER_GROUP = 100;
+
+    private static final String GROUP_LANE_PREFIX = "group\u0000";
+    private static final String MESSAGE_LANE_PREFIX = "message\u0000";
+
+    private final ExecutorService executorService;
+    private final boolean virtualThreads;
+    private final KeyedSerialExecutor<String> lanes;
+    private final Semaphore workers;
+    private final int workerCount;
+    private final int maxQueuedMessagesPerGroup;
+    private final ConcurrentHashMap<String, Group> groups = new ConcurrentHashMap<>();
+    // notified when the last active group is removed
+    private final Object drained = new Object();
+
+    public MessageGroupDispatcher(int workerCount) {
+        this(workerCount, DEFAULT_MAX_QUEUED_MESSAGES_PER_GROUP, true);
+    }
+
+    public MessageGroupDispatcher(int workerCount, int maxQueuedMessagesPerGroup, boolean useVirtualThreads) {
+        ValidationUtils.validateAssertCondition(workerCount > 0, "workerCount should be positive", workerCount);
+        ValidationUtils.validateAssertCondition(maxQueuedMessagesPerGroup > 0, "maxQueuedMessagesPerGroup should be positive", maxQueuedMessagesPerGroup);
+        ExecutorService virtualThreadExecutor = useVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtualThreadExecutor != null;
+        this.executorService = virtualThreadExecutor != null ? virtualThreadExecutor : Executors.newFixedThreadPool(workerCount);
+        this.lanes = new KeyedSerialExecutor<>(executorService);
+        this.workers = new Semaphore(workerCount);
+        this.workerCount = workerCount;
+        this.maxQueuedMessagesPerGroup = maxQueuedMessagesPerGroup;
+    }
+
+    /**
+     * Submits the handler call for a received message. Messages must be submitted in receive order - the submission order is the processing order within a message group.
+     * Blocks while the message's group has maxQueuedMessagesPerGroup queued or running messages.
+     *
+     * @param messageId - the message id
+     * @param messageGroupId - the message group id, null for standard queue messages
+     * @param handlerCall - the handler call
+     * @param <R> - the handler call's result type
+     * @return - a future that completes with the handler call's result, or exceptionally if the call failed or an earlier message in the group failed
+     * @throws InterruptedException if interrupted while waiting for room in the group's queue
+     */
+    public <R> CompletableFuture<R> submit(String messageId, String messageGroupId, Supplier<R> handlerCall) throws InterruptedException {
+        ValidationUtils.validateAssertCondition(messageId != null && handlerCall != null, "messageId and handlerCall should not be null");
+        String laneKey = messageGroupId != null ? GROUP_LANE_PREFIX + messageGroupId : MESSAGE_LANE_PREFIX + messageId;
+        Group group = acquire(laneKey);
+
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            lanes.execute(laneKey, () -> {
+                try {
+                    Throwable groupFailure = group.getFailure();
+                    if (groupFailure != null) {
+                        future.completeExceptionally(new RuntimeException("message group is blocked by an earlier failed message - messageId: " + messageId + ", messageGroupId: " + messageGroupId, groupFailure));
+                        return;
+                    }
+                    R result;
+                    workers.acquireUninterruptibly();
+                    try {
+                        result = handlerCall.get();
+                    } finally {
+                        workers.release();
+                    }
+                    future.complete(result);
+                } catch (Throwable ex) {
+                    logger.warn("message handler call failed, blocking the rest of the message group - messageId: {}, messageGroupId: {}", messageId, messageGroupId, ex);
+                    group.setFailure(ex);
+                    future.completeExceptionally(ex);
+                } finally {
+                    release(laneKey, group);
+                }
+            });
+        } catch (RuntimeException ex) {
+            release(laneKey, group);
+            throw ex;
+        }
+        return future;
+    }
+
+    /**
+     * The number of message groups that have queued or running messages
+     * @return - the active group count
+     */
+    public int getActiveGroupCount() {
+        return groups.size();
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Whether the dispatcher's worker threads are virtual threads
+     * @return - true if virtual threads are used
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting messages and waits for the queued messages to complete
+     * @param timeout - the max time to wait
+     * @param unit - the timeout's unit
+     * @return - true if all the queued messages completed, false if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // lanes re-schedule themselves on the executor, so wait for them to drain before shutting it down
+        synchronized (drained) {
+            while (!groups.isEmpty()) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    executorService.shutdown();
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(drained, remainingNanos);
+            }
+        }
+        executorService.shutdown();
+        return executorService.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private Group acquire(String laneKey) throws InterruptedException {
+        while (true) {
+            Group group = groups.computeIfAbsent(laneKey, k -> new Group());
+            synchronized (group) {
+                if (group.removed) {
+                    // the group drained and was removed after the lookup, retry with a new group
+                    continue;
+                }
+                while (group.queued >= maxQueuedMessagesPerGroup) {
+                    group.wait();
+                }
+                group.queued++;
+                return group;
+            }
+        }
+    }
+
+    private void release(String laneKey, Group group) {
+        boolean removed = false;
+        synchronized (group) {
+            group.queued--;
+            if (group.queued == 0) {
+                group.removed = true;
+                removed = groups.remove(laneKey, group);
+            }
+            group.notifyAll();
+        }
+        if (removed) {
+            synchronized (drained) {
+                if (groups.isEmpty()) {
+                    drained.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            logger.info("virtual threads are not supported by the runtime, using a platform thread pool");
+            return null;
+        }
+    }
+
+    private static class Group {
+        // guarded by this
+        private int queued;
+        private boolean removed;
+        private Throwable failure;
+
+        private synchronized Throwable getFailure() {
+            return failure;
+        }
+
+        private synchronized void setFailure(Throwable failure) {
+            if (this.failure == null) {
+                this.failure = failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.resonance.letsdata.data.readers.implementation.statemachine;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import com.resonance.letsdata.data.readers.interfaces.parsers.SingleFileStateMachineParser;
+import com.resonance.letsdata.data.readers.model.ParseDocumentResult;
+import com.resonance.letsdata.data.readers.model.RecordParseHint;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+/**
+ * An adapter that implements the SingleFileStateMachineParser interface on top of a compiled RecordStateMachine.
+ *
+ * The state machine methods (getNextExpectedRecordType, getNextRecordStartPattern, getNextRecordEndPattern) are answered from the compiled transition table - implementers only
+ * declare the state machine and implement parseRecord, which receives the int index of the record's state instead of the record type string. The WARC style parser from the
+ * SingleFileStateMachineParser docs would be implemented as:
+ *
+ *      public class DataFileParser extends CompiledSingleFileStateMachineParser {
+ *          private static final RecordStateMachine STATE_MACHINE = RecordStateMachine.builder()
+ *                  .state("METADATA", "\r\nRecord-Type: metadata", "\r\nRecord-Type: data")
+ *                  .state("DATA", "\r\nRecord-Type: data", "\r\nRecord-Type: metadata")
+ *                  .initialState("METADATA")
+ *                  .transition("METADATA", "DATA")
+ *                  .transition("DATA", "METADATA")
+ *                  .build();
+ *          private static final int METADATA = STATE_MACHINE.stateIndex("METADATA");
+ *          private static final int DATA = STATE_MACHINE.stateIndex("DATA");
+ *
+ *          public DataFileParser() {
+ *              super("DATAFILE", STATE_MACHINE);
+ *          }
+ *
+ *          @Override
+ *          protected ParseDocumentResult parseRecord(String s3FileType, String s3Filename, long offsetBytes, int recordState, DocumentInterface lastProcessedDoc, byte[] byteArr, int startIndex, int endIndex) {
+ *              DocumentInterface record = recordState == METADATA ? DataRecordFactory.constructMetadataRecord(byteArr, startIndex, endIndex) : DataRecordFactory.constructDataRecord(byteArr, startIndex, endIndex);
+ *              return new ParseDocumentResult(nextRecordType(recordState), record, ParseDocumentResultStatus.SUCCESS);
+ *          }
+ *      }
+ */
+public abstract class CompiledSingleFileStateMachineParser implements SingleFileStateMachineParser {
+    private final String s3FileType;
+    private final RecordStateMachine stateMachine;
+
+    /**
+     * Constructs the parser for the filetype with the compiled state machine
+     * @param s3FileType - the filetype - example DATAFILE
+     * @param stateMachine - the compiled state machine for the records in the file
+     */
+    protected CompiledSingleFileStateMachineParser(String s3FileType, RecordStateMachine stateMachine) {
+        ValidationUtils.validateAssertCondition(s3FileType != null, "s3FileType should not be null");
+        ValidationUtils.validateAssertCondition(stateMachine != null, "stateMachine should not be null");
+        this.s3FileType = s3FileType;
+        this.stateMachine = stateMachine;
+    }
+
+    /**
+     * Parses the record for the state - the state is already resolved from the lastProcessedRecordType using the transition table
+     * @param s3FileType - the filetype
+     * @param s3Filename - the filename
+     * @param offsetBytes - the offset bytes into the file
+     * @param recordState - the state index of the record being parsed
+     * @param lastProcessedDoc - the last processed doc
+     * @param byteArr - the byteArr that has the contents of the record
+     * @param startIndex - the start index of the record in the byteArr
+     * @param endIndex - the end index of the record in the byteArr
+     * @return - ParseDocumentResult which has the extracted record and the status (error, success or skip)
+     */
+    protected abstract ParseDocumentResult parseRecord(String s3FileType, String s3Filename, long offsetBytes, int recordState, DocumentInterface lastProcessedDoc, byte[] byteArr, int startIndex, int endIndex);
+
+    @Override
+    public String getS3FileType() {
+        return s3FileType;
+    }
+
+    /**
+     * No file name resolution is done by default, override to add custom logic
+     */
+    @Override
+    public String getResolvedS3FileName(String s3FileType, String fileName) {
+        ValidationUtils.validateAssertCondition(fileName != null, "filename should not be null");
+        return fileName;
+    }
+
+    @Override
+    public RecordParseHint getNextRecordStartPattern(String s3FileType, String nextExpectedRecordType, DocumentInterface lastProcessedDoc) {
+        return stateMachine.startHint(resolveState(nextExpectedRecordType));
+    }
+
+    @Override
+    public RecordParseHint getNextRecordEndPattern(String s3FileType, String nextExpectedRecordType, DocumentInterface lastProcessedDoc) {
+        return stateMachine.endHint(resolveState(nextExpectedRecordType));
+    }
+
+    @Override
+    public String getNextExpectedRecordType(String s3FileType, String lastProcessedRecordType) {
+        return stateMachine.stateName(stateMachine.nextState(lastProcessedState(lastProcessedRecordType)));
+    }
+
+    @Override
+    public ParseDocumentResult parseDocument(String s3FileType, String s3Filename, long offsetBytes, String lastProcessedRecordType, DocumentInterface lastProcessedDoc, byte[] byteArr, int startIndex, int endIndex) {
+        int recordState = stateMachine.nextState(lastProcessedState(lastProcessedRecordType));
+        return parseRecord(s3FileType, s3Filename, offsetBytes, recordState, lastProcessedDoc, byteArr, startIndex, endIndex);
+    }
+
+    /**
+     * The record type that is expected after the record in this state - the value to set as the ParseDocumentResult's nextRecordType
+     * @param recordState - the state index of the record that was parsed
+     * @return - the next expected record type
+     */
+    protected String nextRecordType(int recordState) {
+        return stateMachine.stateName(stateMachine.nextState(recordState));
+    }
+
+    protected RecordStateMachine getStateMachine() {
+        return stateMachine;
+    }
+
+    private int resolveState(String recordType) {
+        int state = stateMachine.stateIndex(recordType);
+        ValidationUtils.validateAssertCondition(state != RecordStateMachine.NO_STATE, "unexpected record type for the state machine", s3FileType, recordType);
+        return state;
+    }
+
+    private int lastProcessedState(String lastProcessedRecordType) {
+        return lastProcessedRecordType == null ? RecordStateMachine.NO_STATE : resolveState(lastProcessedRecordType);
+    }
+}
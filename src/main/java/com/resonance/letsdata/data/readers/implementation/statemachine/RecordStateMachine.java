@@ -0,0 +1,276 @@
+package com.resonance.letsdata.data.readers.implementation.statemachine;
+
+import com.resonance.letsdata.data.readers.model.RecordHintType;
+import com.resonance.letsdata.data.readers.model.RecordParseHint;
+import com.resonance.letsdata.data.util.Matcher;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled, table driven finite state machine for the records in a file.
+ *
+ * The SingleFileStateMachineParser interface encodes the file's state machine in code - each record calls getNextExpectedRecordType, getNextRecordStartPattern and getNextRecordEndPattern,
+ * which usually switch on the record type strings and allocate a new RecordParseHint for every record. This class is the declarative alternative: the states, transitions and start / end hints
+ * are declared once with the Builder and compiled into int indexed arrays. Each state is assigned an index in declaration order and the dispatch is then an array lookup:
+ *
+ *      int next = stateMachine.nextState(current);
+ *      RecordParseHint start = stateMachine.startHint(next);
+ *      RecordParseHint end = stateMachine.endHint(next);
+ *
+ * The RecordParseHint objects are created once at compile time and shared across records, so there is no per record allocation.
+ *
+ * For example, the {metadata, data} state machine from the SingleFileStateMachineParser docs would be declared as:
+ *
+ *      RecordStateMachine stateMachine = RecordStateMachine.builder()
+ *              .state("METADATA", "\r\nRecord-Type: metadata", "\r\nRecord-Type: data")
+ *              .state("DATA", "\r\nRecord-Type: data", "\r\nRecord-Type: metadata")
+ *              .initialState("METADATA")
+ *              .transition("METADATA", "DATA")
+ *              .transition("DATA", "METADATA")
+ *              .build();
+ *
+ *      +----------+                   +------+
+ *      | METADATA | -------->-------- | DATA | -->----+
+ *      +----------+                   +------+        |
+ *      ^                                              V
+ *      |                                              |
+ *      +--------<----------------------<--------------+
+ *
+ * Instances are immutable and safe to share across threads.
+ */
+public class RecordStateMachine {
+    /**
+     * The state index returned for unknown record types
+     */
+    public static final int NO_STATE = -1;
+
+    private final String[] stateNames;
+    private final RecordParseHint[] startHints;
+    private final RecordParseHint[] endHints;
+    private final int[] transitions;
+    private final int initialState;
+    private final Map<String, Integer> stateIndexMap;
+
+    private RecordStateMachine(String[] stateNames, RecordParseHint[] startHints, RecordParseHint[] endHints, int[] transitions, int initialState) {
+        this.stateNames = stateNames;
+        this.startHints = startHints;
+        this.endHints = endHints;
+        this.transitions = transitions;
+        this.initialState = initialState;
+        Map<String, Integer> indexMap = new HashMap<>();
+        for (int i = 0; i < stateNames.length; i++) {
+            indexMap.put(stateNames[i], i);
+        }
+        this.stateIndexMap = Collections.unmodifiableMap(indexMap);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The number of states in the state machine
+     * @return the state count
+     */
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    /**
+     * The index of the initial state - this is the state for the first record in the file (when the lastProcessedRecordType is null)
+     * @return the initial state index
+     */
+    public int getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * The next state for the current state. Passing NO_STATE returns the initial state, which matches the lastProcessedRecordType == null convention in the parser interfaces.
+     * @param state - the current state index
+     * @return - the next state index
+     */
+    public int nextState(int state) {
+        if (state == NO_STATE) {
+            return initialState;
+        }
+        return transitions[state];
+    }
+
+    /**
+     * The start hint for the state - the same RecordParseHint instance is returned for each call
+     * @param state - the state index
+     * @return - the record start hint
+     */
+    public RecordParseHint startHint(int state) {
+        return startHints[state];
+    }
+
+    /**
+     * The end hint for the state - the same RecordParseHint instance is returned for each call
+     * @param state - the state index
+     * @return - the record end hint
+     */
+    public RecordParseHint endHint(int state) {
+        return endHints[state];
+    }
+
+    /**
+     * The record type name for the state
+     * @param state - the state index
+     * @return - the record type name
+     */
+    public String stateName(int state) {
+        return stateNames[state];
+    }
+
+    /**
+     * Resolves the record type name to its state index. The record type strings handed back by the runtime are usually the same instances returned by stateName,
+     * so an identity scan over the (small) state array is tried first before falling back to the hash lookup.
+     * @param recordType - the record type name, null resolves to NO_STATE
+     * @return - the state index or NO_STATE if the record type is null or unknown
+     */
+    public int stateIndex(String recordType) {
+        if (recordType == null) {
+            return NO_STATE;
+        }
+        for (int i = 0; i < stateNames.length; i++) {
+            if (stateNames[i] == recordType) {
+                return i;
+            }
+        }
+        Integer index = stateIndexMap.get(recordType);
+        return index == null ? NO_STATE : index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RecordStateMachine{");
+        sb.append("initialState='").append(stateNames[initialState]).append('\'');
+        sb.append(", transitions={");
+        for (int i = 0; i < stateNames.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(stateNames[i]).append("->").append(stateNames[transitions[i]]);
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /**
+     * Builder to declare the states, transitions and hints of the state machine. The build method validates that the state machine is complete
+     * (an initial state, and a single transition out of each state) and compiles it into the transition table.
+     */
+    public static class Builder {
+        private final LinkedHashMap<String, RecordParseHint[]> states = new LinkedHashMap<>();
+        private final Map<String, String> transitions = new HashMap<>();
+        private String initialState;
+
+        private Builder() {
+        }
+
+        /**
+         * Declares a state with its record start and end pattern hints
+         * @param recordType - the record type name for the state
+         * @param startPattern - the record start pattern
+         * @param endPattern - the record end pattern
+         * @return - the builder
+         */
+        public Builder state(String recordType, String startPattern, String endPattern) {
+            return state(recordType, new RecordParseHint(RecordHintType.PATTERN, startPattern, -1), new RecordParseHint(RecordHintType.PATTERN, endPattern, -1));
+        }
+
+        /**
+         * Declares a state with its record start and end hints
+         * @param recordType - the record type name for the state
+         * @param startHint - the record start hint
+         * @param endHint - the record end hint
+         * @return - the builder
+         */
+        public Builder state(String recordType, RecordParseHint startHint, RecordParseHint endHint) {
+            ValidationUtils.validateAssertCondition(recordType != null, "state recordType should not be null");
+            ValidationUtils.validateAssertCondition(startHint != null && endHint != null, "state start and end hints should not be null", recordType);
+            ValidationUtils.validateAssertCondition(!states.containsKey(recordType), "state is already declared", recordType);
+            states.put(recordType, new RecordParseHint[]{startHint, endHint});
+            return this;
+        }
+
+        /**
+         * Declares the state for the first record in the file
+         * @param recordType - the record type name of the initial state
+         * @return - the builder
+         */
+        public Builder initialState(String recordType) {
+            this.initialState = recordType;
+            return this;
+        }
+
+        /**
+         * Declares the transition from one state to the next
+         * @param fromRecordType - the last processed record type
+         * @param toRecordType - the next expected record type
+         * @return - the builder
+         */
+        public Builder transition(String fromRecordType, String toRecordType) {
+            ValidationUtils.validateAssertCondition(fromRecordType != null && toRecordType != null, "transition record types should not be null");
+            ValidationUtils.validateAssertCondition(!transitions.containsKey(fromRecordType), "transition is already declared for the state", fromRecordType);
+            transitions.put(fromRecordType, toRecordType);
+            return this;
+        }
+
+        /**
+         * Validates and compiles the declared states and transitions into a RecordStateMachine
+         * @return - the compiled state machine
+         */
+        public RecordStateMachine build() {
+            ValidationUtils.validateAssertCondition(!states.isEmpty(), "state machine should have at least one state");
+            ValidationUtils.validateAssertCondition(initialState != null && states.containsKey(initialState), "initial state should be a declared state", initialState);
+
+            List<String> names = new ArrayList<>(states.keySet());
+            int stateCount = names.size();
+            String[] stateNames = new String[stateCount];
+            RecordParseHint[] startHints = new RecordParseHint[stateCount];
+            RecordParseHint[] endHints = new RecordParseHint[stateCount];
+            int[] transitionTable = new int[stateCount];
+            Arrays.fill(transitionTable, NO_STATE);
+
+            for (int i = 0; i < stateCount; i++) {
+                String name = names.get(i);
+                RecordParseHint[] hints = states.get(name);
+                stateNames[i] = name;
+                startHints[i] = hints[0];
+                endHints[i] = hints[1];
+                precompile(hints[0]);
+                precompile(hints[1]);
+            }
+
+            for (Map.Entry<String, String> entry : transitions.entrySet()) {
+                int from = names.indexOf(entry.getKey());
+                int to = names.indexOf(entry.getValue());
+                ValidationUtils.validateAssertCondition(from != NO_STATE, "transition from an undeclared state", entry.getKey());
+                ValidationUtils.validateAssertCondition(to != NO_STATE, "transition to an undeclared state", entry.getValue());
+                transitionTable[from] = to;
+            }
+
+            for (int i = 0; i < stateCount; i++) {
+                ValidationUtils.validateAssertCondition(transitionTable[i] != NO_STATE, "state has no outgoing transition", stateNames[i]);
+            }
+
+            return new RecordStateMachine(stateNames, startHints, endHints, transitionTable, names.indexOf(initialState));
+        }
+
+        // warm the Matcher's Boyer-Moore table cache so that the first record does not pay the pattern compilation cost
+        private static void precompile(RecordParseHint hint) {
+            if (hint.getRecordHintType() == RecordHintType.PATTERN) {
+                Matcher.getMatchPatternForString(hint.getPattern());
+            }
+        }
+    }
+}
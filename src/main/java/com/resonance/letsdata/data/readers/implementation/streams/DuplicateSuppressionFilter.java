@@ -0,0 +1,384 @@
+package com.resonance.letsdata.data.readers.implementation.streams;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+/**
+ * A memory bounded duplicate suppression filter for at least once stream inputs - readers consult it with each record's unique id (the Kinesis shardId + sequenceNumber (+ sub
+ * sequence number), the SQS messageDeduplicationId / messageId, the DynamoDB Streams eventId) before calling the handler, and skip the replayed records. The lookup (check) and
+ * the recording (record) are separate so that a record is only remembered once its handler has succeeded - a failed record is redelivered and checks as NEW again.
+ *
+ * The filter has two tiers:
+ *
+ *      * an exact set of the most recent recentWindowSize ids - a hit is a certain DUPLICATE
+ *      * an off heap cuckoo filter (16 bit fingerprints, 4 slot buckets in a direct ByteBuffer) of the older ids - a hit is a PROBABLE_DUPLICATE, with a false positive
+ *        probability of at most getMaxFalsePositiveRate (about 2.4e-4)
+ *
+ * The cuckoo filter has two generations of expectedIds capacity each - when the current generation is 90% full the older generation is cleared and becomes the current one,
+ * so the filter remembers between expectedIds and 2 x expectedIds of the latest ids and memory stays bounded at getOffHeapBytes: 2 generations x bucketCount x 4 slots x 2 bytes,
+ * where bucketCount is expectedIds / 3.6 rounded up to a power of 2. That is between ~2.2 and ~4.4 bytes per remembered id depending on the rounding - 64 MiB (~3.4 bytes per id)
+ * for 10M expectedIds.
+ *
+ *      DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(10_000_000, 100_000);
+ *      String id = shardId + "/" + sequenceNumber;
+ *      switch (filter.check(id)) {
+ *          case NEW:                   // call the handler, then filter.record(id) once it succeeds
+ *          case DUPLICATE:             // skip
+ *          case PROBABLE_DUPLICATE:    // skip, or process if a false positive skip is not acceptable
+ *      }
+ *
+ * Recorded ids are held exactly as pending until markCheckpointed is called for a checkpoint that covers them, and only then move to the recent window and the cuckoo filter.
+ * The state written by writeTo (persist it with the checkpoint, restore it with readFrom) holds only these checkpointed ids - a record that was handled after the checkpoint is
+ * replayed after a task restart and is not suppressed, since its output may not have been committed. Checkpoint regularly to keep the pending set small. The filter is thread safe.
+ */
+public class DuplicateSuppressionFilter {
+    public enum Result {
+        /**
+         * The id has not been seen - process the record and record the id once the handler succeeds
+         */
+        NEW,
+        /**
+         * The id is in the exact pending ids or recent window
+         */
+        DUPLICATE,
+        /**
+         * The id's fingerprint is in the cuckoo filter - a duplicate with the filter's false positive probability of being a new id
+         */
+        PROBABLE_DUPLICATE
+    }
+
+    private static final int PERSISTENCE_MAGIC = 0x44535046;
+    private static final int PERSISTENCE_VERSION = 1;
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int FINGERPRINT_BITS = 16;
+    private static final int MAX_KICKS = 500;
+    private static final double ROTATION_LOAD_FACTOR = 0.9;
+
+    private final long expectedIds;
+    private final int recentWindowSize;
+    private final int bucketCount;
+    private final Random random = new Random(0x5EED);
+    // guarded by this
+    private Generation current;
+    private Generation previous;
+    private final LinkedHashSet<String> recentIds;
+    private final LinkedHashSet<String> pendingIds;
+    private long duplicateCount;
+    private long probableDuplicateCount;
+    private long rotationCount;
+
+    /**
+     * @param expectedIds - the number of ids each cuckoo filter generation holds
+     * @param recentWindowSize - the number of the most recent ids kept exactly
+     */
+    public DuplicateSuppressionFilter(long expectedIds, int recentWindowSize) {
+        ValidationUtils.validateAssertCondition(expectedIds > 0 && expectedIds <= (1L << 28), "expectedIds should be in [1, 2^28]", expectedIds);
+        ValidationUtils.validateAssertCondition(recentWindowSize >= 0, "recentWindowSize should not be negative", recentWindowSize);
+        this.expectedIds = expectedIds;
+        this.recentWindowSize = recentWindowSize;
+        // size the buckets so that expectedIds is at most ~90% of the slots, rounded up to a power of 2 for the xor alternate bucket
+        long minBuckets = (long) Math.ceil(expectedIds / (SLOTS_PER_BUCKET * ROTATION_LOAD_FACTOR));
+        this.bucketCount = (int) Math.max(2, Long.highestOneBit(minBuckets - 1) << 1);
+        this.current = new Generation(bucketCount);
+        this.previous = new Generation(bucketCount);
+        this.recentIds = new LinkedHashSet<>();
+        this.pendingIds = new LinkedHashSet<>();
+    }
+
+    /**
+     * Checks whether the id has been seen - the check does not record the id, call record once the record's handler succeeds
+     * @param id - the record's unique id
+     * @return - NEW, DUPLICATE or PROBABLE_DUPLICATE
+     */
+    public synchronized Result check(String id) {
+        ValidationUtils.validateAssertCondition(id != null, "id should not be null");
+        if (pendingIds.contains(id) || recentIds.contains(id)) {
+            duplicateCount++;
+            return Result.DUPLICATE;
+        }
+        if (cuckooContains(hash(id))) {
+            probableDuplicateCount++;
+            return Result.PROBABLE_DUPLICATE;
+        }
+        return Result.NEW;
+    }
+
+    /**
+     * Records the id of a successfully handled record - the id is pending until the next markCheckpointed
+     * @param id - the record's unique id
+     */
+    public synchronized void record(String id) {
+        ValidationUtils.validateAssertCondition(id != null, "id should not be null");
+        pendingIds.add(id);
+    }
+
+    /**
+     * Moves the pending ids to the recent window and the cuckoo filter - call it once the checkpoint that covers all the recorded ids is taken, before writeTo
+     */
+    public synchronized void markCheckpointed() {
+        for (String id : pendingIds) {
+            if (recentIds.contains(id)) {
+                continue;
+            }
+            long hash = hash(id);
+            if (!cuckooContains(hash)) {
+                int fingerprint = fingerprint(hash);
+                int bucket1 = (int) hash & (bucketCount - 1);
+                if (current.count >= expectedIds || !insert(current, bucket1, fingerprint)) {
+                    rotate();
+                    insert(current, bucket1, fingerprint);
+                }
+            }
+            if (recentWindowSize > 0) {
+                if (recentIds.size() == recentWindowSize) {
+                    Iterator<String> eldest = recentIds.iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+                recentIds.add(id);
+            }
+        }
+        pendingIds.clear();
+    }
+
+    /**
+     * The number of recorded ids that are not yet checkpointed
+     * @return - the pending id count
+     */
+    public synchronized int getPendingCount() {
+        return pendingIds.size();
+    }
+
+    /**
+     * The false positive probability of a lookup with both generations full - 2 generations x 2 buckets x 4 slots / 2^16
+     * @return - the false positive budget
+     */
+    public double getMaxFalsePositiveRate() {
+        return 2.0 * 2 * SLOTS_PER_BUCKET / ((1 << FINGERPRINT_BITS) - 1);
+    }
+
+    /**
+     * The false positive probability of a lookup at the generations' current loads
+     * @return - the estimated false positive rate
+     */
+    public synchronized double getEstimatedFalsePositiveRate() {
+        double slots = (double) bucketCount * SLOTS_PER_BUCKET;
+        double load = (current.count + previous.count) / slots;
+        return load * 2 * SLOTS_PER_BUCKET / ((1 << FINGERPRINT_BITS) - 1);
+    }
+
+    /**
+     * The off heap memory held by the cuckoo filter generations
+     * @return - the bytes
+     */
+    public long getOffHeapBytes() {
+        return 2L * bucketCount * SLOTS_PER_BUCKET * 2;
+    }
+
+    public synchronized long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public synchronized long getProbableDuplicateCount() {
+        return probableDuplicateCount;
+    }
+
+    /**
+     * The number of times the older generation has been cleared
+     * @return - the rotation count
+     */
+    public synchronized long getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * Writes the filter's checkpointed state - the pending ids are not written. Persist it with the checkpoint
+     * @param outputStream - the stream, not closed
+     * @throws IOException on write errors
+     */
+    public synchronized void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(PERSISTENCE_MAGIC);
+        out.writeInt(PERSISTENCE_VERSION);
+        out.writeLong(expectedIds);
+        out.writeInt(recentWindowSize);
+        out.writeLong(rotationCount);
+        current.writeTo(out);
+        previous.writeTo(out);
+        out.writeInt(recentIds.size());
+        for (String id : recentIds) {
+            out.writeUTF(id);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a filter's state written by writeTo
+     * @param inputStream - the stream, not closed
+     * @return - the filter
+     * @throws IOException on read errors or if the stream does not have a filter's state
+     */
+    public static DuplicateSuppressionFilter readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != PERSISTENCE_MAGIC) {
+            throw new IOException("stream does not have a duplicate suppression filter state");
+        }
+        int version = in.readInt();
+        if (version != PERSISTENCE_VERSION) {
+            throw new IOException("unsupported duplicate suppression filter state version - version: " + version);
+        }
+        DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(in.readLong(), in.readInt());
+        filter.rotationCount = in.readLong();
+        filter.current.readFrom(in);
+        filter.previous.readFrom(in);
+        int recentIdCount = in.readInt();
+        for (int i = 0; i < recentIdCount; i++) {
+            filter.recentIds.add(in.readUTF());
+        }
+        return filter;
+    }
+
+    private boolean cuckooContains(long hash) {
+        int fingerprint = fingerprint(hash);
+        int bucket1 = (int) hash & (bucketCount - 1);
+        int bucket2 = alternateBucket(bucket1, fingerprint);
+        return current.contains(bucket1, bucket2, fingerprint) || previous.contains(bucket1, bucket2, fingerprint);
+    }
+
+    private void rotate() {
+        Generation cleared = previous;
+        cleared.clear();
+        previous = current;
+        current = cleared;
+        rotationCount++;
+    }
+
+    private boolean insert(Generation generation, int bucket1, int fingerprint) {
+        int bucket2 = alternateBucket(bucket1, fingerprint);
+        if (generation.insertIntoBucket(bucket1, fingerprint) || generation.insertIntoBucket(bucket2, fingerprint)) {
+            generation.count++;
+            return true;
+        }
+        int bucket = random.nextBoolean() ? bucket1 : bucket2;
+        int kicked = fingerprint;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            kicked = generation.swap(bucket, random.nextInt(SLOTS_PER_BUCKET), kicked);
+            bucket = alternateBucket(bucket, kicked);
+            if (generation.insertIntoBucket(bucket, kicked)) {
+                generation.count++;
+                return true;
+            }
+        }
+        // the generation is effectively full, the last kicked fingerprint is dropped (an older id may no longer be suppressed) and the caller rotates
+        return false;
+    }
+
+    private int alternateBucket(int bucket, int fingerprint) {
+        return (bucket ^ (fingerprint * 0x5bd1e995)) & (bucketCount - 1);
+    }
+
+    private static int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> (64 - FINGERPRINT_BITS));
+        // 0 marks an empty slot
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private static long hash(String id) {
+        // FNV-1a over the chars followed by the murmur3 64 bit finalizer
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * A cuckoo filter generation - bucketCount x 4 slots of 16 bit fingerprints in a direct buffer
+     */
+    private static class Generation {
+        private final ByteBuffer slots;
+        private long count;
+
+        private Generation(int bucketCount) {
+            this.slots = ByteBuffer.allocateDirect(bucketCount * SLOTS_PER_BUCKET * 2);
+        }
+
+        private boolean contains(int bucket1, int bucket2, int fingerprint) {
+            return bucketContains(bucket1, fingerprint) || bucketContains(bucket2, fingerprint);
+        }
+
+        private boolean bucketContains(int bucket, int fingerprint) {
+            int base = bucket * SLOTS_PER_BUCKET * 2;
+            for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+                if ((slots.getShort(base + i * 2) & 0xFFFF) == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean insertIntoBucket(int bucket, int fingerprint) {
+            int base = bucket * SLOTS_PER_BUCKET * 2;
+            for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+                if (slots.getShort(base + i * 2) == 0) {
+                    slots.putShort(base + i * 2, (short) fingerprint);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int swap(int bucket, int slot, int fingerprint) {
+            int index = (bucket * SLOTS_PER_BUCKET + slot) * 2;
+            int kicked = slots.getShort(index) & 0xFFFF;
+            slots.putShort(index, (short) fingerprint);
+            return kicked;
+        }
+
+        private void clear() {
+            for (int i = 0; i < slots.capacity(); i += 8) {
+                slots.putLong(i, 0L);
+            }
+            count = 0;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(count);
+            byte[] chunk = new byte[8192];
+            ByteBuffer source = slots.duplicate();
+            source.clear();
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+
+        private void readFrom(DataInputStream in) throws IOException {
+            count = in.readLong();
+            byte[] chunk = new byte[8192];
+            ByteBuffer target = slots.duplicate();
+            target.clear();
+            while (target.hasRemaining()) {
+                int length = Math.min(chunk.length, target.remaining());
+                in.readFully(chunk, 0, length);
+                target.put(chunk, 0, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.resonance.letsdata.data.readers.implementation.streams;
+
+import com.resonance.letsdata.data.util.KeyedSerialExecutor;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs stream record handler calls (KinesisRecordReader / DynamoDBStreamsRecordReader) concurrently across shards and, with the PARTITION_KEY ordering scope, across ordering keys
+ * within a shard, while preserving the submission order for the calls that share a shard (SHARD scope) or a shard and an ordering key (PARTITION_KEY scope).
+ *
+ * Checkpoints advance on the contiguous low watermark - the checkpoint of a shard is the sequence number of the latest submitted record such that it and all the records submitted
+ * to the shard before it have completed successfully. A record that completes out of order (an ordering key that is ahead of a slower key) does not advance the checkpoint until
+ * all the earlier records complete, so a restart from the checkpoint never skips an unprocessed record. A failed record holds the checkpoint at the record before it - the
+ * failure is available from getFailure and the reader decides whether to fail the task or continue (the same decision it makes for serial processing).
+ *
+ *      shard records:   seq 1 (key a) | seq 2 (key b) | seq 3 (key a) | seq 4 (key c)
+ *      completed:           yes       |      no       |      yes      |      yes
+ *      checkpoint:      seq 1 (seq 2 is still running, seq 3 and 4 are held back)
+ *
+ * Each shard has at most maxInFlightPerShard submitted but uncompleted records - submit blocks once the limit is reached, which bounds the memory held by records that are waiting
+ * behind a slow ordering key.
+ *
+ * With the PARTITION_KEY scope, handler calls for the same shard run concurrently and the handlers must be thread safe.
+ */
+public class OrderedShardExecutor {
+    public enum OrderingScope {
+        /**
+         * Records within a shard are processed serially, shards are processed concurrently
+         */
+        SHARD,
+        /**
+         * Records with the same ordering key within a shard are processed serially, different ordering keys and shards are processed concurrently
+         */
+        PARTITION_KEY
+    }
+
+    private static final int DEFAULT_MAX_IN_FLIGHT_PER_SHARD = 1000;
+
+    private final KeyedSerialExecutor<String> lanes;
+    private final OrderingScope orderingScope;
+    private final int maxInFlightPerShard;
+    private final ConcurrentHashMap<String, ShardState> shards = new ConcurrentHashMap<>();
+
+    public OrderedShardExecutor(Executor executor, OrderingScope orderingScope) {
+        this(executor, orderingScope, DEFAULT_MAX_IN_FLIGHT_PER_SHARD);
+    }
+
+    public OrderedShardExecutor(Executor executor, OrderingScope orderingScope, int maxInFlightPerShard) {
+        ValidationUtils.validateAssertCondition(orderingScope != null, "orderingScope should not be null");
+        ValidationUtils.validateAssertCondition(maxInFlightPerShard > 0, "maxInFlightPerShard should be positive", maxInFlightPerShard);
+        this.lanes = new KeyedSerialExecutor<>(executor);
+        this.orderingScope = orderingScope;
+        this.maxInFlightPerShard = maxInFlightPerShard;
+    }
+
+    /**
+     * Submits the handler call for a record. Records must be submitted in the shard's sequence order - the submission order is the order used for the checkpoint low watermark.
+     * Blocks while the shard has maxInFlightPerShard uncompleted records.
+     *
+     * @param shardId - the record's shard id
+     * @param orderingKey - the record's ordering key (the Kinesis partition key, the DynamoDB item keys), ignored for the SHARD scope
+     * @param sequenceNumber - the record's sequence number
+     * @param handlerCall - the handler call, runs on the executor
+     * @param <R> - the handler call's result type
+     * @return - a future that completes with the handler call's result
+     * @throws InterruptedException if interrupted while waiting for the shard's in flight limit
+     */
+    public <R> CompletableFuture<R> submit(String shardId, String orderingKey, String sequenceNumber, Supplier<R> handlerCall) throws InterruptedException {
+        ValidationUtils.validateAssertCondition(shardId != null && sequenceNumber != null && handlerCall != null, "shardId, sequenceNumber and handlerCall should not be null");
+        ValidationUtils.validateAssertCondition(orderingScope == OrderingScope.SHARD || orderingKey != null, "orderingKey should not be null for the PARTITION_KEY ordering scope", shardId, sequenceNumber);
+        ShardState shard = shards.computeIfAbsent(shardId, id -> new ShardState());
+        shard.inFlight.acquire();
+
+        Slot slot = new Slot(sequenceNumber);
+        synchronized (shard) {
+            shard.inFlightSlots++;
+            // once the shard has a failure its checkpoint is final, there is no need to track the later slots
+            if (shard.failure == null) {
+                shard.pending.add(slot);
+            }
+        }
+
+        String laneKey = orderingScope == OrderingScope.SHARD ? shardId : shardId + '\u0000' + orderingKey;
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            lanes.execute(laneKey, () -> {
+                try {
+                    R result = handlerCall.get();
+                    complete(shard, slot, null);
+                    future.complete(result);
+                } catch (Throwable ex) {
+                    complete(shard, slot, ex);
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            complete(shard, slot, ex);
+            throw ex;
+        }
+        return future;
+    }
+
+    /**
+     * The shard's checkpoint - the sequence number of the contiguous low watermark of successfully completed records
+     * @param shardId - the shard id
+     * @return - the checkpoint sequence number, null if no record has completed yet
+     */
+    public String getCheckpoint(String shardId) {
+        ShardState shard = shards.get(shardId);
+        if (shard == null) {
+            return null;
+        }
+        synchronized (shard) {
+            return shard.checkpointSequenceNumber;
+        }
+    }
+
+    /**
+     * The first failure in the shard, the checkpoint does not advance past the failed record
+     * @param shardId - the shard id
+     * @return - the failure, null if none of the shard's records failed
+     */
+    public Throwable getFailure(String shardId) {
+        ShardState shard = shards.get(shardId);
+        if (shard == null) {
+            return null;
+        }
+        synchronized (shard) {
+            return shard.failure;
+        }
+    }
+
+    /**
+     * The number of the shard's submitted records that have not completed yet
+     * @param shardId - the shard id
+     * @return - the in flight record count
+     */
+    public int getInFlightCount(String shardId) {
+        ShardState shard = shards.get(shardId);
+        if (shard == null) {
+            return 0;
+        }
+        // the slot count, not the semaphore's permits - a completed slot's permit is released after awaitShard is notified
+        synchronized (shard) {
+            return shard.inFlightSlots;
+        }
+    }
+
+    /**
+     * Waits until all the shard's submitted records have completed - for example at a shard end, before the child shards are processed, or before the final checkpoint of a task.
+     * @param shardId - the shard id
+     * @param timeout - the max time to wait
+     * @param unit - the timeout's unit
+     * @return - true if the shard has no in flight records, false if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitShard(String shardId, long timeout, TimeUnit unit) throws InterruptedException {
+        ShardState shard = shards.get(shardId);
+        if (shard == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (shard) {
+            while (shard.inFlightSlots > 0) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(shard, remainingNanos);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes the shard's state once it has been fully processed (shard end) - returns false and keeps the state if the shard still has in flight records
+     * @param shardId - the shard id
+     * @return - true if the shard's state was removed
+     */
+    public boolean removeShard(String shardId) {
+        ShardState shard = shards.get(shardId);
+        if (shard == null) {
+            return true;
+        }
+        synchronized (shard) {
+            if (shard.inFlightSlots > 0) {
+                return false;
+            }
+            return shards.remove(shardId, shard);
+        }
+    }
+
+    public OrderingScope getOrderingScope() {
+        return orderingScope;
+    }
+
+    private void complete(ShardState shard, Slot slot, Throwable failure) {
+        synchronized (shard) {
+            slot.completed = true;
+            slot.failed = failure != null;
+            shard.inFlightSlots--;
+            // advance the low watermark over the completed prefix, a failed slot stops the advance
+            Slot head;
+            while ((head = shard.pending.peek()) != null && head.completed && !head.failed) {
+                shard.checkpointSequenceNumber = head.sequenceNumber;
+                shard.pending.poll();
+            }
+            if (failure != null && shard.failure == null) {
+                // the checkpoint is held before the failed slot from now on - drop the failed slot and the later slots, the earlier slots that are still running
+                // stay pending so that the checkpoint advances up to the record before the failed one
+                shard.failure = failure;
+                while (!shard.pending.isEmpty() && shard.pending.pollLast() != slot) {
+                    // drop the slots after the failed slot
+                }
+            }
+            if (shard.inFlightSlots == 0) {
+                shard.notifyAll();
+            }
+        }
+        shard.inFlight.release();
+    }
+
+    private class ShardState {
+        private final Semaphore inFlight = new Semaphore(maxInFlightPerShard);
+        // guarded by this
+        private final ArrayDeque<Slot> pending = new ArrayDeque<>();
+        private int inFlightSlots;
+        private String checkpointSequenceNumber;
+        private Throwable failure;
+    }
+
+    private static class Slot {
+        private final String sequenceNumber;
+        // guarded by the shard state
+        private boolean completed;
+        private boolean failed;
+
+        private Slot(String sequenceNumber) {
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
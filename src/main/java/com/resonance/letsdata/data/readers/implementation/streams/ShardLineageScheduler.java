@@ -0,0 +1,290 @@
+package com.resonance.letsdata.data.readers.implementation.streams;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the processing of a stream's shards (DynamoDB Streams, Kinesis) by their lineage - all the shards whose parents have been processed are processed concurrently, and a
+ * child shard starts as soon as its last parent completes. A key's records in a parent shard are therefore always processed before its records in the child shards, while
+ * the shards created by a split (or a table repartitioning) are processed in parallel rather than serially.
+ *
+ *      shard lineage:                         schedule (maxConcurrentShards = 4):
+ *
+ *           A        B                          A, B          running
+ *          / \       |                          A1, A2        start when A completes
+ *        A1   A2     B1                         B1            starts when B completes
+ *
+ * The reader registers the shards it discovers (DescribeStream / ListShards) with registerShards, repeatedly as the stream's shards change. A parent shard that is not registered
+ * (trimmed past the stream's retention, or processed before the task started) is treated as completed, so the discovery should register all the listed shards in one call.
+ *
+ * A shard whose processor call fails is FAILED and its children are held - retryShard re-runs it. The scheduler is thread safe.
+ */
+public class ShardLineageScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ShardLineageScheduler.class);
+
+    public enum ShardStatus {
+        /**
+         * Waiting for the shard's parents to complete
+         */
+        WAITING,
+        /**
+         * Ready, waiting for a free slot
+         */
+        READY,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Processes a shard from its checkpoint to its end - returns once the shard's last record has been processed and checkpointed (the shard is closed) and throws on failure
+     */
+    public interface ShardProcessor {
+        void processShard(String shardId) throws Exception;
+    }
+
+    private final Executor executor;
+    private final int maxConcurrentShards;
+    private final ShardProcessor processor;
+    // guarded by this
+    private final Map<String, ShardState> shards = new LinkedHashMap<>();
+    private final Map<String, List<ShardState>> childrenByParent = new HashMap<>();
+    private final ArrayDeque<ShardState> readyShards = new ArrayDeque<>();
+    private int runningCount;
+
+    public ShardLineageScheduler(Executor executor, int maxConcurrentShards, ShardProcessor processor) {
+        ValidationUtils.validateAssertCondition(executor != null && processor != null, "executor and processor should not be null");
+        ValidationUtils.validateAssertCondition(maxConcurrentShards > 0, "maxConcurrentShards should be positive", maxConcurrentShards);
+        this.executor = executor;
+        this.maxConcurrentShards = maxConcurrentShards;
+        this.processor = processor;
+    }
+
+    /**
+     * Registers the discovered shards and starts the ones that are ready. Already registered shards are ignored.
+     * @param discoveredShards - the stream's shards, for example the DescribeStream shard list
+     */
+    public void registerShards(Collection<ShardInfo> discoveredShards) {
+        List<ShardState> toStart;
+        synchronized (this) {
+            List<ShardState> added = new ArrayList<>();
+            for (ShardInfo shardInfo : discoveredShards) {
+                if (!shards.containsKey(shardInfo.getShardId())) {
+                    ShardState shard = new ShardState(shardInfo);
+                    shards.put(shardInfo.getShardId(), shard);
+                    added.add(shard);
+                }
+            }
+            for (ShardState shard : added) {
+                for (String parentShardId : shard.info.getParentShardIds()) {
+                    ShardState parent = shards.get(parentShardId);
+                    if (parent != null && parent.status != ShardStatus.COMPLETED) {
+                        shard.pendingParentCount++;
+                        childrenByParent.computeIfAbsent(parentShardId, k -> new ArrayList<>()).add(shard);
+                    }
+                }
+                if (shard.pendingParentCount == 0) {
+                    shard.status = ShardStatus.READY;
+                    readyShards.add(shard);
+                }
+            }
+            toStart = takeStartableShards();
+        }
+        start(toStart);
+    }
+
+    /**
+     * Re-runs a failed shard
+     * @param shardId - the shard id
+     * @return - true if the shard was failed and has been re-queued
+     */
+    public boolean retryShard(String shardId) {
+        List<ShardState> toStart;
+        synchronized (this) {
+            ShardState shard = shards.get(shardId);
+            if (shard == null || shard.status != ShardStatus.FAILED) {
+                return false;
+            }
+            shard.status = ShardStatus.READY;
+            shard.failure = null;
+            readyShards.add(shard);
+            toStart = takeStartableShards();
+        }
+        start(toStart);
+        return true;
+    }
+
+    /**
+     * Waits until no shard is running or ready - all the registered shards have completed, or the remaining ones are failed or waiting on failed parents
+     * @param timeout - the max time to wait
+     * @param unit - the timeout's unit
+     * @return - true if the scheduler is idle, false if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (runningCount > 0 || !readyShards.isEmpty()) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+        return true;
+    }
+
+    /**
+     * The shard's status
+     * @param shardId - the shard id
+     * @return - the status, null if the shard is not registered
+     */
+    public synchronized ShardStatus getShardStatus(String shardId) {
+        ShardState shard = shards.get(shardId);
+        return shard == null ? null : shard.status;
+    }
+
+    /**
+     * The failure of a FAILED shard
+     * @param shardId - the shard id
+     * @return - the failure, null if the shard has not failed
+     */
+    public synchronized Throwable getShardFailure(String shardId) {
+        ShardState shard = shards.get(shardId);
+        return shard == null ? null : shard.failure;
+    }
+
+    /**
+     * The shards with the status, in registration order
+     * @param status - the status
+     * @return - the shard ids
+     */
+    public synchronized Set<String> getShards(ShardStatus status) {
+        Set<String> shardIds = new LinkedHashSet<>();
+        for (ShardState shard : shards.values()) {
+            if (shard.status == status) {
+                shardIds.add(shard.info.getShardId());
+            }
+        }
+        return shardIds;
+    }
+
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    private List<ShardState> takeStartableShards() {
+        List<ShardState> toStart = new ArrayList<>();
+        while (runningCount < maxConcurrentShards && !readyShards.isEmpty()) {
+            ShardState shard = readyShards.poll();
+            shard.status = ShardStatus.RUNNING;
+            runningCount++;
+            toStart.add(shard);
+        }
+        return toStart;
+    }
+
+    private void start(List<ShardState> toStart) {
+        for (final ShardState shard : toStart) {
+            try {
+                executor.execute(() -> {
+                    Throwable failure = null;
+                    try {
+                        processor.processShard(shard.info.getShardId());
+                    } catch (Throwable ex) {
+                        failure = ex;
+                    }
+                    onShardDone(shard, failure);
+                });
+            } catch (RuntimeException ex) {
+                onShardDone(shard, ex);
+            }
+        }
+    }
+
+    private void onShardDone(ShardState shard, Throwable failure) {
+        List<ShardState> toStart;
+        synchronized (this) {
+            runningCount--;
+            if (failure != null) {
+                logger.error("shard processing failed, holding its child shards - shardId: {}", shard.info.getShardId(), failure);
+                shard.status = ShardStatus.FAILED;
+                shard.failure = failure;
+            } else {
+                shard.status = ShardStatus.COMPLETED;
+                List<ShardState> children = childrenByParent.remove(shard.info.getShardId());
+                if (children != null) {
+                    for (ShardState child : children) {
+                        if (--child.pendingParentCount == 0) {
+                            child.status = ShardStatus.READY;
+                            readyShards.add(child);
+                        }
+                    }
+                }
+            }
+            toStart = takeStartableShards();
+            notifyAll();
+        }
+        start(toStart);
+    }
+
+    /**
+     * A discovered shard and its parents - DynamoDB Streams shards have at most one parent, Kinesis shards created by a merge have two
+     */
+    public static class ShardInfo {
+        private final String shardId;
+        private final List<String> parentShardIds;
+
+        public ShardInfo(String shardId, String... parentShardIds) {
+            ValidationUtils.validateAssertCondition(shardId != null, "shardId should not be null");
+            this.shardId = shardId;
+            List<String> parents = new ArrayList<>();
+            for (String parentShardId : parentShardIds) {
+                if (parentShardId != null) {
+                    parents.add(parentShardId);
+                }
+            }
+            this.parentShardIds = Collections.unmodifiableList(parents);
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        public List<String> getParentShardIds() {
+            return parentShardIds;
+        }
+
+        @Override
+        public String toString() {
+            return "ShardInfo{" +
+                    "shardId='" + shardId + '\'' +
+                    ", parentShardIds=" + parentShardIds +
+                    '}';
+        }
+    }
+
+    private static class ShardState {
+        private final ShardInfo info;
+        private ShardStatus status = ShardStatus.WAITING;
+        private int pendingParentCount;
+        private Throwable failure;
+
+        private ShardState(ShardInfo info) {
+            this.info = info;
+        }
+    }
+}
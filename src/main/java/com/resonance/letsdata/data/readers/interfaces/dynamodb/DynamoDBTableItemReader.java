@@ -1,5 +1,7 @@
 package com.resonance.letsdata.data.readers.interfaces.dynamodb;
 
+import com.resonance.letsdata.data.readers.implementation.dynamodb.DynamoDBScanProjection;
+import com.resonance.letsdata.data.readers.implementation.dynamodb.LazyDynamoDBItem;
 import com.resonance.letsdata.data.readers.model.ParseDocumentResult;
 import java.util.Map;
 
@@ -44,4 +46,34 @@ public interface DynamoDBTableItemReader {
      * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
      */
     ParseDocumentResult parseDynamoDBItem(String tableName, int segmentNumber, Map<String, Object> keys, Map<String, Object> item);
+
+    /**
+     * Variant of parseDynamoDBItem that receives the keys and the item as LazyDynamoDBItem views over the scanned item's raw attribute values. Attributes are decoded on access and the
+     * typed getters (getLong, getDouble, getString, getBinary) decode without building intermediate objects, so the conversion cost is proportional to the attributes the handler reads.
+     *
+     * The reader calls this method for each scanned item. The default implementation passes the views to parseDynamoDBItem as maps - handlers can override this method to use the typed getters.
+     *
+     * @param tableName - The DynamoDB tableName
+     * @param segmentNumber - The DynamoDB scan segmentNumber
+     * @param keys - The primary key attribute(s) for the scanned DynamoDB item
+     * @param item - The scanned item from the DynamoDB table
+     * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
+     */
+    default ParseDocumentResult parseLazyDynamoDBItem(String tableName, int segmentNumber, LazyDynamoDBItem<?> keys, LazyDynamoDBItem<?> item) {
+        return parseDynamoDBItem(tableName, segmentNumber, keys, item);
+    }
+
+    /**
+     * Optional declaration of the attributes (and the items) the handler needs from the table scan. The reader renders the projection into the scan request's ProjectionExpression
+     * and FilterExpression so that only the projected attributes of the matching items are returned - large attributes that the handler never reads are not transferred or decoded.
+     * The table's key attributes are always included. Items that do not match the filter are not passed to the handler.
+     *
+     * The InMemoryDynamoDBTable stand-in enforces the projection, handlers can be tested against it to verify that they only read projected attributes.
+     *
+     * @param tableName - The DynamoDB tableName
+     * @return the scan projection, defaults to null (whole items, no filter)
+     */
+    default DynamoDBScanProjection getScanProjection(String tableName) {
+        return null;
+    }
 }
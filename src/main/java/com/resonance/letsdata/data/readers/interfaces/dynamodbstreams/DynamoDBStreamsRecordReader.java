@@ -1,5 +1,9 @@
 package com.resonance.letsdata.data.readers.interfaces.dynamodbstreams;
 
+import com.resonance.letsdata.data.readers.implementation.dynamodb.LazyDynamoDBItem;
+import com.resonance.letsdata.data.readers.implementation.dynamodbstreams.DynamoDBStreamEventFilter;
+import com.resonance.letsdata.data.readers.implementation.streams.DuplicateSuppressionFilter;
+import com.resonance.letsdata.data.readers.implementation.streams.OrderedShardExecutor;
 import com.resonance.letsdata.data.readers.model.ParseDocumentResult;
 
 import java.util.Date;
@@ -60,4 +64,93 @@ public interface DynamoDBStreamsRecordReader {
      * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
      */
     ParseDocumentResult parseRecord(String streamArn, String shardId, String eventId, String eventName, String identityPrincipalId, String identityType, String sequenceNumber, Long sizeBytes, String streamViewType, Date approximateCreationDateTime, Map<String, Object> keys, Map<String, Object> oldImage, Map<String, Object> newImage);
+
+    /**
+     * Variant of parseRecord that receives the keys and images as LazyDynamoDBItem views over the stream record's raw attribute values. Attributes are decoded on access and the
+     * typed getters (getLong, getDouble, getString, getBinary) decode without building intermediate objects, so the conversion cost is proportional to the attributes the handler reads.
+     *
+     * The reader calls this method for each stream record. The default implementation passes the views to parseRecord as maps - handlers can override this method to use the typed getters.
+     *
+     * @param streamArn - The DynamoDB Stream ARN
+     * @param shardId - The DynamoDB Shard Id
+     * @param eventId - A globally unique identifier for the event that was recorded in this stream record.
+     * @param eventName - The type of data modification that was performed on the DynamoDB table. INSERT | MODIFY | REMOVE
+     * @param identityPrincipalId - The userIdentity's principalId
+     * @param identityType - The userIdentity's principalType
+     * @param sequenceNumber - The sequence number of the stream record
+     * @param sizeBytes - The size of the stream record, in bytes
+     * @param streamViewType - The stream view type - NEW_IMAGE | OLD_IMAGE | NEW_AND_OLD_IMAGES | KEYS_ONLY
+     * @param approximateCreationDateTime - The approximate date and time when the stream record was created, in UNIX epoch time format and rounded down to the closest second
+     * @param keys - The primary key attribute(s) for the DynamoDB item that was modified
+     * @param oldImage - The item in the DynamoDB table as it appeared before it was modified, null if the stream view type does not include it
+     * @param newImage - The item in the DynamoDB table as it appeared after it was modified, null if the stream view type does not include it
+     * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
+     */
+    default ParseDocumentResult parseLazyRecord(String streamArn, String shardId, String eventId, String eventName, String identityPrincipalId, String identityType, String sequenceNumber, Long sizeBytes, String streamViewType, Date approximateCreationDateTime, LazyDynamoDBItem<?> keys, LazyDynamoDBItem<?> oldImage, LazyDynamoDBItem<?> newImage) {
+        return parseRecord(streamArn, shardId, eventId, eventName, identityPrincipalId, identityType, sequenceNumber, sizeBytes, streamViewType, approximateCreationDateTime, keys, oldImage, newImage);
+    }
+
+    /**
+     * Optional declarative filter for the events the handler processes (event names, identities such as TTL deletes, key prefixes, record sizes). The reader evaluates the filter
+     * on each record's metadata and keys before the images are converted - rejected records are checkpointed but are not converted or passed to the handler. With change
+     * coalescing enabled, the key prefix conditions are evaluated on each record before it is coalesced (acceptKeys) and the event name, identity and size conditions on each
+     * net change (acceptChange), so that filtering out an event (for example REMOVE) does not change the net change of the events that are kept.
+     *
+     * @return the event filter, defaults to null (all events are passed to the handler)
+     */
+    default DynamoDBStreamEventFilter getEventFilter() {
+        return null;
+    }
+
+    /**
+     * Whether the reader should coalesce the stream records for the same keys with the DynamoDBStreamChangeCoalescer before calling the handler. When enabled, the handler is called
+     * once per key per coalescing window with the key's net change - the first record's oldImage, the last record's newImage and the collapsed eventName (INSERT, MODIFY or REMOVE,
+     * keys that were inserted and removed within the window are not passed to the handler). The reader checkpoints at the last folded sequenceNumber once the window's changes are processed.
+     *
+     * Handlers that need every intermediate image (audit logs, event sourcing) should not enable coalescing.
+     *
+     * @return true to enable coalescing, defaults to false
+     */
+    default boolean isChangeCoalescingEnabled() {
+        return false;
+    }
+
+    /**
+     * The coalescing window when change coalescing is enabled
+     *
+     * @return the window in milliseconds, 0 (default) to coalesce the records within each GetRecords batch
+     */
+    default long getChangeCoalescingWindowMillis() {
+        return 0;
+    }
+
+    /**
+     * The ordering scope the reader uses to run handler calls concurrently with the OrderedShardExecutor. Shards are always processed concurrently and checkpoints advance on the
+     * contiguous low watermark of completed records.
+     *
+     * * SHARD: records within a shard are passed to the handler serially in sequence order
+     * * PARTITION_KEY: records within a shard are ordered only by the record's item keys - records with different keys are passed to the handler concurrently, so the handler must be thread safe
+     *
+     * I/O bound handlers that are thread safe and only need per key ordering can return PARTITION_KEY to use the idle cores.
+     *
+     * @return the ordering scope, defaults to SHARD
+     */
+    default OrderedShardExecutor.OrderingScope getOrderingScope() {
+        return OrderedShardExecutor.OrderingScope.SHARD;
+    }
+
+    /**
+     * Optional duplicate suppression for replayed records (retries, re-sharding, task restarts). The reader consults the filter with each record's id - the eventId - before calling
+     * the handler (check) and skips DUPLICATE and PROBABLE_DUPLICATE records. An id is recorded only after its handler succeeds, so a failed record is redelivered and processed again.
+     * At each checkpoint the reader marks the recorded ids as checkpointed and persists the filter's state with the checkpoint - the state holds only the ids at or below the
+     * checkpoint, so the replay after a restart suppresses the committed records and reprocesses the ones handled after the checkpoint.
+     *
+     * The filter's PROBABLE_DUPLICATE results have a small false positive probability (see DuplicateSuppressionFilter.getMaxFalsePositiveRate) - handlers that cannot tolerate a skipped
+     * new record should not enable it.
+     *
+     * @return the filter, defaults to null (no duplicate suppression)
+     */
+    default DuplicateSuppressionFilter getDuplicateSuppressionFilter() {
+        return null;
+    }
 }
@@ -1,9 +1,15 @@
 package com.resonance.letsdata.data.readers.interfaces.kinesis;
 
+import com.resonance.letsdata.data.readers.implementation.kinesis.KinesisUserRecord;
+import com.resonance.letsdata.data.readers.implementation.kinesis.KplDeaggregator;
+import com.resonance.letsdata.data.readers.implementation.streams.DuplicateSuppressionFilter;
+import com.resonance.letsdata.data.readers.implementation.streams.OrderedShardExecutor;
 import com.resonance.letsdata.data.readers.model.ParseDocumentResult;
+import com.resonance.letsdata.data.util.ValidationUtils;
 
 import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.List;
 
 public interface KinesisRecordReader {
     /**
@@ -48,4 +54,114 @@ public interface KinesisRecordReader {
      * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
      */
     ParseDocumentResult parseMessage(String streamArn, String shardId, String partitionKey, String sequenceNumber, Date approximateArrivalTimestamp, ByteBuffer data);
+
+    /**
+     * Optional batch variant of parseMessage that receives a whole GetRecords batch for a shard. The stream ARN and shard id are passed once and the per record fields as parallel arrays -
+     * the record at index i is (partitionKeys[i], sequenceNumbers[i], approximateArrivalTimestamps[i], data[i]) for i in [0, recordCount).
+     * The arrays may be longer than recordCount since the reader reuses them across batches - implementations must not hold references to the arrays after the call returns.
+     *
+     * Handlers that do per batch enrichment (a single lookup for all the keys in the batch) or vectorized decoding can override this method to amortize their setup costs.
+     * The default implementation calls parseMessage for each record in order.
+     *
+     * Results are positional - results[i] is the result for record i. The reader processes the results in order and checkpoints at the last record whose result was processed,
+     * the same as it would for the results of individual parseMessage calls.
+     *
+     * @param streamArn The kinesis stream ARN
+     * @param shardId The kinesis stream shardId
+     * @param partitionKeys The records' partitionKeys
+     * @param sequenceNumbers The records' sequenceNumbers
+     * @param approximateArrivalTimestamps The records' approximateArrivalTimestamps
+     * @param data The records' data
+     * @param recordCount The number of records in the batch
+     * @return ParseDocumentResult array of length recordCount which has the extracted document and the status (error, success or skip) for each record
+     */
+    default ParseDocumentResult[] parseMessages(String streamArn, String shardId, String[] partitionKeys, String[] sequenceNumbers, Date[] approximateArrivalTimestamps, ByteBuffer[] data, int recordCount) {
+        ValidationUtils.validateAssertCondition(recordCount >= 0 && partitionKeys.length >= recordCount && sequenceNumbers.length >= recordCount && approximateArrivalTimestamps.length >= recordCount && data.length >= recordCount, "batch arrays are shorter than the record count", recordCount);
+        ParseDocumentResult[] results = new ParseDocumentResult[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            results[i] = parseMessage(streamArn, shardId, partitionKeys[i], sequenceNumbers[i], approximateArrivalTimestamps[i], data[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Whether the reader should de-aggregate KPL aggregated records before passing them to the user data handler. When enabled, the reader calls parseAggregatedMessage for each
+     * Kinesis record instead of parseMessage - each sub record is passed to parseUserRecord as a slice of the original payload with its own partition key and explicit hash key.
+     * Records that are not KPL aggregated are passed through as a single user record.
+     *
+     * @return true to enable KPL de-aggregation, defaults to false
+     */
+    default boolean isKplDeaggregationEnabled() {
+        return false;
+    }
+
+    /**
+     * Parses a single user record - a KPL sub record or a non aggregated Kinesis record. The user record's data is a read only slice of the Kinesis record payload and is only valid
+     * for the duration of the call - copy it if it needs to be retained.
+     *
+     * Sub records share the Kinesis record's sequence number and are identified by (sequenceNumber, subSequenceNumber) - the reader checkpoints at the sub sequence number of the last
+     * processed sub record so that a restart resumes after it.
+     *
+     * The default implementation calls parseMessage with the user record's partition key and data.
+     *
+     * @param streamArn The kinesis stream ARN
+     * @param shardId The kinesis stream shardId
+     * @param userRecord The user record
+     * @param approximateArrivalTimestamp The Kinesis record's approximateArrivalTimestamp
+     * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
+     */
+    default ParseDocumentResult parseUserRecord(String streamArn, String shardId, KinesisUserRecord userRecord, Date approximateArrivalTimestamp) {
+        return parseMessage(streamArn, shardId, userRecord.getPartitionKey(), userRecord.getSequenceNumber(), approximateArrivalTimestamp, userRecord.getData());
+    }
+
+    /**
+     * De-aggregates the Kinesis record using the KplDeaggregator and calls parseUserRecord for each user record in sub sequence order. Results are positional - results[i] is the result for
+     * the user record with subSequenceNumber i.
+     *
+     * @param streamArn The kinesis stream ARN
+     * @param shardId The kinesis stream shardId
+     * @param partitionKey The record's partitionKey
+     * @param sequenceNumber The record's sequenceNumber
+     * @param approximateArrivalTimestamp The record's approximateArrivalTimestamp
+     * @param data The record's data
+     * @return ParseDocumentResult array with a result for each user record
+     */
+    default ParseDocumentResult[] parseAggregatedMessage(String streamArn, String shardId, String partitionKey, String sequenceNumber, Date approximateArrivalTimestamp, ByteBuffer data) {
+        List<KinesisUserRecord> userRecords = KplDeaggregator.deaggregate(partitionKey, sequenceNumber, data);
+        ParseDocumentResult[] results = new ParseDocumentResult[userRecords.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = parseUserRecord(streamArn, shardId, userRecords.get(i), approximateArrivalTimestamp);
+        }
+        return results;
+    }
+
+    /**
+     * The ordering scope the reader uses to run handler calls concurrently with the OrderedShardExecutor. Shards are always processed concurrently and checkpoints advance on the
+     * contiguous low watermark of completed records.
+     *
+     * * SHARD: records within a shard are passed to the handler serially in sequence order
+     * * PARTITION_KEY: records within a shard are ordered only by the record's partition key - records with different keys are passed to the handler concurrently, so the handler must be thread safe
+     *
+     * I/O bound handlers that are thread safe and only need per key ordering can return PARTITION_KEY to use the idle cores.
+     *
+     * @return the ordering scope, defaults to SHARD
+     */
+    default OrderedShardExecutor.OrderingScope getOrderingScope() {
+        return OrderedShardExecutor.OrderingScope.SHARD;
+    }
+
+    /**
+     * Optional duplicate suppression for replayed records (retries, re-sharding, task restarts). The reader consults the filter with each record's id - the shardId and sequenceNumber (and the subSequenceNumber of de-aggregated KPL sub records) - before calling
+     * the handler (check) and skips DUPLICATE and PROBABLE_DUPLICATE records. An id is recorded only after its handler succeeds, so a failed record is redelivered and processed again.
+     * At each checkpoint the reader marks the recorded ids as checkpointed and persists the filter's state with the checkpoint - the state holds only the ids at or below the
+     * checkpoint, so the replay after a restart suppresses the committed records and reprocesses the ones handled after the checkpoint.
+     *
+     * The filter's PROBABLE_DUPLICATE results have a small false positive probability (see DuplicateSuppressionFilter.getMaxFalsePositiveRate) - handlers that cannot tolerate a skipped
+     * new record should not enable it.
+     *
+     * @return the filter, defaults to null (no duplicate suppression)
+     */
+    default DuplicateSuppressionFilter getDuplicateSuppressionFilter() {
+        return null;
+    }
 }
@@ -1,5 +1,6 @@
 package com.resonance.letsdata.data.readers.interfaces.parsers;
 
+import com.resonance.letsdata.data.readers.implementation.filter.RecordFilter;
 import com.resonance.letsdata.data.readers.model.ParseDocumentResult;
 import com.resonance.letsdata.data.readers.model.RecordParseHint;
 
@@ -98,6 +99,26 @@ public interface SingleFileParser {
      */
     RecordParseHint getRecordEndPattern(String s3FileType);
 
+    /**
+     * An optional pre-filter on the raw record bytes. The reader evaluates the filter right after it finds the record's start and end delimiters - records that the filter rejects
+     * are not sent to parseDocument. Consecutive rejected records are written as a single range level skip record (see SkippedRecordRangeCoalescer) instead of one skip doc per record.
+     *
+     * This replaces the Matcher.match check + SkipDoc that parseDocument implementations usually begin with. For the ERROR records example in the parseDocument docs:
+     *
+     *      @Override
+     *      public RecordFilter getRecordPreFilter(String s3FileType) {
+     *          return RecordFilter.contains("\"lvl\":\"ERROR\"");
+     *      }
+     *
+     * The default implementation returns null, in which case every record is sent to parseDocument.
+     *
+     * @param s3FileType - the filetype
+     * @return - the record pre-filter or null if records should not be pre-filtered
+     */
+    default RecordFilter getRecordPreFilter(String s3FileType) {
+        return null;
+    }
+
     /**
      *  This function is called with the document contents in a byteArr and the startIndex and endIndex into the byteArr as the start and end of the record.
      *  The implementer is expected to construct the output record from these bytes.
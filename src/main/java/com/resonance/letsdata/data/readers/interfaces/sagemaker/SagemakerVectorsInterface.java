@@ -1,6 +1,7 @@
 package com.resonance.letsdata.data.readers.interfaces.sagemaker;
 
 import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import com.resonance.letsdata.data.readers.model.FloatVectors;
 
 import java.util.Map;
 
@@ -90,4 +91,19 @@ public interface SagemakerVectorsInterface {
      * @return
      */
     DocumentInterface constructVectorDoc(DocumentInterface documentInterface, Map<String /*friendlyName*/, Double[] /*Vector*/> vectorsMap);
+
+    /**
+     * Variant of constructVectorDoc that receives the vectors as primitive floats - each vector is a read only FloatBuffer view of the inference batch's contiguous float buffer,
+     * about a sixth of the memory of the boxed Double[] vectors. See constructVectorDoc(DocumentInterface, Map) for the feature / vector doc details.
+     *
+     * LetsData calls this method with the vectors of each document. The default implementation adapts the vectors to the boxed map and calls constructVectorDoc(DocumentInterface, Map) -
+     * handlers should override this method to avoid the boxing. The vector views are valid until the method returns, copy them (FloatVectors.copyVector) to keep them longer.
+     *
+     * @param documentInterface the document that the vectors were extracted from
+     * @param vectors the friendlyName to vector views
+     * @return the feature or vector doc
+     */
+    default DocumentInterface constructVectorDoc(DocumentInterface documentInterface, FloatVectors vectors) {
+        return constructVectorDoc(documentInterface, vectors.toBoxedMap());
+    }
 }
@@ -1,6 +1,9 @@
 package com.resonance.letsdata.data.readers.interfaces.sqs;
 
+import com.resonance.letsdata.data.readers.implementation.streams.DuplicateSuppressionFilter;
 import com.resonance.letsdata.data.readers.model.ParseDocumentResult;
+import com.resonance.letsdata.data.readers.model.QueueMessage;
+import com.resonance.letsdata.data.util.ValidationUtils;
 
 import java.util.Map;
 
@@ -46,4 +49,53 @@ public interface QueueMessageReader {
      * @return ParseDocumentResult which has the extracted document and the status (error, success or skip)
      */
     ParseDocumentResult parseMessage(String messageId, String messageGroupId, String messageDeduplicationId, Map<String, String> messageAttributes, String messageBody);
+
+    /**
+     * Optional batch variant of parseMessage that receives a whole SQS receive batch. Each message's body is passed as bytes (a ByteBuffer) and its attributes are decoded lazily -
+     * handlers that override this method and never read the attributes do not pay for decoding them, and handlers with binary bodies can decode them without a String round trip.
+     * The array may be longer than messageCount since the reader reuses it across batches - implementations must not hold references to the array or the message bodies after the call returns.
+     *
+     * The default implementation calls parseMessage for each message in order, decoding its attributes and body to Strings.
+     *
+     * Results are positional - results[i] is the result for messages[i]. The reader processes the results in order and deletes each message from the queue once its result is processed,
+     * the same as it would for the results of individual parseMessage calls.
+     *
+     * @param messages The received messages
+     * @param messageCount The number of messages in the batch
+     * @return ParseDocumentResult array of length messageCount which has the extracted document and the status (error, success or skip) for each message
+     */
+    default ParseDocumentResult[] parseMessages(QueueMessage[] messages, int messageCount) {
+        ValidationUtils.validateAssertCondition(messageCount >= 0 && messages.length >= messageCount, "messages array is shorter than the message count", messageCount);
+        ParseDocumentResult[] results = new ParseDocumentResult[messageCount];
+        for (int i = 0; i < messageCount; i++) {
+            QueueMessage message = messages[i];
+            results[i] = parseMessage(message.getMessageId(), message.getMessageGroupId(), message.getMessageDeduplicationId(), message.getMessageAttributes().asMap(), message.getBodyAsString());
+        }
+        return results;
+    }
+
+    /**
+     * Whether the reader should process FIFO message groups concurrently with the MessageGroupDispatcher. Messages within a message group are always passed to the handler strictly
+     * in order - messages in different groups are passed to the handler concurrently, so the handler must be thread safe.
+     *
+     * @return true to process message groups concurrently, defaults to false (messages are processed serially)
+     */
+    default boolean isMessageGroupConcurrencyEnabled() {
+        return false;
+    }
+
+    /**
+     * Optional duplicate suppression for replayed records (retries, re-sharding, task restarts). The reader consults the filter with each record's id - the messageDeduplicationId for FIFO queues and the messageId for standard queues - before calling
+     * the handler (check) and skips DUPLICATE and PROBABLE_DUPLICATE records. An id is recorded only after its handler succeeds, so a failed record is redelivered and processed again.
+     * At each checkpoint the reader marks the recorded ids as checkpointed and persists the filter's state with the checkpoint - the state holds only the ids at or below the
+     * checkpoint, so the replay after a restart suppresses the committed records and reprocesses the ones handled after the checkpoint.
+     *
+     * The filter's PROBABLE_DUPLICATE results have a small false positive probability (see DuplicateSuppressionFilter.getMaxFalsePositiveRate) - handlers that cannot tolerate a skipped
+     * new record should not enable it.
+     *
+     * @return the filter, defaults to null (no duplicate suppression)
+     */
+    default DuplicateSuppressionFilter getDuplicateSuppressionFilter() {
+        return null;
+    }
 }
@@ -0,0 +1,136 @@
+package com.resonance.letsdata.data.readers.model;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A DynamoDB Streams record - the fields that the reader passes to DynamoDBStreamsRecordReader.parseRecord, see the parseRecord docs for their details.
+ */
+public class DynamoDBStreamRecord {
+    public static final String EVENT_NAME_INSERT = "INSERT";
+    public static final String EVENT_NAME_MODIFY = "MODIFY";
+    public static final String EVENT_NAME_REMOVE = "REMOVE";
+
+    private final String eventId;
+    private final String eventName;
+    private final String identityPrincipalId;
+    private final String identityType;
+    private final String sequenceNumber;
+    private final Long sizeBytes;
+    private final String streamViewType;
+    private final Date approximateCreationDateTime;
+    private final Map<String, Object> keys;
+    private final Map<String, Object> oldImage;
+    private final Map<String, Object> newImage;
+
+    public DynamoDBStreamRecord(String eventId, String eventName, String identityPrincipalId, String identityType, String sequenceNumber, Long sizeBytes, String streamViewType, Date approximateCreationDateTime, Map<String, Object> keys, Map<String, Object> oldImage, Map<String, Object> newImage) {
+        this.eventId = eventId;
+        this.eventName = eventName;
+        this.identityPrincipalId = identityPrincipalId;
+        this.identityType = identityType;
+        this.sequenceNumber = sequenceNumber;
+        this.sizeBytes = sizeBytes;
+        this.streamViewType = streamViewType;
+        this.approximateCreationDateTime = approximateCreationDateTime;
+        this.keys = keys;
+        this.oldImage = oldImage;
+        this.newImage = newImage;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public String getIdentityPrincipalId() {
+        return identityPrincipalId;
+    }
+
+    public String getIdentityType() {
+        return identityType;
+    }
+
+    public String getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public String getStreamViewType() {
+        return streamViewType;
+    }
+
+    public Date getApproximateCreationDateTime() {
+        return approximateCreationDateTime;
+    }
+
+    public Map<String, Object> getKeys() {
+        return keys;
+    }
+
+    public Map<String, Object> getOldImage() {
+        return oldImage;
+    }
+
+    public Map<String, Object> getNewImage() {
+        return newImage;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (!(o instanceof DynamoDBStreamRecord)) return false;
+
+        DynamoDBStreamRecord that = (DynamoDBStreamRecord) o;
+
+        return new EqualsBuilder()
+                .append(eventId, that.eventId)
+                .append(eventName, that.eventName)
+                .append(identityPrincipalId, that.identityPrincipalId)
+                .append(identityType, that.identityType)
+                .append(sequenceNumber, that.sequenceNumber)
+                .append(sizeBytes, that.sizeBytes)
+                .append(streamViewType, that.streamViewType)
+                .append(approximateCreationDateTime, that.approximateCreationDateTime)
+                .append(keys, that.keys)
+                .append(oldImage, that.oldImage)
+                .append(newImage, that.newImage)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(eventId)
+                .append(eventName)
+                .append(sequenceNumber)
+                .append(keys)
+                .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBStreamRecord{" +
+                "eventId='" + eventId + '\'' +
+                ", eventName='" + eventName + '\'' +
+                ", identityPrincipalId='" + identityPrincipalId + '\'' +
+                ", identityType='" + identityType + '\'' +
+                ", sequenceNumber='" + sequenceNumber + '\'' +
+                ", sizeBytes=" + sizeBytes +
+                ", streamViewType='" + streamViewType + '\'' +
+                ", approximateCreationDateTime=" + approximateCreationDateTime +
+                ", keys=" + keys +
+                ", oldImage=" + oldImage +
+                ", newImage=" + newImage +
+                '}';
+    }
+}
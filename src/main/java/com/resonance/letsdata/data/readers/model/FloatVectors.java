@@ -0,0 +1,181 @@
+package com.resonance.letsdata.data.readers.model;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A document's vectors (friendlyName to vector) as primitive floats. Each vector is a read only FloatBuffer view - typically a slice of one contiguous float[] that holds the
+ * vectors of a whole inference batch - so a 768 dimension vector costs 3 KB instead of the ~16 KB of a boxed Double[].
+ *
+ *      float[] batch = ...;    // the inference response, vectors back to back
+ *      FloatVectors vectors = FloatVectors.builder()
+ *              .put("PageTitle", batch, 0, 768)
+ *              .put("PageText", batch, 768, 768)
+ *              .build();
+ *
+ * The views are only valid while the batch buffer is not reused - the reader does not reuse the buffer before constructVectorDoc returns, handlers that keep vectors past the call
+ * should copy them (copyVector).
+ */
+public class FloatVectors {
+    private static final FloatVectors EMPTY = new FloatVectors(Collections.<String, FloatBuffer>emptyMap());
+
+    private final Map<String, FloatBuffer> vectors;
+
+    private FloatVectors(Map<String, FloatBuffer> vectors) {
+        this.vectors = vectors;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static FloatVectors empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Adapts the boxed vectors map - the vectors are copied into one contiguous float[]
+     * @param vectorsMap - the friendlyName to boxed vector map
+     * @return - the float vectors
+     */
+    public static FloatVectors fromBoxedMap(Map<String, Double[]> vectorsMap) {
+        int totalLength = 0;
+        for (Double[] vector : vectorsMap.values()) {
+            totalLength += vector.length;
+        }
+        float[] batch = new float[totalLength];
+        Builder builder = builder();
+        int offset = 0;
+        for (Map.Entry<String, Double[]> entry : vectorsMap.entrySet()) {
+            Double[] vector = entry.getValue();
+            for (int i = 0; i < vector.length; i++) {
+                batch[offset + i] = vector[i].floatValue();
+            }
+            builder.put(entry.getKey(), batch, offset, vector.length);
+            offset += vector.length;
+        }
+        return builder.build();
+    }
+
+    /**
+     * The vector names, in insertion order
+     * @return - the friendly names
+     */
+    public Set<String> getNames() {
+        return vectors.keySet();
+    }
+
+    public int size() {
+        return vectors.size();
+    }
+
+    public boolean contains(String name) {
+        return vectors.containsKey(name);
+    }
+
+    /**
+     * The vector as a read only view
+     * @param name - the friendly name
+     * @return - the vector (position 0, limit the dimension), null if there is no vector with the name
+     */
+    public FloatBuffer getVector(String name) {
+        FloatBuffer vector = vectors.get(name);
+        return vector == null ? null : vector.duplicate();
+    }
+
+    /**
+     * The vector's dimension
+     * @param name - the friendly name
+     * @return - the dimension, -1 if there is no vector with the name
+     */
+    public int getDimension(String name) {
+        FloatBuffer vector = vectors.get(name);
+        return vector == null ? -1 : vector.remaining();
+    }
+
+    /**
+     * Copies the vector to a new float[]
+     * @param name - the friendly name
+     * @return - the vector copy, null if there is no vector with the name
+     */
+    public float[] copyVector(String name) {
+        FloatBuffer vector = vectors.get(name);
+        if (vector == null) {
+            return null;
+        }
+        float[] copy = new float[vector.remaining()];
+        vector.duplicate().get(copy);
+        return copy;
+    }
+
+    /**
+     * The boxed vectors map that constructVectorDoc(DocumentInterface, Map) receives - allocates a Double per dimension, for compatibility only
+     * @return - the friendlyName to boxed vector map
+     */
+    public Map<String, Double[]> toBoxedMap() {
+        Map<String, Double[]> vectorsMap = new LinkedHashMap<>();
+        for (Map.Entry<String, FloatBuffer> entry : vectors.entrySet()) {
+            FloatBuffer vector = entry.getValue();
+            Double[] boxed = new Double[vector.remaining()];
+            for (int i = 0; i < boxed.length; i++) {
+                boxed[i] = (double) vector.get(vector.position() + i);
+            }
+            vectorsMap.put(entry.getKey(), boxed);
+        }
+        return vectorsMap;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FloatVectors{");
+        boolean first = true;
+        for (Map.Entry<String, FloatBuffer> entry : vectors.entrySet()) {
+            sb.append(first ? "" : ", ").append(entry.getKey()).append("[").append(entry.getValue().remaining()).append("]");
+            first = false;
+        }
+        return sb.append('}').toString();
+    }
+
+    public static class Builder {
+        private final Map<String, FloatBuffer> vectors = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a vector that is a view of the array's range (not copied)
+         * @param name - the friendly name
+         * @param array - the array, typically the batch buffer
+         * @param offset - the vector's start in the array
+         * @param dimension - the vector's dimension
+         * @return - the builder
+         */
+        public Builder put(String name, float[] array, int offset, int dimension) {
+            ValidationUtils.validateAssertCondition(name != null && array != null, "name and array should not be null");
+            ValidationUtils.validateAssertCondition(offset >= 0 && dimension >= 0 && offset + dimension <= array.length, "vector range is out of the array bounds", offset, dimension, array.length);
+            vectors.put(name, FloatBuffer.wrap(array, offset, dimension).slice().asReadOnlyBuffer());
+            return this;
+        }
+
+        /**
+         * Adds a vector that is a view of the buffer's remaining floats (not copied)
+         * @param name - the friendly name
+         * @param vector - the vector
+         * @return - the builder
+         */
+        public Builder put(String name, FloatBuffer vector) {
+            ValidationUtils.validateAssertCondition(name != null && vector != null, "name and vector should not be null");
+            vectors.put(name, vector.slice().asReadOnlyBuffer());
+            return this;
+        }
+
+        public FloatVectors build() {
+            return new FloatVectors(Collections.unmodifiableMap(new LinkedHashMap<>(vectors)));
+        }
+    }
+}
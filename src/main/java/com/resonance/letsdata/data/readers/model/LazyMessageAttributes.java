@@ -0,0 +1,75 @@
+package com.resonance.letsdata.data.readers.model;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Queue message attributes that are decoded on first access. The reader constructs the attributes with a decoder over the receive response's raw attributes - handlers that never
+ * read the attributes never run the decoder, handlers that do read them run it once per message.
+ *
+ * The class is not thread safe for the first access - a message is handled by a single handler call at a time.
+ */
+public class LazyMessageAttributes {
+    public static final LazyMessageAttributes EMPTY = new LazyMessageAttributes(Collections.<String, String>emptyMap());
+
+    private Supplier<Map<String, String>> decoder;
+    private Map<String, String> attributes;
+
+    /**
+     * Lazy attributes - the decoder is called on the first access
+     * @param decoder - decodes the raw attributes to a name to value map
+     */
+    public LazyMessageAttributes(Supplier<Map<String, String>> decoder) {
+        ValidationUtils.validateAssertCondition(decoder != null, "decoder should not be null");
+        this.decoder = decoder;
+    }
+
+    /**
+     * Attributes that are already decoded
+     * @param attributes - the name to value map
+     */
+    public LazyMessageAttributes(Map<String, String> attributes) {
+        ValidationUtils.validateAssertCondition(attributes != null, "attributes should not be null");
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * The attribute's value
+     * @param name - the attribute name
+     * @return - the value, null if the message does not have the attribute
+     */
+    public String get(String name) {
+        return asMap().get(name);
+    }
+
+    /**
+     * The attributes as a read only map, decoding them if they have not been decoded yet
+     * @return - the attributes
+     */
+    public Map<String, String> asMap() {
+        if (attributes == null) {
+            Map<String, String> decoded = decoder.get();
+            attributes = decoded == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(decoded);
+            decoder = null;
+        }
+        return attributes;
+    }
+
+    /**
+     * Whether the attributes have been decoded
+     * @return - true if decoded
+     */
+    public boolean isDecoded() {
+        return attributes != null;
+    }
+
+    @Override
+    public String toString() {
+        return "LazyMessageAttributes{" +
+                (attributes != null ? "attributes=" + attributes : "decoded=false") +
+                '}';
+    }
+}
@@ -0,0 +1,98 @@
+package com.resonance.letsdata.data.readers.model;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A queue message from an SQS receive batch with a byte oriented body and lazily decoded attributes.
+ *
+ * The body is a read only buffer - it may be a view over the reader's receive buffer and is only valid for the duration of the handler call, copy it if it needs to be retained.
+ * Handlers that need the body as a String call getBodyAsString (decoded on each call), handlers whose producers send base64 encoded binary bodies call decodeBase64Body,
+ * which decodes straight from the body bytes without a String round trip.
+ */
+public class QueueMessage {
+    private final String messageId;
+    private final String messageGroupId;
+    private final String messageDeduplicationId;
+    private final LazyMessageAttributes messageAttributes;
+    private final ByteBuffer body;
+
+    public QueueMessage(String messageId, String messageGroupId, String messageDeduplicationId, LazyMessageAttributes messageAttributes, ByteBuffer body) {
+        ValidationUtils.validateAssertCondition(messageId != null && body != null, "messageId and body should not be null");
+        this.messageId = messageId;
+        this.messageGroupId = messageGroupId;
+        this.messageDeduplicationId = messageDeduplicationId;
+        this.messageAttributes = messageAttributes == null ? LazyMessageAttributes.EMPTY : messageAttributes;
+        this.body = body.isReadOnly() ? body : body.asReadOnlyBuffer();
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * The message group id, null for standard queue messages
+     * @return - the message group id
+     */
+    public String getMessageGroupId() {
+        return messageGroupId;
+    }
+
+    /**
+     * The message deduplication id, null for standard queue messages
+     * @return - the message deduplication id
+     */
+    public String getMessageDeduplicationId() {
+        return messageDeduplicationId;
+    }
+
+    public LazyMessageAttributes getMessageAttributes() {
+        return messageAttributes;
+    }
+
+    /**
+     * The message body's utf-8 bytes
+     * @return - a read only view of the body
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    /**
+     * The message body's length in bytes
+     * @return - the body length
+     */
+    public int getBodyLength() {
+        return body.remaining();
+    }
+
+    /**
+     * Decodes the message body as a utf-8 String
+     * @return - the message body
+     */
+    public String getBodyAsString() {
+        return StandardCharsets.UTF_8.decode(body.duplicate()).toString();
+    }
+
+    /**
+     * Decodes a base64 encoded message body to its binary contents
+     * @return - the decoded body
+     */
+    public ByteBuffer decodeBase64Body() {
+        return Base64.getDecoder().decode(body.duplicate());
+    }
+
+    @Override
+    public String toString() {
+        return "QueueMessage{" +
+                "messageId='" + messageId + '\'' +
+                ", messageGroupId='" + messageGroupId + '\'' +
+                ", messageDeduplicationId='" + messageDeduplicationId + '\'' +
+                ", messageAttributes=" + messageAttributes +
+                ", bodyLength=" + body.remaining() +
+                '}';
+    }
+}
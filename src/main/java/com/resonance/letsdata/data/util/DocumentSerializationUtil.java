@@ -0,0 +1,142 @@
+package com.resonance.letsdata.data.util;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utf-8 serialization helpers for the DocumentInterface byte serialization methods, and the pooled buffers that the writers serialize documents into.
+ *
+ * The writers serialize each document into a per thread buffer that is reused across documents instead of allocating a String and a byte[] per document:
+ *
+ *      ByteBuffer bytes = DocumentSerializationUtil.serializeToPooledBuffer(document);
+ *      // copy bytes to the destination request (Kinesis PutRecords, S3 part, DynamoDB item) before serializing the next document on this thread
+ *
+ * The returned ByteBuffer is a view of the thread's pooled buffer and is only valid until the next serializeToPooledBuffer call on the same thread.
+ */
+public class DocumentSerializationUtil {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSerializationUtil.class);
+
+    /**
+     * Pooled buffers that grow larger than this are not retained after use so that one large document does not pin memory for the lifetime of the thread
+     */
+    public static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private static final ThreadLocal<CharsetEncoder> UTF8_ENCODER = new ThreadLocal<CharsetEncoder>() {
+        @Override
+        protected CharsetEncoder initialValue() {
+            return StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    };
+
+    private static final ThreadLocal<PooledByteArrayOutputStream> POOLED_BUFFER = new ThreadLocal<PooledByteArrayOutputStream>() {
+        @Override
+        protected PooledByteArrayOutputStream initialValue() {
+            return new PooledByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * Encodes the string as utf-8 directly into the buffer without an intermediate byte array
+     * @param value - the string to encode
+     * @param buffer - the destination buffer
+     * @return - the number of bytes written, 0 for a null value, or -1 if the buffer does not have enough remaining space (the buffer position is left unchanged in this case)
+     */
+    public static int encodeUtf8(String value, ByteBuffer buffer) {
+        if (value == null) {
+            return 0;
+        }
+        int startPosition = buffer.position();
+        CharsetEncoder encoder = UTF8_ENCODER.get();
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(value), buffer, true);
+        if (!result.isOverflow()) {
+            result = encoder.flush(buffer);
+        }
+        if (result.isOverflow()) {
+            buffer.position(startPosition);
+            return -1;
+        }
+        return buffer.position() - startPosition;
+    }
+
+    /**
+     * The exact utf-8 encoded length of the string (as encoded by String.getBytes(UTF_8)), computed without encoding it
+     * @param value - the string
+     * @return - the utf-8 length in bytes, 0 for null
+     */
+    public static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = value.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch >= 0x80) {
+                if (ch < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // 4 byte sequence for the surrogate pair (2 chars)
+                    bytes += 2;
+                    i++;
+                } else if (Character.isSurrogate(ch)) {
+                    // an unpaired surrogate is encoded as the '?' replacement (1 byte)
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Serializes the document into the calling thread's pooled buffer using the document's serializeTo(OutputStream) method
+     * @param document - the document to serialize
+     * @return - a read only view of the serialized bytes, valid until the next call on the same thread
+     */
+    public static ByteBuffer serializeToPooledBuffer(DocumentInterface document) {
+        PooledByteArrayOutputStream pooledBuffer = POOLED_BUFFER.get();
+        pooledBuffer.reset();
+        try {
+            document.serializeTo(pooledBuffer);
+        } catch (IOException ex) {
+            logger.error("exception serializing document to the pooled buffer - documentId: {}", document.getDocumentId(), ex);
+            throw new RuntimeException("exception serializing document to the pooled buffer", ex);
+        }
+        ByteBuffer view = pooledBuffer.view();
+        if (pooledBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            // hand out the oversized buffer but do not keep it for the next document
+            POOLED_BUFFER.remove();
+        }
+        return view;
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its internal buffer so that the contents can be handed out as a ByteBuffer view without the toByteArray copy
+     */
+    private static class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+        PooledByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.resonance.letsdata.data.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks on a shared executor such that tasks with the same key run serially in submission order while tasks with different keys run concurrently.
+ *
+ * Each key with queued tasks has a lane - the lane is scheduled on the executor when its first task is queued, runs its queued tasks one at a time and is removed once it drains.
+ * A lane yields the executor thread after maxTasksPerRun tasks (it is re-scheduled at the back of the executor's queue) so that a hot key cannot starve the other keys.
+ *
+ * Exceptions thrown by tasks are logged and do not stop the lane - callers that need the outcome should capture it in the task (for example by completing a future).
+ *
+ * @param <K> - the key type, must have value based equals and hashCode
+ */
+public class KeyedSerialExecutor<K> {
+    private static final Logger logger = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+    private static final int DEFAULT_MAX_TASKS_PER_RUN = 64;
+
+    private final Executor executor;
+    private final int maxTasksPerRun;
+    private final ConcurrentHashMap<K, Lane> lanes = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(Executor executor) {
+        this(executor, DEFAULT_MAX_TASKS_PER_RUN);
+    }
+
+    public KeyedSerialExecutor(Executor executor, int maxTasksPerRun) {
+        ValidationUtils.validateAssertCondition(executor != null, "executor should not be null");
+        ValidationUtils.validateAssertCondition(maxTasksPerRun > 0, "maxTasksPerRun should be positive", maxTasksPerRun);
+        this.executor = executor;
+        this.maxTasksPerRun = maxTasksPerRun;
+    }
+
+    /**
+     * Queues the task on the key's lane. The task runs after all the previously queued tasks for the key have completed.
+     * @param key - the ordering key
+     * @param task - the task
+     * @throws RejectedExecutionException if the executor rejects the key's lane, the task is not queued in that case. Tasks that other threads queued on the rejected lane
+     * in the meantime are run on the calling thread.
+     */
+    public void execute(K key, Runnable task) {
+        ValidationUtils.validateAssertCondition(key != null && task != null, "key and task should not be null");
+        // a lane is in the map if and only if it is scheduled on the executor, so the lane that creates the mapping is the one to schedule
+        boolean[] created = new boolean[1];
+        Lane lane = lanes.compute(key, (k, current) -> {
+            if (current == null) {
+                current = new Lane(k);
+                created[0] = true;
+            }
+            current.tasks.add(task);
+            return current;
+        });
+        if (created[0]) {
+            try {
+                executor.execute(lane);
+            } catch (RejectedExecutionException ex) {
+                // other threads may have queued tasks on the lane since it was created - they rely on this lane being scheduled, so only this task (the lane's first) is
+                // removed and the lane is drained inline if it has other tasks, the same as a rejected re-schedule
+                boolean[] hasOtherTasks = new boolean[1];
+                lanes.computeIfPresent(key, (k, current) -> {
+                    if (current != lane) {
+                        return current;
+                    }
+                    lane.tasks.pollFirst();
+                    hasOtherTasks[0] = !lane.tasks.isEmpty();
+                    return hasOtherTasks[0] ? lane : null;
+                });
+                if (hasOtherTasks[0]) {
+                    logger.warn("keyed serial executor lane schedule was rejected, draining the tasks queued by other threads inline - key: {}", key);
+                    lane.drain();
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * The number of keys that have queued or running tasks
+     * @return - the active lane count
+     */
+    public int getActiveLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Whether the key has queued or running tasks
+     * @param key - the ordering key
+     * @return - true if the key's lane is active
+     */
+    public boolean isActive(K key) {
+        return lanes.containsKey(key);
+    }
+
+    private Runnable nextTask(Lane lane) {
+        Runnable[] next = new Runnable[1];
+        lanes.computeIfPresent(lane.key, (k, current) -> {
+            if (current != lane) {
+                return current;
+            }
+            next[0] = lane.tasks.poll();
+            return next[0] == null ? null : lane;
+        });
+        return next[0];
+    }
+
+    private class Lane implements Runnable {
+        private final K key;
+        // guarded by the lanes map's per key compute lock
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        private Lane(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < maxTasksPerRun; i++) {
+                Runnable task = nextTask(this);
+                if (task == null) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    logger.error("keyed serial executor task failed - key: {}", key, ex);
+                }
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                // the executor is shutting down, drain the lane on this thread rather than dropping the queued tasks
+                logger.warn("keyed serial executor lane re-schedule was rejected, draining the lane inline - key: {}", key);
+                drain();
+            }
+        }
+
+        /**
+         * Runs the lane's tasks on the calling thread until the lane is empty (and removed)
+         */
+        private void drain() {
+            Runnable task;
+            while ((task = nextTask(this)) != null) {
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    logger.error("keyed serial executor task failed - key: {}", key, ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.resonance.letsdata.data.util;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoder;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.execution.vectorized.OffHeapColumnVector;
+import org.apache.spark.sql.execution.vectorized.OnHeapColumnVector;
+import org.apache.spark.sql.execution.vectorized.WritableColumnVector;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.sql.vectorized.ColumnarBatch;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Encodes DocumentInterface streams directly into Spark rows with a declared schema - the bridge between the document oriented readers (SingleFileParser, KinesisRecordReader etc.)
+ * and the Spark path (SparkUtils, SparkMapperInterface), without serializing the documents to json and re-inferring the schema.
+ *
+ * The schema is declared as a list of columns, each with an extractor from the document:
+ *
+ *      SparkDocumentEncoder encoder = SparkDocumentEncoder.builder()
+ *              .documentIdColumn("id")
+ *              .stringColumn("language", doc -&gt; ((WebCrawlDoc) doc).getLanguage())
+ *              .longColumn("contentLength", doc -&gt; ((WebCrawlDoc) doc).getContentLength())
+ *              .build();
+ *
+ *      Dataset&lt;Row&gt; df = encoder.toDataset(spark, documentsRDD);
+ *      df.groupBy("language").agg(functions.percentile_approx(df.col("contentLength"), functions.lit(0.9), functions.lit(10000)));
+ *
+ * toDataset encodes each partition of the documents RDD lazily on the executors (the rows are never collected on the driver), so the encoder is serialized to the executors - the
+ * column extractors should then be serializable, for example lambdas cast to (ToLongFunction&lt;DocumentInterface&gt; &amp; Serializable). toRows encodes a partition's documents
+ * lazily for use in custom mapPartitions transformations.
+ *
+ * toColumnarBatch fills Spark's writable column vectors (on or off heap) directly from the extractors - long and double columns are written without boxing.
+ *
+ * Values of numeric object columns are converted to the column's type (for example an Integer value of a LongType column is written as a Long) in both the row and columnar paths.
+ *
+ * Instances are immutable and safe to share across threads.
+ */
+public class SparkDocumentEncoder implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final StructType schema;
+    private final Column[] columns;
+
+    private SparkDocumentEncoder(List<Column> columns) {
+        this.columns = columns.toArray(new Column[0]);
+        StructField[] fields = new StructField[this.columns.length];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = DataTypes.createStructField(this.columns[i].name, this.columns[i].dataType, this.columns[i].nullable);
+        }
+        this.schema = DataTypes.createStructType(fields);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The declared schema
+     * @return - the struct type for the columns
+     */
+    public StructType getSchema() {
+        return schema;
+    }
+
+    /**
+     * The Spark row encoder for the declared schema, for Dataset map / mapPartitions transformations that produce document rows
+     * @return - the row encoder
+     */
+    public Encoder<Row> encoder() {
+        return Encoders.row(schema);
+    }
+
+    /**
+     * Encodes the document as a row of the declared schema
+     * @param document - the document
+     * @return - the row
+     */
+    public Row toRow(DocumentInterface document) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = columns[i].extract(document);
+        }
+        return RowFactory.create(values);
+    }
+
+    /**
+     * Lazily encodes the documents as rows of the declared schema - each row is encoded when it is consumed, for use in mapPartitions transformations
+     * @param documents - the documents
+     * @return - the rows iterator
+     */
+    public Iterator<Row> toRows(final Iterator<? extends DocumentInterface> documents) {
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                return toRow(documents.next());
+            }
+        };
+    }
+
+    /**
+     * Encodes the documents into a Dataset with the declared schema. The partitions are encoded lazily on the executors (see toRows), the encoder and its extractors are
+     * serialized to the executors.
+     * @param spark - the spark session
+     * @param documents - the documents
+     * @return - the dataset
+     */
+    public <T extends DocumentInterface> Dataset<Row> toDataset(SparkSession spark, JavaRDD<T> documents) {
+        JavaRDD<Row> rows = documents.mapPartitions(new EncodePartitionFunction<T>(this));
+        return spark.createDataFrame(rows, schema);
+    }
+
+    /**
+     * Encodes up to capacity documents from the iterator into a columnar batch. The caller owns the batch and must close it to release the (off heap) column memory.
+     * @param documents - the documents, consumed up to capacity
+     * @param capacity - the maximum number of rows in the batch
+     * @param offHeap - whether the column vectors are allocated off heap
+     * @return - the columnar batch, with numRows set to the number of documents encoded
+     */
+    public ColumnarBatch toColumnarBatch(Iterator<? extends DocumentInterface> documents, int capacity, boolean offHeap) {
+        ValidationUtils.validateAssertCondition(capacity > 0, "columnar batch capacity should be positive");
+        WritableColumnVector[] vectors = offHeap ? OffHeapColumnVector.allocateColumns(capacity, schema) : OnHeapColumnVector.allocateColumns(capacity, schema);
+        int rowId = 0;
+        try {
+            while (rowId < capacity && documents.hasNext()) {
+                DocumentInterface document = documents.next();
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i].write(vectors[i], rowId, document);
+                }
+                rowId++;
+            }
+        } catch (RuntimeException ex) {
+            for (WritableColumnVector vector : vectors) {
+                vector.close();
+            }
+            throw ex;
+        }
+        ColumnarBatch batch = new ColumnarBatch(vectors);
+        batch.setNumRows(rowId);
+        return batch;
+    }
+
+    private static class EncodePartitionFunction<T extends DocumentInterface> implements FlatMapFunction<Iterator<T>, Row> {
+        private static final long serialVersionUID = 1L;
+        private final SparkDocumentEncoder encoder;
+
+        EncodePartitionFunction(SparkDocumentEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public Iterator<Row> call(Iterator<T> documents) {
+            return encoder.toRows(documents);
+        }
+    }
+
+    private enum ColumnKind {
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    private static class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String name;
+        private final DataType dataType;
+        private final boolean nullable;
+        private final ColumnKind kind;
+        private final ToLongFunction<DocumentInterface> longExtractor;
+        private final ToDoubleFunction<DocumentInterface> doubleExtractor;
+        private final Function<DocumentInterface, ?> objectExtractor;
+
+        Column(String name, DataType dataType, boolean nullable, ColumnKind kind, ToLongFunction<DocumentInterface> longExtractor, ToDoubleFunction<DocumentInterface> doubleExtractor, Function<DocumentInterface, ?> objectExtractor) {
+            this.name = name;
+            this.dataType = dataType;
+            this.nullable = nullable;
+            this.kind = kind;
+            this.longExtractor = longExtractor;
+            this.doubleExtractor = doubleExtractor;
+            this.objectExtractor = objectExtractor;
+        }
+
+        Object extract(DocumentInterface document) {
+            switch (kind) {
+                case LONG: {
+                    return longExtractor.applyAsLong(document);
+                }
+                case DOUBLE: {
+                    return doubleExtractor.applyAsDouble(document);
+                }
+                default: {
+                    return coerce(objectExtractor.apply(document));
+                }
+            }
+        }
+
+        /**
+         * Converts numeric values to the column type's java type - the conversion is shared by the row and columnar paths
+         */
+        Object coerce(Object value) {
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                if (dataType == DataTypes.IntegerType) {
+                    return number.intValue();
+                } else if (dataType == DataTypes.LongType) {
+                    return number.longValue();
+                } else if (dataType == DataTypes.DoubleType) {
+                    return number.doubleValue();
+                } else if (dataType == DataTypes.FloatType) {
+                    return number.floatValue();
+                } else if (dataType == DataTypes.ShortType) {
+                    return number.shortValue();
+                } else if (dataType == DataTypes.ByteType) {
+                    return number.byteValue();
+                }
+            }
+            return value;
+        }
+
+        void write(WritableColumnVector vector, int rowId, DocumentInterface document) {
+            switch (kind) {
+                case LONG: {
+                    vector.putLong(rowId, longExtractor.applyAsLong(document));
+                    return;
+                }
+                case DOUBLE: {
+                    vector.putDouble(rowId, doubleExtractor.applyAsDouble(document));
+                    return;
+                }
+                default: {
+                    Object value = coerce(objectExtractor.apply(document));
+                    if (value == null) {
+                        vector.putNull(rowId);
+                    } else if (dataType == DataTypes.StringType) {
+                        vector.putByteArray(rowId, ((String) value).getBytes(StandardCharsets.UTF_8));
+                    } else if (dataType == DataTypes.BinaryType) {
+                        vector.putByteArray(rowId, (byte[]) value);
+                    } else if (dataType == DataTypes.BooleanType) {
+                        vector.putBoolean(rowId, (Boolean) value);
+                    } else if (dataType == DataTypes.IntegerType) {
+                        vector.putInt(rowId, ((Number) value).intValue());
+                    } else if (dataType == DataTypes.LongType) {
+                        vector.putLong(rowId, ((Number) value).longValue());
+                    } else if (dataType == DataTypes.DoubleType) {
+                        vector.putDouble(rowId, ((Number) value).doubleValue());
+                    } else if (dataType == DataTypes.FloatType) {
+                        vector.putFloat(rowId, ((Number) value).floatValue());
+                    } else if (dataType == DataTypes.ShortType) {
+                        vector.putShort(rowId, ((Number) value).shortValue());
+                    } else if (dataType == DataTypes.ByteType) {
+                        vector.putByte(rowId, ((Number) value).byteValue());
+                    } else {
+                        throw new RuntimeException("columnar encoding is not supported for column type - column: " + name + ", type: " + dataType);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The (serializable) extractors of the document's own fields
+     */
+    private enum DocumentFieldExtractor implements Function<DocumentInterface, Object> {
+        DOCUMENT_ID {
+            @Override
+            public Object apply(DocumentInterface document) {
+                return document.getDocumentId();
+            }
+        },
+        RECORD_TYPE {
+            @Override
+            public Object apply(DocumentInterface document) {
+                return document.getRecordType();
+            }
+        },
+        PARTITION_KEY {
+            @Override
+            public Object apply(DocumentInterface document) {
+                return document.getPartitionKey();
+            }
+        },
+        SERIALIZED_BYTES {
+            @Override
+            public Object apply(DocumentInterface document) {
+                return document.serializedBytes();
+            }
+        }
+    }
+
+    private static class MetadataExtractor implements Function<DocumentInterface, Object>, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String metadataKey;
+
+        MetadataExtractor(String metadataKey) {
+            this.metadataKey = metadataKey;
+        }
+
+        @Override
+        public Object apply(DocumentInterface document) {
+            Map<String, Object> metadata = document.getDocumentMetadata();
+            return metadata == null ? null : metadata.get(metadataKey);
+        }
+    }
+
+    public static class Builder {
+        private final List<Column> columns = new ArrayList<>();
+        private final Set<String> columnNames = new LinkedHashSet<>();
+
+        private Builder() {
+        }
+
+        /**
+         * A non null long column
+         */
+        public Builder longColumn(String name, ToLongFunction<DocumentInterface> extractor) {
+            ValidationUtils.validateAssertCondition(extractor != null, "column extractor should not be null", name);
+            return add(new Column(name, DataTypes.LongType, false, ColumnKind.LONG, extractor, null, null));
+        }
+
+        /**
+         * A non null double column
+         */
+        public Builder doubleColumn(String name, ToDoubleFunction<DocumentInterface> extractor) {
+            ValidationUtils.validateAssertCondition(extractor != null, "column extractor should not be null", name);
+            return add(new Column(name, DataTypes.DoubleType, false, ColumnKind.DOUBLE, null, extractor, null));
+        }
+
+        public Builder stringColumn(String name, Function<DocumentInterface, String> extractor) {
+            return objectColumn(name, DataTypes.StringType, extractor);
+        }
+
+        public Builder binaryColumn(String name, Function<DocumentInterface, byte[]> extractor) {
+            return objectColumn(name, DataTypes.BinaryType, extractor);
+        }
+
+        /**
+         * A nullable column of the data type - the extractor's values should be of the data type's external java type (String, Long, Double, Integer, Boolean, byte[] ...)
+         */
+        public Builder objectColumn(String name, DataType dataType, Function<DocumentInterface, ?> extractor) {
+            ValidationUtils.validateAssertCondition(extractor != null, "column extractor should not be null", name);
+            return add(new Column(name, dataType, true, ColumnKind.OBJECT, null, null, extractor));
+        }
+
+        public Builder documentIdColumn(String name) {
+            return objectColumn(name, DataTypes.StringType, DocumentFieldExtractor.DOCUMENT_ID);
+        }
+
+        public Builder recordTypeColumn(String name) {
+            return objectColumn(name, DataTypes.StringType, DocumentFieldExtractor.RECORD_TYPE);
+        }
+
+        public Builder partitionKeyColumn(String name) {
+            return objectColumn(name, DataTypes.StringType, DocumentFieldExtractor.PARTITION_KEY);
+        }
+
+        /**
+         * A column with the document's serialized bytes
+         */
+        public Builder serializedBytesColumn(String name) {
+            return objectColumn(name, DataTypes.BinaryType, DocumentFieldExtractor.SERIALIZED_BYTES);
+        }
+
+        /**
+         * A column from a document metadata field
+         */
+        public Builder metadataColumn(String name, String metadataKey, DataType dataType) {
+            return objectColumn(name, dataType, new MetadataExtractor(metadataKey));
+        }
+
+        public SparkDocumentEncoder build() {
+            ValidationUtils.validateAssertCondition(!columns.isEmpty(), "spark document encoder should have at least one column");
+            return new SparkDocumentEncoder(columns);
+        }
+
+        private Builder add(Column column) {
+            ValidationUtils.validateAssertCondition(column.name != null && column.dataType != null, "column name and type should not be null");
+            ValidationUtils.validateAssertCondition(columnNames.add(column.name), "column is already declared", column.name);
+            columns.add(column);
+            return this;
+        }
+    }
+}
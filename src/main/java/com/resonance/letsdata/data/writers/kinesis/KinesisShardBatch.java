@@ -0,0 +1,103 @@
+package com.resonance.letsdata.data.writers.kinesis;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sealed batch of documents for a single Kinesis shard - the records of one PutRecords request.
+ * Each entry carries the partition key hash that was computed when the document was batched, the writer can pass it as the ExplicitHashKey.
+ */
+public class KinesisShardBatch {
+    private final String shardId;
+    private final List<Entry> entries;
+    private final long estimatedRequestBytes;
+    private final long createdAtMillis;
+
+    KinesisShardBatch(String shardId, List<Entry> entries, long estimatedRequestBytes, long createdAtMillis) {
+        this.shardId = shardId;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.estimatedRequestBytes = estimatedRequestBytes;
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    /**
+     * The shard the batch's documents hash to, null for documents that fell in a gap of the shard map
+     * @return - the shardId
+     */
+    public String getShardId() {
+        return shardId;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * The estimated PutRecords request size - the sum of the estimated document sizes and the partition key sizes
+     * @return - the estimated request size in bytes
+     */
+    public long getEstimatedRequestBytes() {
+        return estimatedRequestBytes;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisShardBatch{" +
+                "shardId='" + shardId + '\'' +
+                ", records=" + entries.size() +
+                ", estimatedRequestBytes=" + estimatedRequestBytes +
+                ", createdAtMillis=" + createdAtMillis +
+                '}';
+    }
+
+    public static class Entry {
+        private final DocumentInterface document;
+        private final String partitionKey;
+        private final long hashKeyHigh;
+        private final long hashKeyLow;
+        private final int estimatedRecordBytes;
+
+        Entry(DocumentInterface document, String partitionKey, long hashKeyHigh, long hashKeyLow, int estimatedRecordBytes) {
+            this.document = document;
+            this.partitionKey = partitionKey;
+            this.hashKeyHigh = hashKeyHigh;
+            this.hashKeyLow = hashKeyLow;
+            this.estimatedRecordBytes = estimatedRecordBytes;
+        }
+
+        public DocumentInterface getDocument() {
+            return document;
+        }
+
+        public String getPartitionKey() {
+            return partitionKey;
+        }
+
+        /**
+         * The partition key's MD5 hash key as a decimal string, for the PutRecords ExplicitHashKey
+         * @return - the explicit hash key
+         */
+        public String getExplicitHashKey() {
+            return KinesisShardMap.toExplicitHashKey(hashKeyHigh, hashKeyLow);
+        }
+
+        /**
+         * The estimated record size - the estimated document size plus the partition key size
+         * @return - the estimated record size in bytes
+         */
+        public int getEstimatedRecordBytes() {
+            return estimatedRecordBytes;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.resonance.letsdata.data.writers.kinesis;
+
+import com.resonance.letsdata.data.documents.interfaces.BufferBackedDocInterface;
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import com.resonance.letsdata.data.util.DocumentSerializationUtil;
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Groups output documents by their target Kinesis shard and seals the groups into PutRecords sized batches.
+ *
+ * For each document, the shard hash (MD5 of getPartitionKey()) is computed once and the document is appended to its shard's open batch. A batch is sealed and handed to the sink when:
+ *
+ *      * adding the document would exceed the records per request limit (default 500)
+ *      * adding the document would exceed the bytes per request limit (default 5 MiB)
+ *      * the batch has been open longer than the linger time (checked on add and by flushExpired)
+ *      * flushAll is called (at checkpoint / task end)
+ *
+ * Sizes use the document's estimateSerializedSize() plus the partition key length - its default counts the utf-8 bytes of serialize() without encoding the document. Documents whose estimated record size is over the bytes per record limit (default 1 MiB)
+ * are not batched - add returns false and the writer should send the document to the error destination.
+ *
+ *      KinesisShardBatcher batcher = new KinesisShardBatcher(shardMap, 200, new Consumer&lt;KinesisShardBatch&gt;() {
+ *          public void accept(KinesisShardBatch batch) {
+ *              // build and send one PutRecords request for the batch
+ *          }
+ *      });
+ *
+ * The batcher is thread safe. The sink is called outside the batcher's lock, on a thread that added to or flushed the shard. A shard's batches are handed to the sink one at a
+ * time, in the order they were sealed (a per shard emit lock), so a PutRecords writer keeps the per shard record order. If the sink throws, the shard's remaining sealed batches
+ * are emitted by the next add / flush of the shard.
+ */
+public class KinesisShardBatcher {
+    public static final int DEFAULT_MAX_RECORDS_PER_REQUEST = 500;
+    public static final int DEFAULT_MAX_BYTES_PER_RECORD = 1024 * 1024;
+    public static final int DEFAULT_MAX_BYTES_PER_REQUEST = 5 * 1024 * 1024;
+
+    private final KinesisShardMap shardMap;
+    private final int maxRecordsPerRequest;
+    private final int maxBytesPerRecord;
+    private final long maxBytesPerRequest;
+    private final long lingerMillis;
+    private final Consumer<KinesisShardBatch> sink;
+    private final LongSupplier clock;
+
+    // one open batch per shard, the last slot is for documents that fall in a gap of the shard map
+    private final OpenBatch[] openBatches;
+
+    public KinesisShardBatcher(KinesisShardMap shardMap, long lingerMillis, Consumer<KinesisShardBatch> sink) {
+        this(shardMap, DEFAULT_MAX_RECORDS_PER_REQUEST, DEFAULT_MAX_BYTES_PER_RECORD, DEFAULT_MAX_BYTES_PER_REQUEST, lingerMillis, sink, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return System.currentTimeMillis();
+            }
+        });
+    }
+
+    public KinesisShardBatcher(KinesisShardMap shardMap, int maxRecordsPerRequest, int maxBytesPerRecord, long maxBytesPerRequest, long lingerMillis, Consumer<KinesisShardBatch> sink, LongSupplier clock) {
+        ValidationUtils.validateAssertCondition(shardMap != null && sink != null && clock != null, "shardMap, sink and clock should not be null");
+        ValidationUtils.validateAssertCondition(maxRecordsPerRequest > 0 && maxBytesPerRecord > 0 && maxBytesPerRequest >= maxBytesPerRecord, "batch limits are invalid", maxRecordsPerRequest, maxBytesPerRecord, maxBytesPerRequest);
+        ValidationUtils.validateAssertCondition(lingerMillis >= 0, "lingerMillis should not be negative");
+        this.shardMap = shardMap;
+        this.maxRecordsPerRequest = maxRecordsPerRequest;
+        this.maxBytesPerRecord = maxBytesPerRecord;
+        this.maxBytesPerRequest = maxBytesPerRequest;
+        this.lingerMillis = lingerMillis;
+        this.sink = sink;
+        this.clock = clock;
+        this.openBatches = new OpenBatch[shardMap.getShardCount() + 1];
+        for (int i = 0; i < openBatches.length; i++) {
+            openBatches[i] = new OpenBatch(i < shardMap.getShardCount() ? shardMap.getShardId(i) : null);
+        }
+    }
+
+    /**
+     * Adds the document to its shard's batch, sealing batches as needed.
+     * Buffer backed documents are retained (see BufferBackedDocInterface) since the batch holds them past the parse call.
+     * @param document - the document to write
+     * @return - true if the document was batched, false if its estimated record size is over the bytes per record limit
+     */
+    public boolean add(DocumentInterface document) {
+        String partitionKey = document.getPartitionKey();
+        ValidationUtils.validateAssertCondition(partitionKey != null, "document partition key should not be null for kinesis writes", document.getDocumentId());
+        int recordBytes = document.estimateSerializedSize() + DocumentSerializationUtil.utf8Length(partitionKey);
+        if (recordBytes > maxBytesPerRecord) {
+            return false;
+        }
+        if (document instanceof BufferBackedDocInterface) {
+            document = ((BufferBackedDocInterface) document).retain();
+        }
+
+        long[] hashKey = KinesisShardMap.hashKey(partitionKey);
+        int shardIndex = shardMap.shardIndex(hashKey[0], hashKey[1]);
+        int slot = shardIndex < 0 ? openBatches.length - 1 : shardIndex;
+        KinesisShardBatch.Entry entry = new KinesisShardBatch.Entry(document, partitionKey, hashKey[0], hashKey[1], recordBytes);
+
+        boolean sealed = false;
+        long now = clock.getAsLong();
+        OpenBatch batch = openBatches[slot];
+        synchronized (this) {
+            if (!batch.isEmpty() && (batch.entries.size() + 1 > maxRecordsPerRequest || batch.bytes + recordBytes > maxBytesPerRequest)) {
+                batch.seal();
+                sealed = true;
+            }
+            batch.add(entry, now);
+            if (batch.entries.size() >= maxRecordsPerRequest || batch.bytes >= maxBytesPerRequest || now - batch.createdAtMillis >= lingerMillis) {
+                batch.seal();
+                sealed = true;
+            }
+        }
+        if (sealed) {
+            emit(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Seals and emits the batches that have been open longer than the linger time. The writer should call this periodically so that batches on quiet shards are sent.
+     * @return - the number of batches emitted
+     */
+    public int flushExpired() {
+        long now = clock.getAsLong();
+        List<OpenBatch> sealed = new ArrayList<>();
+        synchronized (this) {
+            for (OpenBatch batch : openBatches) {
+                if (!batch.isEmpty() && now - batch.createdAtMillis >= lingerMillis) {
+                    batch.seal();
+                    sealed.add(batch);
+                }
+            }
+        }
+        for (OpenBatch batch : sealed) {
+            emit(batch);
+        }
+        return sealed.size();
+    }
+
+    /**
+     * Seals and emits all the open batches. Returns after all the sealed batches (including those being emitted by other threads) have been handed to the sink.
+     * @return - the number of batches sealed by this call
+     */
+    public int flushAll() {
+        int sealed = 0;
+        synchronized (this) {
+            for (OpenBatch batch : openBatches) {
+                if (!batch.isEmpty()) {
+                    batch.seal();
+                    sealed++;
+                }
+            }
+        }
+        for (OpenBatch batch : openBatches) {
+            emit(batch);
+        }
+        return sealed;
+    }
+
+    /**
+     * The number of documents in open batches
+     * @return - the pending document count
+     */
+    public synchronized int getPendingDocumentCount() {
+        int count = 0;
+        for (OpenBatch batch : openBatches) {
+            count += batch.entries.size();
+        }
+        return count;
+    }
+
+    /**
+     * Hands the shard's sealed batches to the sink in seal order - the emit lock serializes the sink calls for the shard
+     */
+    private void emit(OpenBatch batch) {
+        synchronized (batch.emitLock) {
+            while (true) {
+                KinesisShardBatch next;
+                synchronized (this) {
+                    next = batch.sealedBatches.poll();
+                }
+                if (next == null) {
+                    return;
+                }
+                sink.accept(next);
+            }
+        }
+    }
+
+    private static class OpenBatch {
+        private final String shardId;
+        private final List<KinesisShardBatch.Entry> entries = new ArrayList<>();
+        // sealed batches waiting to be emitted, guarded by the batcher's lock
+        private final Deque<KinesisShardBatch> sealedBatches = new ArrayDeque<>();
+        private final Object emitLock = new Object();
+        private long bytes = 0;
+        private long createdAtMillis = 0;
+
+        OpenBatch(String shardId) {
+            this.shardId = shardId;
+        }
+
+        boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        void add(KinesisShardBatch.Entry entry, long now) {
+            if (entries.isEmpty()) {
+                createdAtMillis = now;
+            }
+            entries.add(entry);
+            bytes += entry.getEstimatedRecordBytes();
+        }
+
+        void seal() {
+            sealedBatches.add(new KinesisShardBatch(shardId, entries, bytes, createdAtMillis));
+            entries.clear();
+            bytes = 0;
+        }
+    }
+}
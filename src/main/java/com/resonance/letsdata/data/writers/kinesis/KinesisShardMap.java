@@ -0,0 +1,182 @@
+package com.resonance.letsdata.data.writers.kinesis;
+
+import com.resonance.letsdata.data.util.ValidationUtils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Maps Kinesis partition keys to the stream's shards.
+ *
+ * Kinesis assigns a record to a shard by the MD5 hash of its partition key, interpreted as an unsigned 128 bit integer, and the shard whose [startingHashKey, endingHashKey] range
+ * contains the hash. This class computes the same hash and looks up the shard with a binary search over the sorted shard ranges. The 128 bit hashes are held as (high, low) long
+ * pairs and compared unsigned, so the lookup does not allocate.
+ *
+ * The shard ranges come from the stream's ListShards response (open shards only):
+ *
+ *      KinesisShardMap shardMap = new KinesisShardMap(Arrays.asList(
+ *              new KinesisShardMap.ShardRange("shardId-000000000000", "0", "170141183460469231731687303715884105727"),
+ *              new KinesisShardMap.ShardRange("shardId-000000000001", "170141183460469231731687303715884105728", "340282366920938463463374607431768211455")));
+ *
+ * Instances are immutable and safe to share across threads.
+ */
+public class KinesisShardMap {
+    private static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+    private static final BigInteger LONG_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException("MD5 message digest is not available", ex);
+            }
+        }
+    };
+
+    private final String[] shardIds;
+    private final long[] startHigh;
+    private final long[] startLow;
+    private final long[] endHigh;
+    private final long[] endLow;
+
+    public KinesisShardMap(List<ShardRange> shardRanges) {
+        ValidationUtils.validateAssertCondition(shardRanges != null && !shardRanges.isEmpty(), "shard map should have at least one shard");
+        List<ShardRange> sorted = new ArrayList<>(shardRanges);
+        Collections.sort(sorted, new Comparator<ShardRange>() {
+            @Override
+            public int compare(ShardRange lhs, ShardRange rhs) {
+                return lhs.startingHashKey.compareTo(rhs.startingHashKey);
+            }
+        });
+
+        int count = sorted.size();
+        this.shardIds = new String[count];
+        this.startHigh = new long[count];
+        this.startLow = new long[count];
+        this.endHigh = new long[count];
+        this.endLow = new long[count];
+        for (int i = 0; i < count; i++) {
+            ShardRange range = sorted.get(i);
+            if (i > 0) {
+                ValidationUtils.validateAssertCondition(range.startingHashKey.compareTo(sorted.get(i - 1).endingHashKey) > 0, "shard hash key ranges should not overlap", sorted.get(i - 1).shardId, range.shardId);
+            }
+            shardIds[i] = range.shardId;
+            startHigh[i] = range.startingHashKey.shiftRight(64).longValue();
+            startLow[i] = range.startingHashKey.and(LONG_MASK).longValue();
+            endHigh[i] = range.endingHashKey.shiftRight(64).longValue();
+            endLow[i] = range.endingHashKey.and(LONG_MASK).longValue();
+        }
+    }
+
+    /**
+     * Computes the Kinesis hash key for the partition key - the MD5 digest of the utf-8 partition key as an unsigned 128 bit integer
+     * @param partitionKey - the partition key
+     * @return - the hash key as a (high, low) long pair
+     */
+    public static long[] hashKey(String partitionKey) {
+        ValidationUtils.validateAssertCondition(partitionKey != null, "partition key should not be null");
+        byte[] digest = MD5.get().digest(partitionKey.getBytes(StandardCharsets.UTF_8));
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (digest[i] & 0xFF);
+            low = (low << 8) | (digest[i + 8] & 0xFF);
+        }
+        return new long[]{high, low};
+    }
+
+    /**
+     * The decimal string form of the hash key, as used for the Kinesis ExplicitHashKey
+     * @param high - the high 64 bits of the hash key
+     * @param low - the low 64 bits of the hash key
+     * @return - the hash key as a decimal string
+     */
+    public static String toExplicitHashKey(long high, long low) {
+        return new BigInteger(Long.toUnsignedString(high)).shiftLeft(64).or(new BigInteger(Long.toUnsignedString(low))).toString();
+    }
+
+    /**
+     * The index of the shard whose hash key range contains the hash key
+     * @param high - the high 64 bits of the hash key
+     * @param low - the low 64 bits of the hash key
+     * @return - the shard index or -1 if no shard contains the hash key (a gap in the shard map, for example during a reshard)
+     */
+    public int shardIndex(long high, long low) {
+        int lo = 0;
+        int hi = shardIds.length - 1;
+        int candidate = -1;
+        // find the last shard whose start is <= hash
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareUnsigned(startHigh[mid], startLow[mid], high, low) <= 0) {
+                candidate = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (candidate >= 0 && compareUnsigned(high, low, endHigh[candidate], endLow[candidate]) <= 0) {
+            return candidate;
+        }
+        return -1;
+    }
+
+    public int getShardCount() {
+        return shardIds.length;
+    }
+
+    public String getShardId(int shardIndex) {
+        return shardIds[shardIndex];
+    }
+
+    private static int compareUnsigned(long lhsHigh, long lhsLow, long rhsHigh, long rhsLow) {
+        int result = Long.compareUnsigned(lhsHigh, rhsHigh);
+        return result != 0 ? result : Long.compareUnsigned(lhsLow, rhsLow);
+    }
+
+    /**
+     * A shard and its hash key range (inclusive), the hash keys are decimal strings as returned by ListShards
+     */
+    public static class ShardRange {
+        private final String shardId;
+        private final BigInteger startingHashKey;
+        private final BigInteger endingHashKey;
+
+        public ShardRange(String shardId, String startingHashKey, String endingHashKey) {
+            ValidationUtils.validateAssertCondition(shardId != null && startingHashKey != null && endingHashKey != null, "shard range fields should not be null");
+            this.shardId = shardId;
+            this.startingHashKey = new BigInteger(startingHashKey);
+            this.endingHashKey = new BigInteger(endingHashKey);
+            ValidationUtils.validateAssertCondition(this.startingHashKey.signum() >= 0 && this.endingHashKey.compareTo(MAX_HASH_KEY) <= 0 && this.startingHashKey.compareTo(this.endingHashKey) <= 0, "shard hash key range is invalid", shardId, startingHashKey, endingHashKey);
+        }
+
+        public String getShardId() {
+            return shardId;
+        }
+
+        public String getStartingHashKey() {
+            return startingHashKey.toString();
+        }
+
+        public String getEndingHashKey() {
+            return endingHashKey.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "ShardRange{" +
+                    "shardId='" + shardId + '\'' +
+                    ", startingHashKey=" + startingHashKey +
+                    ", endingHashKey=" + endingHashKey +
+                    '}';
+        }
+    }
+}
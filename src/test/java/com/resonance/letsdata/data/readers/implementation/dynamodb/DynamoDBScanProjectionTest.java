@@ -0,0 +1,104 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DynamoDBScanProjectionTest {
+
+    @Test
+    public void testRenderUsesPlaceholdersAndProjectsTheKeys() {
+        DynamoDBScanProjection projection = DynamoDBScanProjection.builder()
+                .attributes("title", "size")
+                .filter(DynamoDBScanFilter.and(
+                        DynamoDBScanFilter.greaterThan("size", 10),
+                        DynamoDBScanFilter.or(DynamoDBScanFilter.beginsWith("title", "a"), DynamoDBScanFilter.not(DynamoDBScanFilter.attributeExists("deleted")))))
+                .build();
+
+        DynamoDBScanProjection.RenderedExpression rendered = projection.render(Arrays.asList("pk", "sk"));
+        assertEquals("#n0, #n1, #n2, #n3", rendered.getProjectionExpression());
+        assertEquals("(#n3 > :v0 AND (begins_with(#n2, :v1) OR NOT (attribute_exists(#n4))))", rendered.getFilterExpression());
+        Map<String, String> expectedNames = new HashMap<>();
+        expectedNames.put("#n0", "pk");
+        expectedNames.put("#n1", "sk");
+        expectedNames.put("#n2", "title");
+        expectedNames.put("#n3", "size");
+        expectedNames.put("#n4", "deleted");
+        assertEquals(expectedNames, rendered.getExpressionAttributeNames());
+        assertEquals(10, rendered.getExpressionAttributeValues().get(":v0"));
+        assertEquals("a", rendered.getExpressionAttributeValues().get(":v1"));
+    }
+
+    @Test
+    public void testFilterOnlyProjectionReadsWholeItems() {
+        DynamoDBScanProjection projection = DynamoDBScanProjection.builder().filter(DynamoDBScanFilter.equalTo("status", "active")).build();
+        DynamoDBScanProjection.RenderedExpression rendered = projection.render(Arrays.asList("pk"));
+        assertNull(rendered.getProjectionExpression());
+        assertEquals("#n0 = :v0", rendered.getFilterExpression());
+
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("pk", "a");
+        item.put("status", "active");
+        item.put("body", "text");
+        assertEquals(item, projection.project(item, Arrays.asList("pk")));
+    }
+
+    @Test
+    public void testFilterComparesValuesByType() {
+        assertTrue(DynamoDBScanFilter.greaterThan("size", 10).matches(item("size", 10.5)));
+        assertTrue(DynamoDBScanFilter.equalTo("size", 10L).matches(item("size", new java.math.BigDecimal("10.0"))));
+        assertFalse(DynamoDBScanFilter.greaterThan("size", 10).matches(item("size", "11")));
+        assertFalse(DynamoDBScanFilter.greaterThan("size", 10).matches(item("other", 11)));
+        assertTrue(DynamoDBScanFilter.lessThan("bin", ByteBuffer.wrap(new byte[]{(byte) 0x80})).matches(item("bin", ByteBuffer.wrap(new byte[]{0x7F, 0x01}))));
+        assertTrue(DynamoDBScanFilter.beginsWith("title", "ab").matches(item("title", "abc")));
+        assertFalse(DynamoDBScanFilter.beginsWith("title", "ab").matches(item("title", "ba")));
+        assertTrue(DynamoDBScanFilter.not(DynamoDBScanFilter.attributeExists("deleted")).matches(item("title", "abc")));
+    }
+
+    @Test
+    public void testScanEnforcesTheProjectionAndFilter() {
+        InMemoryDynamoDBTable table = new InMemoryDynamoDBTable("docs", "pk", "sk");
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("pk", "doc-" + i);
+            item.put("sk", i);
+            item.put("title", (i % 2 == 0 ? "a" : "b") + i);
+            item.put("size", i);
+            item.put("body", "not projected");
+            table.putItem(item);
+        }
+        DynamoDBScanProjection projection = DynamoDBScanProjection.builder()
+                .attributes("title")
+                .filter(DynamoDBScanFilter.and(DynamoDBScanFilter.beginsWith("title", "a"), DynamoDBScanFilter.greaterThan("size", 5)))
+                .build();
+
+        InMemoryDynamoDBTable.ScanPage page = table.scan(0, 1, null, 100, projection);
+        // filtered items are scanned (and billed) but not returned
+        assertEquals(20, page.getScannedCount());
+        assertNull(page.getLastEvaluatedKey());
+        Set<Object> returnedKeys = new HashSet<>();
+        for (Map<String, Object> item : page.getItems()) {
+            assertEquals(new HashSet<>(Arrays.asList("pk", "sk", "title")), item.keySet());
+            assertTrue(((String) item.get("title")).startsWith("a"));
+            returnedKeys.add(item.get("sk"));
+        }
+        assertEquals(new HashSet<Object>(Arrays.asList(6, 8, 10, 12, 14, 16, 18)), returnedKeys);
+    }
+
+    private static Map<String, Object> item(String name, Object value) {
+        Map<String, Object> item = new HashMap<>();
+        item.put(name, value);
+        return item;
+    }
+}
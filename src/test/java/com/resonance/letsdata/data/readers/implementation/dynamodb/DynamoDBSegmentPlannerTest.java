@@ -0,0 +1,149 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DynamoDBSegmentPlannerTest {
+    private final long[] now = new long[1];
+
+    @Test
+    public void testWorkersStartOnContiguousRanges() {
+        DynamoDBSegmentPlanner planner = newPlanner(16, 4);
+        assertEquals(0, planner.nextSegment(0));
+        assertEquals(4, planner.nextSegment(1));
+        assertEquals(8, planner.nextSegment(2));
+        assertEquals(12, planner.nextSegment(3));
+        assertEquals(1, planner.nextSegment(0));
+        assertEquals(2, planner.getRemainingSegmentCount(0));
+        assertEquals(0, planner.getStolenSegmentCount());
+    }
+
+    @Test
+    public void testIdleWorkerSplitsTheSlowestWorkersRange() {
+        DynamoDBSegmentPlanner planner = newPlanner(16, 2);
+        // worker 0 is stuck on its first segment while worker 1 scans its whole range
+        assertEquals(0, planner.nextSegment(0));
+        for (int segment = 8; segment < 16; segment++) {
+            assertEquals(segment, planner.nextSegment(1));
+            now[0] += 1;
+        }
+        now[0] += 100;
+        // worker 0 has 7 unassigned segments [1, 8) and a current segment - worker 1 takes the second half
+        assertEquals(4, planner.nextSegment(1));
+        assertEquals(4, planner.getStolenSegmentCount());
+        assertEquals(3, planner.getRemainingSegmentCount(0));
+        assertEquals(3, planner.getRemainingSegmentCount(1));
+        assertEquals(1, planner.nextSegment(0));
+    }
+
+    @Test
+    public void testBusyWorkerWithOneQueuedSegmentIsSplit() {
+        DynamoDBSegmentPlanner planner = newPlanner(3, 2);
+        // worker 0 has [0, 1), worker 1 has [1, 3)
+        assertEquals(1, planner.nextSegment(1));
+        assertEquals(0, planner.nextSegment(0));
+        now[0] += 10;
+        // worker 1 is busy on segment 1 with segment 2 queued - worker 0 takes it
+        assertEquals(2, planner.nextSegment(0));
+        assertEquals(-1, planner.nextSegment(0));
+        assertEquals(-1, planner.nextSegment(1));
+        assertTrue(planner.isComplete());
+    }
+
+    @Test
+    public void testWorkerThatHasNotStartedKeepsItsLastSegment() {
+        DynamoDBSegmentPlanner planner = newPlanner(3, 3);
+        assertEquals(0, planner.nextSegment(0));
+        now[0] += 10;
+        // workers 1 and 2 have not started and have a single segment each - they are not split
+        assertEquals(-1, planner.nextSegment(0));
+        assertEquals(0, planner.getStolenSegmentCount());
+        assertFalse(planner.isComplete());
+        assertEquals(1, planner.nextSegment(1));
+        assertEquals(2, planner.nextSegment(2));
+        assertEquals(-1, planner.nextSegment(1));
+        assertEquals(-1, planner.nextSegment(2));
+        assertTrue(planner.isComplete());
+    }
+
+    @Test
+    public void testThrottledPagesBackOffExponentially() {
+        DynamoDBSegmentPlanner planner = newPlanner(4, 1);
+        planner.nextSegment(0);
+        assertEquals(10, planner.recordPage(0, 0, 0, true));
+        assertEquals(20, planner.recordPage(0, 0, 0, true));
+        assertEquals(40, planner.recordPage(0, 0, 0, true));
+        assertEquals(80, planner.recordPage(0, 0, 0, true));
+        assertEquals(100, planner.recordPage(0, 0, 0, true));
+        assertEquals(100, planner.recordPage(0, 0, 0, true));
+        assertEquals(0, planner.recordPage(0, 10, 1000, false));
+        assertEquals(10, planner.recordPage(0, 0, 0, true));
+        assertEquals(7, planner.getThrottleCount(0));
+        assertEquals(10, planner.getScannedCount(0));
+        assertEquals(1000, planner.getScannedBytes(0));
+    }
+
+    @Test
+    public void testScanOfInMemoryTableReadsEveryItemOnce() {
+        InMemoryDynamoDBTable table = new InMemoryDynamoDBTable("docs", "pk", null);
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("pk", "doc-" + i);
+            item.put("body", i % 10 == 0 ? "large item body, large item body, large item body" : "small");
+            table.putItem(item);
+        }
+        int workerCount = 3;
+        DynamoDBSegmentPlanner planner = newPlanner(64, workerCount);
+        int[] currentSegment = new int[workerCount];
+        Set<Integer> scannedSegments = new HashSet<>();
+        Set<Object> scannedKeys = new HashSet<>();
+        for (int worker = 0; worker < workerCount; worker++) {
+            currentSegment[worker] = planner.nextSegment(worker);
+        }
+        // round robin the workers, worker 0 is 5x slower than the others
+        boolean active = true;
+        while (active) {
+            active = false;
+            for (int worker = 0; worker < workerCount; worker++) {
+                int segment = currentSegment[worker];
+                if (segment < 0) {
+                    continue;
+                }
+                active = true;
+                assertTrue("segment scanned twice", scannedSegments.add(segment));
+                Map<String, Object> lastEvaluatedKey = null;
+                do {
+                    InMemoryDynamoDBTable.ScanPage page = table.scan(segment, planner.getTotalSegments(), lastEvaluatedKey, 5, null);
+                    for (Map<String, Object> item : page.getItems()) {
+                        assertTrue("item scanned twice", scannedKeys.add(item.get("pk")));
+                    }
+                    assertEquals(0, planner.recordPage(worker, page.getScannedCount(), page.getScannedBytes(), false));
+                    lastEvaluatedKey = page.getLastEvaluatedKey();
+                } while (lastEvaluatedKey != null);
+                now[0] += worker == 0 ? 5 : 1;
+                currentSegment[worker] = planner.nextSegment(worker);
+            }
+        }
+        assertTrue(planner.isComplete());
+        assertEquals(64, scannedSegments.size());
+        assertEquals(1000, scannedKeys.size());
+        assertTrue(planner.getStolenSegmentCount() > 0);
+        long scannedCount = 0;
+        for (int worker = 0; worker < workerCount; worker++) {
+            scannedCount += planner.getScannedCount(worker);
+        }
+        assertEquals(1000, scannedCount);
+    }
+
+    private DynamoDBSegmentPlanner newPlanner(int totalSegments, int workerCount) {
+        return new DynamoDBSegmentPlanner(totalSegments, workerCount, () -> now[0], 10, 100);
+    }
+}
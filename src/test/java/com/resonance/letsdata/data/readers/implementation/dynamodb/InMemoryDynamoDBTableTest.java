@@ -0,0 +1,95 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodb;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryDynamoDBTableTest {
+
+    @Test
+    public void testSegmentsPartitionTheItemsByPartitionKeyHash() {
+        InMemoryDynamoDBTable table = newTable(500);
+        int totalSegments = 7;
+        Set<Object> seen = new HashSet<>();
+        for (int segment = 0; segment < totalSegments; segment++) {
+            InMemoryDynamoDBTable.ScanPage page = table.scan(segment, totalSegments, null, 1000, null);
+            for (Map<String, Object> item : page.getItems()) {
+                assertEquals(segment, InMemoryDynamoDBTable.segmentOf(item.get("pk"), totalSegments));
+                assertTrue("item is in more than one segment", seen.add(item.get("pk")));
+            }
+        }
+        assertEquals(500, seen.size());
+    }
+
+    @Test
+    public void testSegmentOfIsInRangeAndNumericKeysAreCanonical() {
+        for (int i = 0; i < 1000; i++) {
+            long hash = InMemoryDynamoDBTable.partitionKeyHash("key-" + i);
+            assertTrue(hash >= 0 && hash < (1L << 32));
+            int segment = InMemoryDynamoDBTable.segmentOf("key-" + i, 13);
+            assertTrue(segment >= 0 && segment < 13);
+        }
+        // numbers hash by value, like DynamoDB
+        assertEquals(InMemoryDynamoDBTable.partitionKeyHash(1), InMemoryDynamoDBTable.partitionKeyHash(new BigDecimal("1.00")));
+        assertEquals(InMemoryDynamoDBTable.partitionKeyHash(0), InMemoryDynamoDBTable.partitionKeyHash(new BigDecimal("0.0")));
+    }
+
+    @Test
+    public void testScanPagesResumeFromTheLastEvaluatedKey() {
+        InMemoryDynamoDBTable table = newTable(100);
+        Set<Object> seen = new HashSet<>();
+        Map<String, Object> lastEvaluatedKey = null;
+        int pages = 0;
+        do {
+            InMemoryDynamoDBTable.ScanPage page = table.scan(1, 2, lastEvaluatedKey, 7, null);
+            assertTrue(page.getScannedCount() <= 7);
+            assertTrue(page.getScannedBytes() > 0 || page.getScannedCount() == 0);
+            for (Map<String, Object> item : page.getItems()) {
+                assertTrue("item returned twice", seen.add(item.get("pk")));
+            }
+            lastEvaluatedKey = page.getLastEvaluatedKey();
+            pages++;
+        } while (lastEvaluatedKey != null);
+        assertEquals(table.scan(1, 2, null, 1000, null).getItems().size(), seen.size());
+        assertTrue(pages > 1);
+    }
+
+    @Test
+    public void testPutReplacesAndDeleteRemovesByKey() {
+        InMemoryDynamoDBTable table = new InMemoryDynamoDBTable("docs", "pk", null);
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("pk", "a");
+        item.put("value", 1);
+        table.putItem(item);
+        item.put("value", 2);
+        table.putItem(item);
+        assertEquals(1, table.getItemCount());
+        InMemoryDynamoDBTable.ScanPage page = table.scan(0, 1, null, 10, null);
+        assertEquals(2, page.getItems().get(0).get("value"));
+        assertNull(page.getLastEvaluatedKey());
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("pk", "a");
+        assertTrue(table.deleteItem(keys));
+        assertEquals(0, table.getItemCount());
+    }
+
+    private static InMemoryDynamoDBTable newTable(int itemCount) {
+        InMemoryDynamoDBTable table = new InMemoryDynamoDBTable("docs", "pk", null);
+        for (int i = 0; i < itemCount; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("pk", "doc-" + i);
+            item.put("size", i);
+            table.putItem(item);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,139 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.resonance.letsdata.data.readers.implementation.dynamodb.LazyDynamoDBItem;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DynamoDBImageDeltaTest {
+
+    @Test
+    public void testRecursesIntoMapsAndLists() {
+        DynamoDBImageDelta delta = DynamoDBImageDelta.compute(oldImage(), newImage());
+        assertEquals(changes(
+                "MODIFIED profile.address.city",
+                "REMOVED profile.address.zip",
+                "ADDED profile.age",
+                "MODIFIED tags[1]",
+                "REMOVED tags[2]",
+                "ADDED extra"), toStrings(delta));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("profile", "tags", "extra")), delta.getChangedAttributeNames());
+        assertTrue(delta.getRemovedAttributeNames().isEmpty());
+        Map<String, Object> changedValues = delta.getChangedValues(newImage());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("profile", "tags", "extra")), changedValues.keySet());
+        assertEquals(true, changedValues.get("extra"));
+    }
+
+    @Test
+    public void testMaxDepthReportsChangesAtTheAncestorPath() {
+        assertEquals(changes("MODIFIED profile", "MODIFIED tags", "ADDED extra"), toStrings(DynamoDBImageDelta.compute(oldImage(), newImage(), 1)));
+        assertEquals(changes("MODIFIED profile.address", "ADDED profile.age", "MODIFIED tags[1]", "REMOVED tags[2]", "ADDED extra"),
+                toStrings(DynamoDBImageDelta.compute(oldImage(), newImage(), 2)));
+    }
+
+    @Test
+    public void testNumbersAreComparedByValue() {
+        Map<String, Object> oldImage = new LinkedHashMap<>();
+        oldImage.put("decimal", new BigDecimal("1.0"));
+        oldImage.put("long", 5L);
+        oldImage.put("nested", map("count", new BigDecimal("10.00")));
+        oldImage.put("changed", new BigDecimal("1"));
+        Map<String, Object> newImage = new LinkedHashMap<>();
+        newImage.put("decimal", new BigDecimal("1"));
+        newImage.put("long", 5);
+        newImage.put("nested", map("count", 10));
+        newImage.put("changed", new BigDecimal("1.5"));
+
+        assertEquals(changes("MODIFIED changed"), toStrings(DynamoDBImageDelta.compute(oldImage, newImage)));
+        // numbers below the max depth are compared by value as well
+        assertEquals(changes("MODIFIED changed"), toStrings(DynamoDBImageDelta.compute(oldImage, newImage, 1)));
+    }
+
+    @Test
+    public void testUnchangedLazyAttributesAreNotDecoded() {
+        String unchanged = "\"id\": {\"S\": \"order-1\"}, \"items\": {\"L\": [{\"M\": {\"sku\": {\"S\": \"a\"}, \"qty\": {\"N\": \"1\"}}}]}, \"total\": {\"N\": \"10\"}";
+        LazyDynamoDBItem<JsonElement> oldItem = LazyDynamoDBItem.ofDynamoDBJson(JsonParser.parseString("{" + unchanged + ", \"status\": {\"S\": \"NEW\"}}").getAsJsonObject());
+        LazyDynamoDBItem<JsonElement> newItem = LazyDynamoDBItem.ofDynamoDBJson(JsonParser.parseString("{" + unchanged + ", \"status\": {\"S\": \"SHIPPED\"}}").getAsJsonObject());
+
+        DynamoDBImageDelta delta = DynamoDBImageDelta.compute(oldItem, newItem);
+        assertEquals(changes("MODIFIED status"), toStrings(delta));
+        assertEquals(1, oldItem.getDecodedAttributeCount());
+        assertEquals(1, newItem.getDecodedAttributeCount());
+
+        LazyDynamoDBItem<JsonElement> sameItem = LazyDynamoDBItem.ofDynamoDBJson(JsonParser.parseString("{" + unchanged + "}").getAsJsonObject());
+        LazyDynamoDBItem<JsonElement> rewrittenItem = LazyDynamoDBItem.ofDynamoDBJson(JsonParser.parseString("{" + unchanged + "}").getAsJsonObject());
+        assertTrue(DynamoDBImageDelta.compute(sameItem, rewrittenItem).isEmpty());
+        assertEquals(0, sameItem.getDecodedAttributeCount());
+        assertEquals(0, rewrittenItem.getDecodedAttributeCount());
+    }
+
+    @Test
+    public void testInsertAndRemoveImages() {
+        DynamoDBImageDelta insert = DynamoDBImageDelta.compute(null, map("id", "1"));
+        assertEquals(changes("ADDED id"), toStrings(insert));
+
+        DynamoDBImageDelta remove = DynamoDBImageDelta.compute(map("id", "1"), null);
+        assertEquals(changes("REMOVED id"), toStrings(remove));
+        assertEquals(new HashSet<>(Arrays.asList("id")), remove.getRemovedAttributeNames());
+        assertTrue(remove.getChangedValues(null).isEmpty());
+        assertFalse(remove.isEmpty());
+    }
+
+    private static Map<String, Object> oldImage() {
+        Map<String, Object> address = new LinkedHashMap<>();
+        address.put("city", "Seattle");
+        address.put("zip", "98101");
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("name", "a");
+        profile.put("address", address);
+        Map<String, Object> image = new LinkedHashMap<>();
+        image.put("id", new BigDecimal("1"));
+        image.put("profile", profile);
+        image.put("tags", Arrays.asList("a", "b", "c"));
+        return image;
+    }
+
+    private static Map<String, Object> newImage() {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("name", "a");
+        profile.put("address", map("city", "Portland"));
+        profile.put("age", new BigDecimal("3"));
+        Map<String, Object> image = new LinkedHashMap<>();
+        image.put("id", new BigDecimal("1"));
+        image.put("profile", profile);
+        image.put("tags", Arrays.asList("a", "B"));
+        image.put("extra", true);
+        return image;
+    }
+
+    private static Map<String, Object> map(String name, Object value) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(name, value);
+        return map;
+    }
+
+    private static List<String> changes(String... changes) {
+        return Arrays.asList(changes);
+    }
+
+    private static List<String> toStrings(DynamoDBImageDelta delta) {
+        List<String> changes = new ArrayList<>();
+        for (DynamoDBImageDelta.AttributeChange change : delta.getChanges()) {
+            changes.add(change.toString());
+        }
+        return changes;
+    }
+}
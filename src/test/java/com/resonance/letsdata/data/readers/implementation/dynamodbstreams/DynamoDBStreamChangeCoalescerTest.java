@@ -0,0 +1,149 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.resonance.letsdata.data.readers.model.DynamoDBStreamRecord;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DynamoDBStreamChangeCoalescerTest {
+
+    @Test
+    public void testCompareSequenceNumbers() {
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("9", "10") < 0);
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("10", "9") > 0);
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("0100", "99") > 0);
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("000000000000000000099", "100") < 0);
+        assertEquals(0, DynamoDBStreamChangeCoalescer.compareSequenceNumbers("000123", "123"));
+        assertEquals(0, DynamoDBStreamChangeCoalescer.compareSequenceNumbers("0", "000"));
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("0", "1") < 0);
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("111111111111111111111", "1111111111111111111110") < 0);
+        assertTrue(DynamoDBStreamChangeCoalescer.compareSequenceNumbers("400000000000000000001", "400000000000000000002") < 0);
+    }
+
+    @Test
+    public void testChangesAreOrderedNumericallyBySequenceNumber() {
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer();
+        // key-1's last record (100) is after key-2's (20) and key-3's (99) - a string sort would order "100" before "20" and "99"
+        coalescer.add(record("INSERT", "8", "key-1"));
+        coalescer.add(record("INSERT", "9", "key-2"));
+        coalescer.add(record("INSERT", "10", "key-3"));
+        coalescer.add(record("MODIFY", "20", "key-2"));
+        coalescer.add(record("MODIFY", "99", "key-3"));
+        coalescer.add(record("MODIFY", "100", "key-1"));
+        assertEquals(3, coalescer.getPendingKeyCount());
+        assertEquals(6, coalescer.getPendingRecordCount());
+
+        DynamoDBStreamChangeCoalescer.CoalescedBatch batch = coalescer.drain();
+        List<DynamoDBStreamChangeCoalescer.CoalescedChange> changes = batch.getChanges();
+        assertEquals(3, changes.size());
+        assertEquals("20", changes.get(0).getRecord().getSequenceNumber());
+        assertEquals("99", changes.get(1).getRecord().getSequenceNumber());
+        assertEquals("100", changes.get(2).getRecord().getSequenceNumber());
+        assertEquals("8", changes.get(2).getFirstSequenceNumber());
+        assertEquals("100", batch.getCheckpointSequenceNumber());
+        assertEquals(0, coalescer.getPendingRecordCount());
+    }
+
+    @Test
+    public void testNetEventNames() {
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer();
+        coalescer.add(record("INSERT", "1", "inserted"));
+        coalescer.add(record("MODIFY", "2", "inserted"));
+        coalescer.add(record("MODIFY", "3", "modified"));
+        coalescer.add(record("MODIFY", "4", "modified"));
+        coalescer.add(record("MODIFY", "5", "removed"));
+        coalescer.add(record("REMOVE", "6", "removed"));
+        coalescer.add(record("REMOVE", "7", "single"));
+        List<DynamoDBStreamChangeCoalescer.CoalescedChange> changes = coalescer.drain().getChanges();
+        assertEquals(4, changes.size());
+
+        DynamoDBStreamRecord inserted = changes.get(0).getRecord();
+        assertEquals("INSERT", inserted.getEventName());
+        assertNull(inserted.getOldImage());
+        assertEquals("v2", inserted.getNewImage().get("status"));
+        assertEquals(2, changes.get(0).getFoldedRecordCount());
+
+        DynamoDBStreamRecord modified = changes.get(1).getRecord();
+        assertEquals("MODIFY", modified.getEventName());
+        assertEquals("v3", modified.getOldImage().get("status"));
+        assertEquals("v4", modified.getNewImage().get("status"));
+        assertEquals("event-4", modified.getEventId());
+
+        DynamoDBStreamRecord removed = changes.get(2).getRecord();
+        assertEquals("REMOVE", removed.getEventName());
+        assertEquals("v5", removed.getOldImage().get("status"));
+        assertNull(removed.getNewImage());
+
+        assertEquals("REMOVE", changes.get(3).getRecord().getEventName());
+        assertEquals(1, changes.get(3).getFoldedRecordCount());
+    }
+
+    @Test
+    public void testCheckpointIncludesDroppedChanges() {
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer();
+        coalescer.add(record("INSERT", "1", "key-1"));
+        coalescer.add(record("MODIFY", "2", "key-2"));
+        coalescer.add(record("MODIFY", "3", "key-1"));
+        coalescer.add(record("REMOVE", "4", "key-1"));
+        DynamoDBStreamChangeCoalescer.CoalescedBatch batch = coalescer.drain();
+        assertEquals(1, batch.getChanges().size());
+        assertEquals("2", batch.getChanges().get(0).getRecord().getSequenceNumber());
+        assertEquals(1, batch.getDroppedChangeCount());
+        assertEquals(4, batch.getFoldedRecordCount());
+        // the dropped key's records are after the last change - the checkpoint still covers them
+        assertEquals("4", batch.getCheckpointSequenceNumber());
+
+        DynamoDBStreamChangeCoalescer.CoalescedBatch empty = coalescer.drain();
+        assertTrue(empty.getChanges().isEmpty());
+        assertNull(empty.getCheckpointSequenceNumber());
+    }
+
+    @Test
+    public void testWindowExpiresOnTheInjectedClock() {
+        long[] now = new long[]{1000};
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer(100, () -> now[0]);
+        assertFalse(coalescer.isWindowExpired());
+        coalescer.add(record("INSERT", "1", "key-1"));
+        now[0] = 1099;
+        coalescer.add(record("MODIFY", "2", "key-1"));
+        assertFalse(coalescer.isWindowExpired());
+        now[0] = 1100;
+        assertTrue(coalescer.isWindowExpired());
+
+        coalescer.drain();
+        assertFalse(coalescer.isWindowExpired());
+        // the next window starts at its first record
+        now[0] = 5000;
+        coalescer.add(record("MODIFY", "3", "key-1"));
+        now[0] = 5099;
+        assertFalse(coalescer.isWindowExpired());
+        now[0] = 5100;
+        assertTrue(coalescer.isWindowExpired());
+    }
+
+    @Test
+    public void testPerBatchCoalescingNeverExpires() {
+        long[] now = new long[]{0};
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer(0, () -> now[0]);
+        coalescer.add(record("INSERT", "1", "key-1"));
+        now[0] = Long.MAX_VALUE / 2;
+        assertFalse(coalescer.isWindowExpired());
+    }
+
+    private static DynamoDBStreamRecord record(String eventName, String sequenceNumber, String pk) {
+        Map<String, Object> keys = new HashMap<>();
+        keys.put("pk", pk);
+        Map<String, Object> image = new HashMap<>(keys);
+        image.put("status", "v" + sequenceNumber);
+        Map<String, Object> oldImage = "INSERT".equals(eventName) ? null : image;
+        Map<String, Object> newImage = "REMOVE".equals(eventName) ? null : image;
+        return new DynamoDBStreamRecord("event-" + sequenceNumber, eventName, null, null, sequenceNumber, 10L, "NEW_AND_OLD_IMAGES", null, keys, oldImage, newImage);
+    }
+}
@@ -0,0 +1,116 @@
+package com.resonance.letsdata.data.readers.implementation.dynamodbstreams;
+
+import com.google.gson.JsonParser;
+import com.resonance.letsdata.data.readers.implementation.dynamodb.LazyDynamoDBItem;
+import com.resonance.letsdata.data.readers.model.DynamoDBStreamRecord;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DynamoDBStreamEventFilterTest {
+
+    @Test
+    public void testRecordAndKeyConditionsAreAnded() {
+        DynamoDBStreamEventFilter filter = DynamoDBStreamEventFilter.builder()
+                .eventNames("INSERT", "MODIFY")
+                .excludeTtlDeletes()
+                .includeKeyPrefix("pk", "ORDER#")
+                .includeKeyPrefix("pk", "CART#")
+                .excludeKeyPrefix("sk", "TMP")
+                .maxSizeBytes(100)
+                .build();
+        assertTrue(filter.accept("INSERT", null, null, 10L, keys("ORDER#1", "A")));
+        assertTrue(filter.accept("MODIFY", null, null, null, keys("CART#1", "A")));
+        assertFalse(filter.accept("REMOVE", null, null, 10L, keys("ORDER#1", "A")));
+        assertFalse(filter.accept("MODIFY", DynamoDBStreamEventFilter.TTL_IDENTITY_PRINCIPAL_ID, DynamoDBStreamEventFilter.TTL_IDENTITY_TYPE, 10L, keys("ORDER#1", "A")));
+        assertFalse(filter.accept("INSERT", null, null, 101L, keys("ORDER#1", "A")));
+        assertFalse(filter.accept("INSERT", null, null, 10L, keys("USER#1", "A")));
+        assertFalse(filter.accept("INSERT", null, null, 10L, keys("ORDER#1", "TMP1")));
+        assertEquals(5, filter.getRejectedCount());
+    }
+
+    @Test
+    public void testEventNameFilterAppliesToTheNetChange() {
+        DynamoDBStreamEventFilter filter = DynamoDBStreamEventFilter.builder().eventNames("INSERT", "MODIFY").includeKeyPrefix("pk", "ORDER#").build();
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer();
+        List<DynamoDBStreamRecord> records = new ArrayList<>();
+        // ORDER#1 is inserted and removed within the window, ORDER#2 is modified and removed, USER#1 is filtered out by its key
+        records.add(record("INSERT", "1", null, keys("ORDER#1", "A")));
+        records.add(record("MODIFY", "2", null, keys("ORDER#2", "A")));
+        records.add(record("INSERT", "3", null, keys("USER#1", "A")));
+        records.add(record("REMOVE", "4", null, keys("ORDER#1", "A")));
+        records.add(record("REMOVE", "5", null, keys("ORDER#2", "A")));
+        for (DynamoDBStreamRecord record : records) {
+            if (filter.acceptKeys(record.getKeys())) {
+                coalescer.add(record);
+            }
+        }
+        DynamoDBStreamChangeCoalescer.CoalescedBatch batch = coalescer.drain();
+        // evaluating the event names per record would have coalesced ORDER#1 into an INSERT and ORDER#2 into a MODIFY of items that no longer exist
+        assertEquals(1, batch.getChanges().size());
+        DynamoDBStreamRecord netChange = batch.getChanges().get(0).getRecord();
+        assertEquals("REMOVE", netChange.getEventName());
+        assertFalse(filter.acceptChange(netChange));
+        assertEquals("5", batch.getCheckpointSequenceNumber());
+    }
+
+    @Test
+    public void testTtlDeleteExclusionAppliesToTheNetChange() {
+        DynamoDBStreamEventFilter filter = DynamoDBStreamEventFilter.builder().excludeTtlDeletes().build();
+        DynamoDBStreamChangeCoalescer coalescer = new DynamoDBStreamChangeCoalescer();
+        coalescer.add(record("MODIFY", "1", null, keys("ORDER#1", "A")));
+        coalescer.add(record("REMOVE", "2", DynamoDBStreamEventFilter.TTL_IDENTITY_PRINCIPAL_ID, keys("ORDER#1", "A")));
+        DynamoDBStreamRecord netChange = coalescer.drain().getChanges().get(0).getRecord();
+        assertEquals("REMOVE", netChange.getEventName());
+        assertFalse(filter.acceptChange(netChange));
+    }
+
+    @Test
+    public void testKeyValueTypesAreHandledTheSameForEagerAndLazyKeys() {
+        DynamoDBStreamEventFilter include = DynamoDBStreamEventFilter.builder().includeKeyPrefix("pk", "12").build();
+        DynamoDBStreamEventFilter exclude = DynamoDBStreamEventFilter.builder().excludeKeyPrefix("pk", "12").build();
+
+        Map<String, Object> eagerNumber = new HashMap<>();
+        eagerNumber.put("pk", new BigDecimal("123"));
+        Map<String, Object> lazyNumber = LazyDynamoDBItem.ofDynamoDBJson(JsonParser.parseString("{\"pk\": {\"N\": \"123\"}}").getAsJsonObject());
+        assertTrue(include.acceptKeys(eagerNumber));
+        assertTrue(include.acceptKeys(lazyNumber));
+        assertFalse(exclude.acceptKeys(eagerNumber));
+        assertFalse(exclude.acceptKeys(lazyNumber));
+
+        // binary keys never match a prefix - even when their bytes are the prefix's utf-8 bytes
+        Map<String, Object> eagerBinary = new HashMap<>();
+        eagerBinary.put("pk", ByteBuffer.wrap("123".getBytes(StandardCharsets.UTF_8)));
+        Map<String, Object> lazyBinary = LazyDynamoDBItem.ofDynamoDBJson(JsonParser.parseString("{\"pk\": {\"B\": \"MTIz\"}}").getAsJsonObject());
+        assertFalse(include.acceptKeys(eagerBinary));
+        assertFalse(include.acceptKeys(lazyBinary));
+        assertTrue(exclude.acceptKeys(eagerBinary));
+        assertTrue(exclude.acceptKeys(lazyBinary));
+    }
+
+    private static Map<String, Object> keys(String pk, String sk) {
+        Map<String, Object> keys = new HashMap<>();
+        keys.put("pk", pk);
+        keys.put("sk", sk);
+        return keys;
+    }
+
+    private static DynamoDBStreamRecord record(String eventName, String sequenceNumber, String identityPrincipalId, Map<String, Object> keys) {
+        Map<String, Object> image = new HashMap<>(keys);
+        image.put("status", "v" + sequenceNumber);
+        Map<String, Object> oldImage = "INSERT".equals(eventName) ? null : image;
+        Map<String, Object> newImage = "REMOVE".equals(eventName) ? null : image;
+        String identityType = identityPrincipalId == null ? null : DynamoDBStreamEventFilter.TTL_IDENTITY_TYPE;
+        return new DynamoDBStreamRecord("event-" + sequenceNumber, eventName, identityPrincipalId, identityType, sequenceNumber, 10L, "NEW_AND_OLD_IMAGES", null, keys, oldImage, newImage);
+    }
+}
@@ -0,0 +1,193 @@
+package com.resonance.letsdata.data.readers.implementation.kinesis;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KplDeaggregatorTest {
+    private static final byte[] KPL_MAGIC = new byte[]{(byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2};
+
+    @Test
+    public void testDeaggregateWithSharedKeyTables() throws Exception {
+        char[] large = new char[300];
+        Arrays.fill(large, 'x');
+        byte[] message = new ProtobufWriter()
+                .string(1, "pk-a")
+                .string(1, "pk-b")
+                .string(2, "170141183460469231731687303715884105728")
+                .message(3, record(0, -1, "first"))
+                .message(3, record(1, 0, "second"))
+                .message(3, record(0, 0, new String(large)))
+                // an unknown field is skipped
+                .varint(7, 42)
+                .toByteArray();
+        ByteBuffer payload = ByteBuffer.wrap(aggregate(message));
+        assertTrue(KplDeaggregator.isAggregated(payload));
+
+        List<KinesisUserRecord> userRecords = KplDeaggregator.deaggregate("outer-pk", "49590338271490256608559692538361571095921575989136588898", payload);
+        assertEquals(3, userRecords.size());
+        assertUserRecord(userRecords.get(0), "pk-a", null, 0, "first");
+        assertUserRecord(userRecords.get(1), "pk-b", "170141183460469231731687303715884105728", 1, "second");
+        assertUserRecord(userRecords.get(2), "pk-a", "170141183460469231731687303715884105728", 2, new String(large));
+        assertEquals(0, payload.position());
+        assertEquals(payload.capacity(), payload.limit());
+    }
+
+    @Test
+    public void testRecordsBeforeTheKeyTablesAreResolved() throws Exception {
+        byte[] message = new ProtobufWriter()
+                .message(3, record(1, -1, "late table"))
+                .string(1, "pk-a")
+                .string(1, "pk-b")
+                .toByteArray();
+        List<KinesisUserRecord> userRecords = KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(aggregate(message)));
+        assertEquals(1, userRecords.size());
+        assertUserRecord(userRecords.get(0), "pk-b", null, 0, "late table");
+    }
+
+    @Test
+    public void testDigestMismatchIsNotDeaggregated() throws Exception {
+        byte[] payload = aggregate(new ProtobufWriter().string(1, "pk-a").message(3, record(0, -1, "first")).toByteArray());
+        payload[payload.length - 1] ^= 0x01;
+        assertSingleRecord(payload, KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(payload)));
+    }
+
+    @Test
+    public void testTruncatedPayloadIsNotDeaggregated() throws Exception {
+        byte[] message = new ProtobufWriter().string(1, "pk-a").message(3, record(0, -1, "first")).toByteArray();
+        // the record's data field is cut short, the digest matches the truncated message
+        byte[] truncated = aggregate(Arrays.copyOf(message, message.length - 3));
+        assertSingleRecord(truncated, KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(truncated)));
+
+        // shorter than the magic and the digest
+        byte[] shortPayload = Arrays.copyOf(KPL_MAGIC, 10);
+        assertFalse(KplDeaggregator.isAggregated(ByteBuffer.wrap(shortPayload)));
+        assertSingleRecord(shortPayload, KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(shortPayload)));
+    }
+
+    @Test
+    public void testPartitionKeyIndexOutOfRangeIsNotDeaggregated() throws Exception {
+        byte[] payload = aggregate(new ProtobufWriter().string(1, "pk-a").message(3, record(5, -1, "first")).toByteArray());
+        assertSingleRecord(payload, KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(payload)));
+    }
+
+    @Test
+    public void testNonAggregatedPayloadPassesThrough() {
+        byte[] payload = "{\"id\":1,\"name\":\"a plain json record that is not aggregated\"}".getBytes(StandardCharsets.UTF_8);
+        assertFalse(KplDeaggregator.isAggregated(ByteBuffer.wrap(payload)));
+        assertSingleRecord(payload, KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(payload)));
+    }
+
+    @Test
+    public void testDataSlicesShareThePayload() throws Exception {
+        byte[] payload = aggregate(new ProtobufWriter().string(1, "pk-a").message(3, record(0, -1, "abc")).toByteArray());
+        List<KinesisUserRecord> userRecords = KplDeaggregator.deaggregate("outer-pk", "1", ByteBuffer.wrap(payload));
+        ByteBuffer data = userRecords.get(0).getData();
+        assertTrue(data.isReadOnly());
+
+        int dataOffset = indexOf(payload, "abc".getBytes(StandardCharsets.UTF_8));
+        payload[dataOffset] = 'z';
+        assertEquals("zbc", toString(data));
+    }
+
+    private static void assertUserRecord(KinesisUserRecord userRecord, String partitionKey, String explicitHashKey, long subSequenceNumber, String data) {
+        assertEquals(partitionKey, userRecord.getPartitionKey());
+        assertEquals(explicitHashKey, userRecord.getExplicitHashKey());
+        assertEquals(subSequenceNumber, userRecord.getSubSequenceNumber());
+        assertTrue(userRecord.isAggregated());
+        assertEquals(data, toString(userRecord.getData()));
+    }
+
+    private static void assertSingleRecord(byte[] payload, List<KinesisUserRecord> userRecords) {
+        assertEquals(1, userRecords.size());
+        KinesisUserRecord userRecord = userRecords.get(0);
+        assertEquals("outer-pk", userRecord.getPartitionKey());
+        assertNull(userRecord.getExplicitHashKey());
+        assertEquals(0, userRecord.getSubSequenceNumber());
+        assertFalse(userRecord.isAggregated());
+        byte[] data = new byte[userRecord.getData().remaining()];
+        userRecord.getData().duplicate().get(data);
+        assertTrue(Arrays.equals(payload, data));
+    }
+
+    private static byte[] record(int partitionKeyIndex, int explicitHashKeyIndex, String data) {
+        ProtobufWriter writer = new ProtobufWriter().varint(1, partitionKeyIndex);
+        if (explicitHashKeyIndex >= 0) {
+            writer.varint(2, explicitHashKeyIndex);
+        }
+        return writer.bytes(3, data.getBytes(StandardCharsets.UTF_8)).toByteArray();
+    }
+
+    private static byte[] aggregate(byte[] message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(KPL_MAGIC);
+        out.write(message);
+        out.write(MessageDigest.getInstance("MD5").digest(message));
+        return out.toByteArray();
+    }
+
+    private static String toString(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + target.length), target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the protobuf wire format of the KPL AggregatedRecord / Record messages
+     */
+    private static class ProtobufWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ProtobufWriter varint(int fieldNumber, long value) {
+            writeVarint((long) fieldNumber << 3);
+            writeVarint(value);
+            return this;
+        }
+
+        ProtobufWriter bytes(int fieldNumber, byte[] value) {
+            writeVarint(((long) fieldNumber << 3) | 2);
+            writeVarint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        ProtobufWriter string(int fieldNumber, String value) {
+            return bytes(fieldNumber, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ProtobufWriter message(int fieldNumber, byte[] message) {
+            return bytes(fieldNumber, message);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.resonance.letsdata.data.readers.implementation.sagemaker;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddingCacheTest {
+    private static final int DIMENSION = 4;
+
+    @Test
+    public void testLeastRecentlyUsedVectorIsEvicted() {
+        EmbeddingCache cache = new EmbeddingCache(DIMENSION, 2);
+        EmbeddingCache.Key a = EmbeddingCache.key("model-a", "a");
+        EmbeddingCache.Key b = EmbeddingCache.key("model-a", "b");
+        EmbeddingCache.Key c = EmbeddingCache.key("model-a", "c");
+        cache.put(a, vector(1), 0);
+        cache.put(b, vector(2), 0);
+        // a is used after b, so b is the least recently used
+        assertArrayEquals(vector(1), cache.get(a), 0f);
+        cache.put(c, vector(3), 0);
+
+        assertNull(cache.get(b));
+        assertArrayEquals(vector(1), cache.get(a), 0f);
+        assertArrayEquals(vector(3), cache.get(c), 0f);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictedSlotIsReused() {
+        EmbeddingCache cache = new EmbeddingCache(DIMENSION, 2);
+        long offHeapBytes = cache.getOffHeapBytes();
+        for (int i = 0; i < 10; i++) {
+            cache.put(EmbeddingCache.key("model-a", "text-" + i), vector(i), 0);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.getEvictionCount());
+        assertEquals(offHeapBytes, cache.getOffHeapBytes());
+        // the slots written last hold their own vectors - the reused slots were overwritten, not shared
+        assertArrayEquals(vector(8), cache.get(EmbeddingCache.key("model-a", "text-8")), 0f);
+        assertArrayEquals(vector(9), cache.get(EmbeddingCache.key("model-a", "text-9")), 0f);
+
+        // re-putting a cached key overwrites its slot in place
+        cache.put(EmbeddingCache.key("model-a", "text-9"), new float[]{0, 0, 0, 0, 7, 7, 7, 7}, 4);
+        assertEquals(8, cache.getEvictionCount());
+        float[] dest = new float[DIMENSION + 2];
+        assertTrue(cache.get(EmbeddingCache.key("model-a", "text-9"), dest, 2));
+        assertArrayEquals(new float[]{0, 0, 7, 7, 7, 7}, dest, 0f);
+    }
+
+    @Test
+    public void testKeysSeparateModelsAndTexts() {
+        EmbeddingCache.Key modelA = EmbeddingCache.key("model-a", "the same text");
+        assertEquals(modelA, EmbeddingCache.key("model-a", "the same text"));
+        assertEquals(modelA.hashCode(), EmbeddingCache.key("model-a", "the same text").hashCode());
+        assertNotEquals(modelA, EmbeddingCache.key("model-b", "the same text"));
+        assertNotEquals(modelA, EmbeddingCache.key("model-a", "another text"));
+
+        EmbeddingCache cache = new EmbeddingCache(DIMENSION, 10);
+        cache.put(modelA, vector(1), 0);
+        assertNull(cache.get(EmbeddingCache.key("model-b", "the same text")));
+        assertFalse(cache.get(EmbeddingCache.key("model-a", "another text"), new float[DIMENSION], 0));
+    }
+
+    @Test
+    public void testBatcherReJoinsCachedAndInferredVectors() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(DIMENSION, 100);
+        StubVectorizationEndpoint endpoint = new StubVectorizationEndpoint("model-a", DIMENSION, 4);
+        VectorizationBatcher batcher = new VectorizationBatcher(new VectorizationBatcherTest.TestHandler(), endpoint, 4, 1000, 100, VectorizationBatcher.DEFAULT_TOKEN_ESTIMATOR, cache);
+
+        batcher.vectorize(Arrays.<DocumentInterface>asList(
+                VectorizationBatcherTest.doc("doc-1", "title", "shared title", "body", "first body"),
+                VectorizationBatcherTest.doc("doc-2", "title", "shared title", "body", "second body")));
+        assertEquals(3, endpoint.getVectorizedTextCount());
+        assertEquals(0, batcher.getCacheHitCount());
+        assertEquals(3, cache.size());
+
+        // the titles and the first body are cached, only the new body is inferred
+        List<DocumentInterface> documents = Arrays.<DocumentInterface>asList(
+                VectorizationBatcherTest.doc("doc-3", "title", "shared title", "body", "third body"),
+                VectorizationBatcherTest.doc("doc-4", "body", "first body", "title", "shared title"));
+        List<DocumentInterface> vectorDocs = batcher.vectorize(documents);
+        assertEquals(4, endpoint.getVectorizedTextCount());
+        assertEquals(2, batcher.getCacheHitCount());
+
+        StubVectorizationEndpoint verifier = new StubVectorizationEndpoint("model-a", DIMENSION, 1);
+        for (int i = 0; i < documents.size(); i++) {
+            VectorizationBatcherTest.TestDoc document = (VectorizationBatcherTest.TestDoc) documents.get(i);
+            VectorizationBatcherTest.TestDoc vectorDoc = (VectorizationBatcherTest.TestDoc) vectorDocs.get(i);
+            assertEquals(document.texts.keySet(), vectorDoc.vectors.getNames());
+            for (Map.Entry<String, String> text : document.texts.entrySet()) {
+                assertArrayEquals(verifier.vectorize(Collections.singletonList(text.getValue())), vectorDoc.vectors.copyVector(text.getKey()), 0f);
+            }
+        }
+
+        // another model's batcher sharing the cache does not see model-a's vectors
+        StubVectorizationEndpoint otherEndpoint = new StubVectorizationEndpoint("model-b", DIMENSION, 4);
+        VectorizationBatcher otherBatcher = new VectorizationBatcher(new VectorizationBatcherTest.TestHandler(), otherEndpoint, 4, 1000, 100, VectorizationBatcher.DEFAULT_TOKEN_ESTIMATOR, cache);
+        otherBatcher.vectorize(Collections.<DocumentInterface>singletonList(VectorizationBatcherTest.doc("doc-5", "title", "shared title")));
+        assertEquals(1, otherEndpoint.getVectorizedTextCount());
+        assertEquals(0, otherBatcher.getCacheHitCount());
+    }
+
+    private static float[] vector(int value) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = value * 10 + i;
+        }
+        return vector;
+    }
+}
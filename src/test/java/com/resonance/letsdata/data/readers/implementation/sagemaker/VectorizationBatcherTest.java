@@ -0,0 +1,207 @@
+package com.resonance.letsdata.data.readers.implementation.sagemaker;
+
+import com.resonance.letsdata.data.documents.interfaces.DocumentInterface;
+import com.resonance.letsdata.data.readers.interfaces.sagemaker.SagemakerVectorsInterface;
+import com.resonance.letsdata.data.readers.model.FloatVectors;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VectorizationBatcherTest {
+    private static final int DIMENSION = 8;
+    // one token per character, so the tests control each text's tokens with its length
+    private static final ToIntFunction<String> LENGTH_TOKEN_ESTIMATOR = String::length;
+
+    @Test
+    public void testBatchesRespectTheBatchSizeAndTokenLimits() {
+        RecordingEndpoint endpoint = new RecordingEndpoint(new StubVectorizationEndpoint("model-a", DIMENSION, 4));
+        VectorizationBatcher batcher = new VectorizationBatcher(new TestHandler(), endpoint, 4, 40, 20, LENGTH_TOKEN_ESTIMATOR);
+        List<DocumentInterface> documents = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            documents.add(doc("doc-" + i, "text", text('a', 1 + (i * 7) % 20, i)));
+        }
+        batcher.vectorize(documents);
+
+        int textCount = 0;
+        for (List<String> batch : endpoint.batches) {
+            assertTrue("batch size - " + batch.size(), batch.size() <= 4);
+            int longest = 0;
+            for (String text : batch) {
+                longest = Math.max(longest, text.length());
+            }
+            assertTrue("padded batch tokens - " + batch.size() * longest, batch.size() * longest <= 40);
+            textCount += batch.size();
+        }
+        assertEquals(30, textCount);
+        assertEquals(endpoint.batches.size(), batcher.getInvocationCount());
+        assertEquals(endpoint.batches.size(), endpoint.stub.getInvocationBatchSizes().size());
+        assertTrue(batcher.getPackingEfficiency() > 0 && batcher.getPackingEfficiency() <= 1);
+    }
+
+    @Test
+    public void testTextsAreCappedAtTheMaxSequenceTokens() {
+        RecordingEndpoint endpoint = new RecordingEndpoint(new StubVectorizationEndpoint("model-a", DIMENSION, 8));
+        VectorizationBatcher batcher = new VectorizationBatcher(new TestHandler(), endpoint, 8, 40, 20, LENGTH_TOKEN_ESTIMATOR);
+        // the long text is truncated by the model to 20 tokens, so it can share a 40 token batch with one other text
+        batcher.vectorize(Arrays.asList(doc("doc-1", "long", text('l', 1000, 0)), doc("doc-2", "short", text('s', 20, 0))));
+        assertEquals(Collections.singletonList(2), endpoint.stub.getInvocationBatchSizes());
+        assertEquals(1.0, batcher.getPackingEfficiency(), 0.0);
+    }
+
+    @Test
+    public void testVectorsFanBackToTheirDocumentAndName() throws Exception {
+        StubVectorizationEndpoint endpoint = new StubVectorizationEndpoint("model-a", DIMENSION, 2);
+        VectorizationBatcher batcher = new VectorizationBatcher(new TestHandler(), endpoint, 2, 1000, 100, VectorizationBatcher.DEFAULT_TOKEN_ESTIMATOR);
+        List<DocumentInterface> documents = Arrays.asList(
+                doc("doc-1", "title", "a short title", "body", "a much longer body text that sorts into a different batch than its title"),
+                doc("doc-2", "title", "another title", "body", "body two"),
+                // repeated texts are vectorized once
+                doc("doc-3", "title", "a short title", "keywords", "vectors, batching"));
+        List<DocumentInterface> vectorDocs = batcher.vectorize(documents);
+        assertEquals(5, endpoint.getVectorizedTextCount());
+
+        assertEquals(3, vectorDocs.size());
+        for (int i = 0; i < documents.size(); i++) {
+            TestDoc document = (TestDoc) documents.get(i);
+            TestDoc vectorDoc = (TestDoc) vectorDocs.get(i);
+            assertEquals(document.getDocumentId(), vectorDoc.getDocumentId());
+            assertEquals(document.texts.keySet(), vectorDoc.vectors.getNames());
+            for (Map.Entry<String, String> text : document.texts.entrySet()) {
+                assertArrayEquals(endpoint.vectorize(Collections.singletonList(text.getValue())), vectorDoc.vectors.copyVector(text.getKey()), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testDocumentWithoutTextsGetsEmptyVectors() {
+        StubVectorizationEndpoint endpoint = new StubVectorizationEndpoint("model-a", DIMENSION, 4);
+        VectorizationBatcher batcher = new VectorizationBatcher(new TestHandler(), endpoint, 4, 1000, 100, VectorizationBatcher.DEFAULT_TOKEN_ESTIMATOR);
+        Map<String, String> nullTexts = new LinkedHashMap<>();
+        nullTexts.put("title", null);
+        nullTexts.put("body", null);
+        List<DocumentInterface> vectorDocs = batcher.vectorize(Arrays.<DocumentInterface>asList(
+                new TestDoc("doc-1", nullTexts, null),
+                doc("doc-2", "title", "a title"),
+                new TestDoc("doc-3", null, null)));
+
+        assertEquals(0, ((TestDoc) vectorDocs.get(0)).vectors.size());
+        assertEquals(Collections.singleton("title"), ((TestDoc) vectorDocs.get(1)).vectors.getNames());
+        assertEquals(0, ((TestDoc) vectorDocs.get(2)).vectors.size());
+        assertEquals(1, endpoint.getVectorizedTextCount());
+    }
+
+    static TestDoc doc(String documentId, String... namesAndTexts) {
+        Map<String, String> texts = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndTexts.length; i += 2) {
+            texts.put(namesAndTexts[i], namesAndTexts[i + 1]);
+        }
+        return new TestDoc(documentId, texts, null);
+    }
+
+    /**
+     * A text of the length, made distinct by the suffix number
+     */
+    private static String text(char ch, int length, int suffix) {
+        StringBuilder builder = new StringBuilder(String.valueOf(suffix));
+        while (builder.length() < length) {
+            builder.append(ch);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Extracts the document's texts and returns a document with the vectors
+     */
+    static class TestHandler implements SagemakerVectorsInterface {
+        @Override
+        public Map<String, String> extractDocumentElementsForVectorization(DocumentInterface documentInterface) {
+            return ((TestDoc) documentInterface).texts;
+        }
+
+        @Override
+        public DocumentInterface constructVectorDoc(DocumentInterface documentInterface, Map<String, Double[]> vectorsMap) {
+            throw new UnsupportedOperationException("the batcher passes FloatVectors");
+        }
+
+        @Override
+        public DocumentInterface constructVectorDoc(DocumentInterface documentInterface, FloatVectors vectors) {
+            TestDoc document = (TestDoc) documentInterface;
+            return new TestDoc(document.getDocumentId(), document.texts, vectors);
+        }
+    }
+
+    static class TestDoc implements DocumentInterface {
+        final String documentId;
+        final Map<String, String> texts;
+        final FloatVectors vectors;
+
+        TestDoc(String documentId, Map<String, String> texts, FloatVectors vectors) {
+            this.documentId = documentId;
+            this.texts = texts;
+            this.vectors = vectors;
+        }
+
+        @Override
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        @Override
+        public String getRecordType() {
+            return "test";
+        }
+
+        @Override
+        public Map<String, Object> getDocumentMetadata() {
+            return null;
+        }
+
+        @Override
+        public String serialize() {
+            return documentId;
+        }
+
+        @Override
+        public String getPartitionKey() {
+            return documentId;
+        }
+    }
+
+    /**
+     * Records the texts of each invocation
+     */
+    private static class RecordingEndpoint implements VectorizationEndpoint {
+        private final StubVectorizationEndpoint stub;
+        private final List<List<String>> batches = new ArrayList<>();
+
+        private RecordingEndpoint(StubVectorizationEndpoint stub) {
+            this.stub = stub;
+        }
+
+        @Override
+        public String getModelId() {
+            return stub.getModelId();
+        }
+
+        @Override
+        public int getDimension() {
+            return stub.getDimension();
+        }
+
+        @Override
+        public float[] vectorize(List<String> texts) {
+            batches.add(new ArrayList<>(texts));
+            return stub.vectorize(texts);
+        }
+    }
+}
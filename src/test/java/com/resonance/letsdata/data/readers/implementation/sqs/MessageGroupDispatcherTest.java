@@ -0,0 +1,211 @@
+package com.resonance.letsdata.data.readers.implementation.sqs;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MessageGroupDispatcherTest {
+    private MessageGroupDispatcher dispatcher;
+
+    @After
+    public void tearDown() throws Exception {
+        if (dispatcher != null) {
+            dispatcher.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testMessagesWithinAGroupRunInSubmissionOrder() throws Exception {
+        dispatcher = new MessageGroupDispatcher(4, 1000, false);
+        List<List<Integer>> results = new ArrayList<>();
+        for (int group = 0; group < 4; group++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            final int group = i % 4;
+            final int value = i;
+            futures.add(dispatcher.submit("message-" + i, "group-" + group, () -> {
+                results.get(group).add(value);
+                return value;
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        for (int group = 0; group < 4; group++) {
+            List<Integer> values = results.get(group);
+            assertEquals(100, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(group + i * 4, (int) values.get(i));
+            }
+        }
+        assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getActiveGroupCount());
+    }
+
+    @Test
+    public void testSubmitBlocksWhenTheGroupIsFull() throws Exception {
+        dispatcher = new MessageGroupDispatcher(2, 2, false);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.submit("message-1", "group-1", () -> awaitAndReturn(release, "1"));
+        dispatcher.submit("message-2", "group-1", () -> "2");
+
+        CountDownLatch thirdSubmitted = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            try {
+                dispatcher.submit("message-3", "group-1", () -> "3");
+                thirdSubmitted.countDown();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        assertFalse(thirdSubmitted.await(100, TimeUnit.MILLISECONDS));
+        // other groups are not blocked by the full group
+        assertEquals("other", dispatcher.submit("message-4", "group-2", () -> "other").get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertTrue(thirdSubmitted.await(5, TimeUnit.SECONDS));
+        submitter.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void testWorkerCountLimitsTheConcurrentHandlerCalls() throws Exception {
+        dispatcher = new MessageGroupDispatcher(2, 10, false);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(dispatcher.submit("message-" + i, "group-" + i, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                running.decrementAndGet();
+                return "done";
+            }));
+        }
+        for (CompletableFuture<String> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(2, dispatcher.getWorkerCount());
+        assertFalse(dispatcher.isUsingVirtualThreads());
+    }
+
+    @Test
+    public void testFailedMessageBlocksTheRestOfItsGroup() throws Exception {
+        dispatcher = new MessageGroupDispatcher(2, 10, false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger laterCalls = new AtomicInteger();
+        CompletableFuture<String> failed = dispatcher.submit("message-1", "group-1", () -> {
+            awaitAndReturn(release, "1");
+            throw new RuntimeException("handler failed for the test");
+        });
+        CompletableFuture<String> second = dispatcher.submit("message-2", "group-1", () -> "" + laterCalls.incrementAndGet());
+        CompletableFuture<String> third = dispatcher.submit("message-3", "group-1", () -> "" + laterCalls.incrementAndGet());
+        CompletableFuture<String> otherGroup = dispatcher.submit("message-4", "group-2", () -> "other");
+        assertEquals("other", otherGroup.get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertFailed(failed);
+        assertFailed(second);
+        assertFailed(third);
+        assertEquals(0, laterCalls.get());
+
+        // the group's failure is cleared once its queued messages drained
+        assertTrue(waitForNoActiveGroups());
+        assertEquals("next", dispatcher.submit("message-5", "group-1", () -> "next").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStandardQueueMessageIdDoesNotShareAGroupLane() throws Exception {
+        dispatcher = new MessageGroupDispatcher(2, 10, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> grouped = dispatcher.submit("message-1", "shared-id", () -> awaitAndReturn(release, "grouped"));
+        // a standard queue message whose message id equals the running group's id
+        assertEquals("standard", dispatcher.submit("shared-id", null, () -> "standard").get(5, TimeUnit.SECONDS));
+        assertFalse(grouped.isDone());
+        release.countDown();
+        assertEquals("grouped", grouped.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdownWaitsForTheQueuedMessages() throws Exception {
+        dispatcher = new MessageGroupDispatcher(2, 10, false);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(dispatcher.submit("message-" + i, "group-1", () -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return "done";
+            }));
+        }
+        assertTrue(dispatcher.shutdown(5, TimeUnit.SECONDS));
+        for (CompletableFuture<String> future : futures) {
+            assertTrue(future.isDone());
+            assertEquals("done", future.get());
+        }
+    }
+
+    @Test
+    public void testShutdownTimesOutWhileAMessageIsRunning() throws Exception {
+        dispatcher = new MessageGroupDispatcher(2, 10, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = dispatcher.submit("message-1", "group-1", () -> awaitAndReturn(release, "1"));
+        assertFalse(dispatcher.shutdown(50, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals("1", running.get(5, TimeUnit.SECONDS));
+    }
+
+    private boolean waitForNoActiveGroups() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        // the lane releases the group just after completing the message's future
+        while (dispatcher.getActiveGroupCount() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private static void assertFailed(CompletableFuture<String> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the message to fail");
+        } catch (ExecutionException ex) {
+            // expected
+        }
+    }
+
+    private static String awaitAndReturn(CountDownLatch latch, String result) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new RuntimeException("latch was not released");
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package com.resonance.letsdata.data.readers.implementation.streams;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateSuppressionFilterTest {
+
+    @Test
+    public void testCheckDoesNotRecordSoAFailedRecordIsRedelivered() {
+        DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(1000, 10);
+        assertEquals(DuplicateSuppressionFilter.Result.NEW, filter.check("shard-1/1"));
+        // the handler failed - the id is not recorded and the redelivery is processed
+        assertEquals(DuplicateSuppressionFilter.Result.NEW, filter.check("shard-1/1"));
+
+        filter.record("shard-1/1");
+        assertEquals(DuplicateSuppressionFilter.Result.DUPLICATE, filter.check("shard-1/1"));
+        assertEquals(1, filter.getPendingCount());
+        assertEquals(1, filter.getDuplicateCount());
+    }
+
+    @Test
+    public void testOnlyCheckpointedIdsArePersisted() throws Exception {
+        DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(1000, 10);
+        filter.record("shard-1/1");
+        filter.record("shard-1/2");
+        filter.markCheckpointed();
+        filter.record("shard-1/3");
+        assertEquals(1, filter.getPendingCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        DuplicateSuppressionFilter restored = DuplicateSuppressionFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(DuplicateSuppressionFilter.Result.DUPLICATE, restored.check("shard-1/1"));
+        assertEquals(DuplicateSuppressionFilter.Result.DUPLICATE, restored.check("shard-1/2"));
+        // handled after the checkpoint - replayed after the restart
+        assertEquals(DuplicateSuppressionFilter.Result.NEW, restored.check("shard-1/3"));
+        assertEquals(0, restored.getPendingCount());
+    }
+
+    @Test
+    public void testCheckpointedIdsBeyondTheRecentWindowAreProbableDuplicates() {
+        DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(10_000, 100);
+        for (int i = 0; i < 5000; i++) {
+            filter.record("id-" + i);
+        }
+        filter.markCheckpointed();
+        for (int i = 0; i < 4900; i++) {
+            assertEquals(DuplicateSuppressionFilter.Result.PROBABLE_DUPLICATE, filter.check("id-" + i));
+        }
+        for (int i = 4900; i < 5000; i++) {
+            assertEquals(DuplicateSuppressionFilter.Result.DUPLICATE, filter.check("id-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 5000; i < 105_000; i++) {
+            if (filter.check("id-" + i) != DuplicateSuppressionFilter.Result.NEW) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives - " + falsePositives, falsePositives / 100_000.0 <= filter.getMaxFalsePositiveRate());
+    }
+
+    @Test
+    public void testRotationBoundsTheRememberedIds() {
+        DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(1000, 0);
+        for (int i = 0; i < 3500; i++) {
+            filter.record("id-" + i);
+            if (i % 100 == 99) {
+                filter.markCheckpointed();
+            }
+        }
+        assertTrue(filter.getRotationCount() >= 2);
+        assertEquals(DuplicateSuppressionFilter.Result.PROBABLE_DUPLICATE, filter.check("id-3499"));
+        assertNotEquals(0, filter.getOffHeapBytes());
+    }
+
+    @Test
+    public void testOffHeapBytesForTenMillionIds() {
+        DuplicateSuppressionFilter filter = new DuplicateSuppressionFilter(10_000_000, 0);
+        // 10M / 3.6 buckets rounded up to 2^22 - 2 generations x 2^22 buckets x 4 slots x 2 bytes
+        assertEquals(64L << 20, filter.getOffHeapBytes());
+        assertEquals(3.4, filter.getOffHeapBytes() / (2.0 * 10_000_000), 0.05);
+    }
+}
@@ -0,0 +1,170 @@
+package com.resonance.letsdata.data.readers.implementation.streams;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrderedShardExecutorTest {
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testCheckpointAdvancesOnTheContiguousLowWatermark() throws Exception {
+        OrderedShardExecutor executor = new OrderedShardExecutor(executorService, OrderedShardExecutor.OrderingScope.PARTITION_KEY);
+        CountDownLatch releaseKeyB = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit("shard-1", "a", "1", () -> "1");
+        CompletableFuture<String> second = executor.submit("shard-1", "b", "2", () -> awaitAndReturn(releaseKeyB, "2"));
+        CompletableFuture<String> third = executor.submit("shard-1", "a", "3", () -> "3");
+        CompletableFuture<String> fourth = executor.submit("shard-1", "c", "4", () -> "4");
+
+        // seq 3 and 4 complete out of order, ahead of the running seq 2
+        first.get(5, TimeUnit.SECONDS);
+        third.get(5, TimeUnit.SECONDS);
+        fourth.get(5, TimeUnit.SECONDS);
+        assertFalse(second.isDone());
+        assertEquals("1", executor.getCheckpoint("shard-1"));
+        assertEquals(1, executor.getInFlightCount("shard-1"));
+        assertFalse(executor.removeShard("shard-1"));
+
+        releaseKeyB.countDown();
+        assertTrue(executor.awaitShard("shard-1", 5, TimeUnit.SECONDS));
+        assertEquals("4", executor.getCheckpoint("shard-1"));
+        assertNull(executor.getFailure("shard-1"));
+        assertTrue(executor.removeShard("shard-1"));
+        assertNull(executor.getCheckpoint("shard-1"));
+    }
+
+    @Test
+    public void testFailureHoldsTheCheckpointAtTheRecordBeforeIt() throws Exception {
+        OrderedShardExecutor executor = new OrderedShardExecutor(executorService, OrderedShardExecutor.OrderingScope.PARTITION_KEY);
+        CountDownLatch releaseKeyA = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit("shard-1", "a", "1", () -> awaitAndReturn(releaseKeyA, "1"));
+        CompletableFuture<String> second = executor.submit("shard-1", "b", "2", () -> {
+            throw new RuntimeException("handler failed for the test");
+        });
+        CompletableFuture<String> third = executor.submit("shard-1", "c", "3", () -> "3");
+
+        // seq 2 fails while the earlier seq 1 is still running
+        try {
+            second.get(5, TimeUnit.SECONDS);
+            fail("expected the handler call to fail");
+        } catch (ExecutionException ex) {
+            // expected
+        }
+        third.get(5, TimeUnit.SECONDS);
+        assertNotNull(executor.getFailure("shard-1"));
+        assertNull(executor.getCheckpoint("shard-1"));
+
+        releaseKeyA.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertTrue(executor.awaitShard("shard-1", 5, TimeUnit.SECONDS));
+        assertEquals("1", executor.getCheckpoint("shard-1"));
+
+        // records submitted after the failure do not advance the checkpoint
+        executor.submit("shard-1", "a", "4", () -> "4").get(5, TimeUnit.SECONDS);
+        assertEquals("1", executor.getCheckpoint("shard-1"));
+    }
+
+    @Test
+    public void testShardScopeRunsTheShardSeriallyAndShardsConcurrently() throws Exception {
+        OrderedShardExecutor executor = new OrderedShardExecutor(executorService, OrderedShardExecutor.OrderingScope.SHARD);
+        List<List<String>> results = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        for (int shard = 0; shard < 2; shard++) {
+            results.add(Collections.synchronizedList(new ArrayList<String>()));
+        }
+        for (int i = 1; i <= 200; i++) {
+            final int shard = i % 2;
+            final String sequenceNumber = String.valueOf(i);
+            executor.submit("shard-" + shard, "key-" + i, sequenceNumber, () -> {
+                if (shard == 0 && running.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                results.get(shard).add(sequenceNumber);
+                if (shard == 0) {
+                    running.decrementAndGet();
+                }
+                return sequenceNumber;
+            });
+        }
+        for (int shard = 0; shard < 2; shard++) {
+            assertTrue(executor.awaitShard("shard-" + shard, 5, TimeUnit.SECONDS));
+            List<String> shardResults = results.get(shard);
+            assertEquals(100, shardResults.size());
+            for (int i = 0; i < shardResults.size(); i++) {
+                assertEquals(String.valueOf(i * 2 + (shard == 0 ? 2 : 1)), shardResults.get(i));
+            }
+        }
+        assertFalse(overlapped.get());
+        assertEquals("200", executor.getCheckpoint("shard-0"));
+        assertEquals("199", executor.getCheckpoint("shard-1"));
+    }
+
+    @Test
+    public void testSubmitBlocksAtTheInFlightLimit() throws Exception {
+        OrderedShardExecutor executor = new OrderedShardExecutor(executorService, OrderedShardExecutor.OrderingScope.SHARD, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("shard-1", null, "1", () -> awaitAndReturn(release, "1"));
+        executor.submit("shard-1", null, "2", () -> "2");
+        assertEquals(2, executor.getInFlightCount("shard-1"));
+
+        CountDownLatch thirdSubmitted = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.submit("shard-1", null, "3", () -> "3");
+                thirdSubmitted.countDown();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        assertFalse(thirdSubmitted.await(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(thirdSubmitted.await(5, TimeUnit.SECONDS));
+        submitter.join(TimeUnit.SECONDS.toMillis(5));
+        assertTrue(executor.awaitShard("shard-1", 5, TimeUnit.SECONDS));
+        assertEquals("3", executor.getCheckpoint("shard-1"));
+        assertEquals(0, executor.getInFlightCount("shard-1"));
+    }
+
+    private static String awaitAndReturn(CountDownLatch latch, String result) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new RuntimeException("latch was not released");
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        return result;
+    }
+}
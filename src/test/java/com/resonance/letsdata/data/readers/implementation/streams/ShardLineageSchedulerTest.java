@@ -0,0 +1,190 @@
+package com.resonance.letsdata.data.readers.implementation.streams;
+
+import com.resonance.letsdata.data.readers.implementation.dynamodbstreams.InMemoryDynamoDBStream;
+import com.resonance.letsdata.data.readers.model.DynamoDBStreamRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardLineageSchedulerTest {
+    private ExecutorService executorService;
+    private InMemoryDynamoDBStream stream;
+    private final Map<String, Integer> versions = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+        stream = new InMemoryDynamoDBStream("arn:aws:dynamodb:us-east-1:123456789012:table/docs/stream/1", "NEW_IMAGE");
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testChildShardsStartAfterTheirParentsAndKeyOrderHolds() throws Exception {
+        writeVersions(20, 10);
+        List<String> children = stream.split("shardId-00000000");
+        writeVersions(20, 10);
+        List<String> grandChildren = stream.split(children.get(0));
+        writeVersions(20, 10);
+        stream.split(children.get(1));
+        writeVersions(20, 10);
+
+        AtomicLong clock = new AtomicLong();
+        Map<String, long[]> startAndEnd = new ConcurrentHashMap<>();
+        Map<Object, Integer> lastVersionByKey = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrderCount = new AtomicInteger();
+        ShardLineageScheduler scheduler = new ShardLineageScheduler(executorService, 4, shardId -> {
+            long start = clock.incrementAndGet();
+            for (DynamoDBStreamRecord record : readShard(shardId)) {
+                Object key = record.getKeys().get("pk");
+                int version = (Integer) record.getNewImage().get("version");
+                Integer previous = lastVersionByKey.put(key, version);
+                if (version != (previous == null ? 1 : previous + 1)) {
+                    outOfOrderCount.incrementAndGet();
+                }
+            }
+            startAndEnd.put(shardId, new long[]{start, clock.incrementAndGet()});
+        });
+        scheduler.registerShards(stream.describeShards());
+        assertTrue(scheduler.awaitIdle(10, TimeUnit.SECONDS));
+
+        assertEquals(7, scheduler.getShards(ShardLineageScheduler.ShardStatus.COMPLETED).size());
+        assertEquals(0, outOfOrderCount.get());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(40, (int) lastVersionByKey.get("key-" + i));
+        }
+        for (ShardLineageScheduler.ShardInfo shard : stream.describeShards()) {
+            for (String parentShardId : shard.getParentShardIds()) {
+                assertTrue("child started before its parent completed - " + shard.getShardId(), startAndEnd.get(shard.getShardId())[0] > startAndEnd.get(parentShardId)[1]);
+            }
+        }
+        assertNotNull(startAndEnd.get(grandChildren.get(0)));
+    }
+
+    @Test
+    public void testSiblingShardsRunInParallel() throws Exception {
+        writeVersions(10, 1);
+        List<String> children = stream.split("shardId-00000000");
+        CountDownLatch bothChildrenRunning = new CountDownLatch(2);
+        Map<String, Boolean> sawSiblingRunning = new ConcurrentHashMap<>();
+        ShardLineageScheduler scheduler = new ShardLineageScheduler(executorService, 4, shardId -> {
+            if (children.contains(shardId)) {
+                bothChildrenRunning.countDown();
+                sawSiblingRunning.put(shardId, bothChildrenRunning.await(5, TimeUnit.SECONDS));
+            }
+            readShard(shardId);
+        });
+        scheduler.registerShards(stream.describeShards());
+        assertTrue(scheduler.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Boolean.TRUE, sawSiblingRunning.get(children.get(0)));
+        assertEquals(Boolean.TRUE, sawSiblingRunning.get(children.get(1)));
+    }
+
+    @Test
+    public void testMaxConcurrentShardsIsRespected() throws Exception {
+        stream.split("shardId-00000000");
+        stream.split("shardId-00000001");
+        stream.split("shardId-00000002");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ShardLineageScheduler scheduler = new ShardLineageScheduler(executorService, 2, shardId -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+        });
+        scheduler.registerShards(stream.describeShards());
+        assertTrue(scheduler.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(7, scheduler.getShards(ShardLineageScheduler.ShardStatus.COMPLETED).size());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testFailedShardHoldsItsChildrenUntilRetried() throws Exception {
+        writeVersions(10, 1);
+        List<String> children = stream.split("shardId-00000000");
+        AtomicInteger parentAttempts = new AtomicInteger();
+        ShardLineageScheduler scheduler = new ShardLineageScheduler(executorService, 4, shardId -> {
+            if (shardId.equals("shardId-00000000") && parentAttempts.incrementAndGet() == 1) {
+                throw new RuntimeException("shard processing failed for the test");
+            }
+            readShard(shardId);
+        });
+        scheduler.registerShards(stream.describeShards());
+        assertTrue(scheduler.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(ShardLineageScheduler.ShardStatus.FAILED, scheduler.getShardStatus("shardId-00000000"));
+        assertNotNull(scheduler.getShardFailure("shardId-00000000"));
+        assertEquals(new LinkedHashSet<>(children), scheduler.getShards(ShardLineageScheduler.ShardStatus.WAITING));
+
+        assertFalse(scheduler.retryShard(children.get(0)));
+        assertTrue(scheduler.retryShard("shardId-00000000"));
+        assertTrue(scheduler.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(3, scheduler.getShards(ShardLineageScheduler.ShardStatus.COMPLETED).size());
+        assertNull(scheduler.getShardFailure("shardId-00000000"));
+        assertEquals(2, parentAttempts.get());
+    }
+
+    @Test
+    public void testUnregisteredParentIsTreatedAsCompleted() throws Exception {
+        List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+        ShardLineageScheduler scheduler = new ShardLineageScheduler(executorService, 4, processed::add);
+        scheduler.registerShards(Arrays.asList(new ShardLineageScheduler.ShardInfo("child", "trimmed-parent")));
+        assertTrue(scheduler.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("child"), processed);
+    }
+
+    /**
+     * Writes the next writesPerKey versions of each key - a key's version is the number of times it has been written
+     */
+    private void writeVersions(int keyCount, int writesPerKey) {
+        for (int write = 0; write < writesPerKey; write++) {
+            for (int i = 0; i < keyCount; i++) {
+                String key = "key-" + i;
+                Integer version = versions.merge(key, 1, Integer::sum);
+                Map<String, Object> keys = Collections.<String, Object>singletonMap("pk", key);
+                Map<String, Object> image = new HashMap<>(keys);
+                image.put("version", version);
+                stream.write(version == 1 ? "INSERT" : "MODIFY", keys, null, image);
+            }
+        }
+    }
+
+    /**
+     * Reads the shard to its end (closed shards) or to its last record (open shards)
+     */
+    private List<DynamoDBStreamRecord> readShard(String shardId) {
+        List<DynamoDBStreamRecord> records = new ArrayList<>();
+        String afterSequenceNumber = null;
+        while (true) {
+            InMemoryDynamoDBStream.RecordsPage page = stream.getRecords(shardId, afterSequenceNumber, 7);
+            records.addAll(page.getRecords());
+            if (page.isShardEnded() || page.getRecords().isEmpty()) {
+                return records;
+            }
+            afterSequenceNumber = page.getRecords().get(page.getRecords().size() - 1).getSequenceNumber();
+        }
+    }
+}
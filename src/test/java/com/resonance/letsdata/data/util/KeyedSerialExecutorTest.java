@@ -0,0 +1,128 @@
+package com.resonance.letsdata.data.util;
+
+import com.resonance.letsdata.data.readers.implementation.streams.OrderedShardExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void testTasksWithTheSameKeyRunInSubmissionOrder() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(executorService, 8);
+            List<List<Integer>> results = new ArrayList<>();
+            for (int key = 0; key < 4; key++) {
+                results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            }
+            for (int i = 0; i < 1000; i++) {
+                final int key = i % 4;
+                final int value = i;
+                executor.execute(key, () -> results.get(key).add(value));
+            }
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+            for (int key = 0; key < 4; key++) {
+                List<Integer> values = results.get(key);
+                assertEquals(250, values.size());
+                for (int i = 0; i < values.size(); i++) {
+                    assertEquals(key + i * 4, (int) values.get(i));
+                }
+            }
+            assertEquals(0, executor.getActiveLaneCount());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedLaneIsRemoved() {
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(rejectingExecutor(null));
+        List<String> ran = new ArrayList<>();
+        try {
+            executor.execute("key", () -> ran.add("task"));
+            fail("expected the lane to be rejected");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertTrue(ran.isEmpty());
+        assertFalse(executor.isActive("key"));
+    }
+
+    @Test
+    public void testTasksQueuedOnARejectedLaneAreNotLost() {
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        AtomicReference<KeyedSerialExecutor<String>> executorHolder = new AtomicReference<>();
+        // while the lane is being scheduled, another thread queues a task for the same key - it sees the lane and does not schedule it
+        executorHolder.set(new KeyedSerialExecutor<>(rejectingExecutor(() -> runOnOtherThread(() -> executorHolder.get().execute("key", () -> ran.add("other"))))));
+        try {
+            executorHolder.get().execute("key", () -> ran.add("rejected"));
+            fail("expected the lane to be rejected");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertEquals(Collections.singletonList("other"), ran);
+        assertFalse(executorHolder.get().isActive("key"));
+    }
+
+    @Test
+    public void testOrderedShardExecutorCompletesAfterARejectedLane() throws Exception {
+        OrderedShardExecutor[] executorHolder = new OrderedShardExecutor[1];
+        List<CompletableFuture<String>> otherFutures = Collections.synchronizedList(new ArrayList<CompletableFuture<String>>());
+        executorHolder[0] = new OrderedShardExecutor(rejectingExecutor(() -> runOnOtherThread(() -> {
+            try {
+                otherFutures.add(executorHolder[0].submit("shard-1", null, "2", () -> "other"));
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        })), OrderedShardExecutor.OrderingScope.SHARD, 4);
+        try {
+            executorHolder[0].submit("shard-1", null, "1", () -> "rejected");
+            fail("expected the lane to be rejected");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertEquals(1, otherFutures.size());
+        assertEquals("other", otherFutures.get(0).get(1, TimeUnit.SECONDS));
+        assertTrue(executorHolder[0].awaitShard("shard-1", 1, TimeUnit.SECONDS));
+        assertEquals(0, executorHolder[0].getInFlightCount("shard-1"));
+        assertTrue(executorHolder[0].removeShard("shard-1"));
+    }
+
+    /**
+     * An executor that rejects everything - onExecute runs before each rejection
+     */
+    private static Executor rejectingExecutor(Runnable onExecute) {
+        return command -> {
+            if (onExecute != null) {
+                onExecute.run();
+            }
+            throw new RejectedExecutionException("rejected for the test");
+        };
+    }
+
+    private static void runOnOtherThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}